@@ -0,0 +1,114 @@
+package senior.copycoders.project.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.factories.*;
+import senior.copycoders.project.api.services.CreditLedgerService;
+import senior.copycoders.project.api.services.PaymentService;
+import senior.copycoders.project.api.services.PdfService;
+import senior.copycoders.project.api.services.UserService;
+import senior.copycoders.project.api.services.engines.*;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.CreditEventEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+import senior.copycoders.project.store.repositories.CreditEventRepository;
+import senior.copycoders.project.store.repositories.CreditRepository;
+import senior.copycoders.project.store.repositories.PaymentRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Сервисы так же, как их собирает Spring, но без БД: репозитории - заглушки, кредиты живут в памяти.
+ * Заглушки ничего не запоминают (stubOnly), поэтому память не растёт от итерации к итерации
+ */
+final class BenchmarkServices {
+
+    static final String DATE_OF_FIRST_PAYMENT = "2024-01-15";
+    static final BigDecimal INITIAL_PAYMENT = BigDecimal.valueOf(500_000.0);
+    static final BigDecimal CREDIT_AMOUNT = BigDecimal.valueOf(3_000_000.0);
+    static final BigDecimal PERCENT_RATE = BigDecimal.valueOf(12.5);
+
+    // владелец всех кредитов бенчмарков (текущий пользователь)
+    static final Long OWNER_ID = 1L;
+
+    final CreditRepository creditRepository = mock(CreditRepository.class, withSettings().stubOnly());
+    final CreditEventRepository creditEventRepository = mock(CreditEventRepository.class, withSettings().stubOnly());
+    final PaymentRepository paymentRepository = mock(PaymentRepository.class, withSettings().stubOnly());
+    final UserService userService = mock(UserService.class, withSettings().stubOnly());
+
+    final ControllerHelper controllerHelper;
+    final CreditLedgerService creditLedgerService;
+    final PaymentService paymentService;
+    final PdfService pdfService;
+
+
+    /**
+     * @param engine fixed-point, bigdecimal или cached (fixed-point за кэшем результатов, как в приложении)
+     */
+    BenchmarkServices(String engine) {
+        controllerHelper = new ControllerHelper(creditRepository, userService);
+
+        creditLedgerService = new CreditLedgerService(creditEventRepository, new CreditEventDtoFactory(), creditRepository, paymentRepository, controllerHelper);
+        ReflectionTestUtils.setField(creditLedgerService, "snapshotInterval", 8);
+
+        paymentService = new PaymentService(controllerHelper, paymentRepository, new PaymentDtoFactory(), new CreditDtoFactory(),
+                new PaymentWithCreditDtoFactory(), createEngine(engine), creditLedgerService, new EffectiveRateSolver(),
+                new PaymentJsonWriter(new ObjectMapper()), new ScheduleColumnsDtoFactory(), new SimpleMeterRegistry());
+
+        pdfService = new PdfService(controllerHelper, paymentService);
+
+        when(creditEventRepository.save(any(CreditEventEntity.class))).then(returnsFirstArg());
+        when(userService.getCurrentUserId()).thenReturn(OWNER_ID);
+    }
+
+
+    /**
+     * Кредит с рассчитанным графиком, как после POST /api/credit (снимок графика учитывает событие о выдаче)
+     *
+     * @param creditId     id кредита
+     * @param typeOfCredit тип кредита
+     * @param creditPeriod срок кредитования в месяцах
+     */
+    CreditEntity createCredit(Long creditId, TypeOfCredit typeOfCredit, int creditPeriod) {
+        CreditEntity credit = CreditEntity.builder()
+                .id(creditId)
+                .initialPayment(INITIAL_PAYMENT)
+                .creditAmount(CREDIT_AMOUNT)
+                .percentRate(PERCENT_RATE)
+                .creditPeriod(creditPeriod)
+                .typeOfCredit(typeOfCredit)
+                .snapshotEventNumber(1)
+                .scheduleVersion(1L)
+                .build();
+
+        paymentService.calculatePayments(DATE_OF_FIRST_PAYMENT, INITIAL_PAYMENT, CREDIT_AMOUNT, PERCENT_RATE, creditPeriod, credit, typeOfCredit);
+        creditLedgerService.normalize(credit.getPaymentList());
+        credit.setPayment(credit.getPaymentList().get(0).getPaymentAmount());
+
+        when(creditRepository.findByIdAndPersonId(creditId, OWNER_ID)).thenReturn(Optional.of(credit));
+        when(creditRepository.findForUpdateByIdAndPersonId(creditId, OWNER_ID)).thenReturn(Optional.of(credit));
+
+        return credit;
+    }
+
+
+    private static AmortizationEngine createEngine(String engine) {
+        BigDecimalAmortizationEngine bigDecimalAmortizationEngine = new BigDecimalAmortizationEngine();
+        FixedPointAmortizationEngine fixedPointAmortizationEngine = new FixedPointAmortizationEngine(bigDecimalAmortizationEngine, new AnnuityFactorTable());
+
+        return switch (engine) {
+            case "fixed-point" -> fixedPointAmortizationEngine;
+            case "bigdecimal" -> bigDecimalAmortizationEngine;
+            case "cached" -> new CachingAmortizationEngine(fixedPointAmortizationEngine, 10_000, 200_000, Duration.ofMinutes(30));
+            default -> throw new IllegalArgumentException("Unknown engine " + engine);
+        };
+    }
+}
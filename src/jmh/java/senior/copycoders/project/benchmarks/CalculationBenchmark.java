@@ -0,0 +1,63 @@
+package senior.copycoders.project.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static senior.copycoders.project.benchmarks.BenchmarkServices.*;
+
+/**
+ * Расчёт графика платежей (calculatePayments), платежа и налогового вычета (/api/calculate-payment)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculationBenchmark {
+
+    @Param({"fixed-point", "bigdecimal", "cached"})
+    String engine;
+
+    @Param({"ANNUITY", "DIFFERENTIATED"})
+    TypeOfCredit typeOfCredit;
+
+    @Param({"12", "60", "120", "240", "360"})
+    int creditPeriod;
+
+    BenchmarkServices services;
+    BigDecimal payment;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = new BenchmarkServices(engine);
+        payment = services.paymentService.findOutThePayment(INITIAL_PAYMENT, CREDIT_AMOUNT, PERCENT_RATE, creditPeriod, typeOfCredit);
+    }
+
+
+    @Benchmark
+    public List<PaymentDto> calculatePayments() {
+        // как и при создании кредита: расчёт и перевод в PaymentDto
+        return services.paymentService.createListOfPaymentDto(
+                services.paymentService.calculatePayments(DATE_OF_FIRST_PAYMENT, INITIAL_PAYMENT, CREDIT_AMOUNT, PERCENT_RATE, creditPeriod, new CreditEntity(), typeOfCredit));
+    }
+
+
+    @Benchmark
+    public BigDecimal findOutThePayment() {
+        return services.paymentService.findOutThePayment(INITIAL_PAYMENT, CREDIT_AMOUNT, PERCENT_RATE, creditPeriod, typeOfCredit);
+    }
+
+
+    @Benchmark
+    public BigDecimal calculateTaxDeduction() {
+        return services.paymentService.calculateTaxDeduction(INITIAL_PAYMENT, CREDIT_AMOUNT, PERCENT_RATE, creditPeriod, typeOfCredit, payment);
+    }
+}
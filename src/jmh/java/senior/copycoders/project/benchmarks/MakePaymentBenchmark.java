@@ -0,0 +1,60 @@
+package senior.copycoders.project.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import senior.copycoders.project.api.dto.AckDto;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проведение платежа по кредиту в памяти: чтение снимка графика, перерасчёт и запись события в журнал.
+ * Снимок при этом не перезаписывается, поэтому каждый вызов проводит тот же первый платёж по тому же графику
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MakePaymentBenchmark {
+
+    private static final Long CREDIT_ID = 1L;
+
+    @Param({"fixed-point", "bigdecimal"})
+    String engine;
+
+    @Param({"ANNUITY", "DIFFERENTIATED"})
+    TypeOfCredit typeOfCredit;
+
+    @Param({"12", "120", "360"})
+    int creditPeriod;
+
+    // scheduled - платёж по графику, early - частичное досрочное погашение (перерасчёт оставшихся платежей)
+    @Param({"scheduled", "early"})
+    String kindOfPayment;
+
+    BenchmarkServices services;
+    String date;
+    double payment;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = new BenchmarkServices(engine);
+
+        CreditEntity credit = services.createCredit(CREDIT_ID, typeOfCredit, creditPeriod);
+        PaymentEntity firstPayment = credit.getPaymentList().get(0);
+
+        date = firstPayment.getPaymentDate().toString();
+        payment = firstPayment.getPaymentAmount().doubleValue() * ("early".equals(kindOfPayment) ? 3 : 1);
+        payment = Math.round(payment * 100) / 100.0;
+    }
+
+
+    @Benchmark
+    public AckDto makePayment() {
+        return services.paymentService.makePayment(CREDIT_ID, date, payment);
+    }
+}
@@ -0,0 +1,44 @@
+package senior.copycoders.project.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.ResponseEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка графика платежей в PDF (шрифт и логотип читаются из src/main/resources, запускать из корня проекта)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfBenchmark {
+
+    private static final Long CREDIT_ID = 1L;
+
+    @Param({"ANNUITY", "DIFFERENTIATED"})
+    TypeOfCredit typeOfCredit;
+
+    @Param({"12", "120", "360"})
+    int creditPeriod;
+
+    BenchmarkServices services;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = new BenchmarkServices("fixed-point");
+        services.createCredit(CREDIT_ID, typeOfCredit, creditPeriod);
+    }
+
+
+    @Benchmark
+    public ResponseEntity<ByteArrayResource> generatePdfOfPayments() throws IOException {
+        return services.pdfService.generatePdfOfPayments(CREDIT_ID);
+    }
+}
@@ -0,0 +1,70 @@
+package senior.copycoders.project.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Задержки запросов по операциям и итоговая таблица: количество, ошибки, пропускная способность, p50/p99/max
+ */
+final class LatencyRecorder {
+
+    private final Map<String, Samples> samplesByOperation = new ConcurrentSkipListMap<>();
+
+
+    void record(String operation, long nanos, boolean isError) {
+        samplesByOperation.computeIfAbsent(operation, name -> new Samples()).add(nanos, isError);
+    }
+
+
+    String report(double seconds) {
+        StringBuilder report = new StringBuilder(String.format("%-15s %9s %7s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+
+        samplesByOperation.forEach((operation, samples) -> {
+            long[] nanos = samples.sorted();
+
+            report.append(String.format("%-15s %9d %7d %10.1f %10.2f %10.2f %10.2f%n",
+                    operation, nanos.length, samples.errors, nanos.length / seconds,
+                    percentile(nanos, 0.50), percentile(nanos, 0.99), nanos.length == 0 ? 0.0 : nanos[nanos.length - 1] / 1e6));
+        });
+
+        return report.toString();
+    }
+
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long value, boolean isError) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+
+            nanos[size++] = value;
+
+            if (isError) {
+                errors++;
+            }
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
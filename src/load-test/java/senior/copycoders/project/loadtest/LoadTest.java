@@ -0,0 +1,361 @@
+package senior.copycoders.project.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import senior.copycoders.project.ProjectApplication;
+import senior.copycoders.project.loadtest.LoadTestSettings.Operation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Нагрузочный тест: приложение целиком поверх встроенного PostgreSQL, синтетические пользователи и кредиты,
+ * затем смешанная нагрузка на настоящие endpoint'ы по HTTP (вход, создание кредита, график, платёж, PDF).
+ * <p>
+ * Запуск: mvn -P load-test test-compile exec:exec -Dload.args="--users=100 --threads=32 --duration=120"
+ * <p>
+ * Обращения к БД при создании кредита: -Dload.args="--users=10 --mix=create-credit:1" (для сравнения без пакетной вставки
+ * добавить --spring.jpa.properties.hibernate.jdbc.batch_size=1)
+ * <p>
+ * Объём хранения графиков: -Dload.args="--users=50 --mix=make-payment:1 --credit.payments.compact-storage=true"
+ */
+public final class LoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+
+    private final LoadTestSettings settings;
+    private final String baseUrl;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SyntheticData syntheticData;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<String> usernames = new CopyOnWriteArrayList<>();
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final List<CreditState> credits = new CopyOnWriteArrayList<>();
+
+
+    private LoadTest(LoadTestSettings settings, int port, JdbcTemplate jdbcTemplate) {
+        this.settings = settings;
+        this.baseUrl = "http://localhost:" + port;
+        this.syntheticData = new SyntheticData(settings.seed);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.parse(args);
+
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            List<String> applicationArgs = new ArrayList<>(List.of(
+                    "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                    "--spring.datasource.username=postgres",
+                    "--spring.datasource.password=postgres",
+                    "--server.port=0",
+                    "--logging.level.root=WARN",
+                    "--logging.level.senior.copycoders.project.api.exceptions=OFF"));
+            applicationArgs.addAll(settings.applicationArgs);
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProjectApplication.class).run(applicationArgs.toArray(String[]::new))) {
+                int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+
+                new LoadTest(settings, port, context.getBean(JdbcTemplate.class)).run();
+
+                System.out.print(statementsReport(context.getBean(MeterRegistry.class)));
+            }
+        }
+    }
+
+
+    private void run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(settings.threads);
+
+        try {
+            long start = System.nanoTime();
+            seed(executor);
+            System.out.printf("Seeded %d users and %d credits in %.1f s%n", usernames.size(), credits.size(), (System.nanoTime() - start) / 1e9);
+
+            // прогрев без учёта задержек
+            drive(executor, settings.warmupSeconds, new LatencyRecorder());
+
+            LatencyRecorder recorder = new LatencyRecorder();
+            String walStart = jdbcTemplate.queryForObject("select pg_current_wal_lsn()::text", String.class);
+            drive(executor, settings.durationSeconds, recorder);
+
+            System.out.printf("%nThreads: %d, duration: %d s%n", settings.threads, settings.durationSeconds);
+            System.out.print(recorder.report(settings.durationSeconds));
+            System.out.print(storageReport(walStart));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * SQL-запросы на HTTP-запрос за весь тест, включая заполнение данными (hibernate.statements.per.request).
+     * При пакетной вставке пакет считается одним запросом, так что это и есть число обращений к БД
+     */
+    private static String statementsReport(MeterRegistry meterRegistry) {
+        StringBuilder report = new StringBuilder(String.format("%n%-7s %-40s %9s %10s %10s%n", "method", "uri", "requests", "mean sql", "max sql"));
+
+        meterRegistry.find("hibernate.statements.per.request").summaries().stream()
+                .sorted(Comparator.comparing((DistributionSummary summary) -> summary.getId().getTag("uri")).thenComparing(summary -> summary.getId().getTag("method")))
+                .forEach(summary -> report.append(String.format("%-7s %-40s %9d %10.1f %10.0f%n",
+                        summary.getId().getTag("method"), summary.getId().getTag("uri"), summary.count(), summary.mean(), summary.max())));
+
+        return report.toString();
+    }
+
+
+    /**
+     * Размер таблиц графиков после теста и объём WAL за время измерения
+     * (для сравнения режимов хранения: --credit.payments.compact-storage=true)
+     */
+    private String storageReport(String walStart) {
+        StringBuilder report = new StringBuilder(String.format("%n%-8s %9s %12s %12s%n", "table", "rows", "table size", "index size"));
+
+        for (String table : List.of("credit", "payment")) {
+            jdbcTemplate.query("select count(*), pg_size_pretty(pg_table_size('" + table + "')), pg_size_pretty(pg_indexes_size('" + table + "')) from " + table,
+                    resultSet -> {
+                        report.append(String.format("%-8s %9d %12s %12s%n", table, resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+                    });
+        }
+
+        report.append(String.format("WAL written during measurement: %s%n", jdbcTemplate.queryForObject(
+                "select pg_size_pretty(pg_wal_lsn_diff(pg_current_wal_lsn(), ?::pg_lsn))", String.class, walStart)));
+
+        return report.toString();
+    }
+
+
+    private void seed(ExecutorService executor) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < settings.users; i++) {
+            String username = String.format("load_user_%05d", i);
+
+            futures.add(executor.submit(() -> {
+                JsonNode response = send("POST", "/auth/sign-up", null, Map.of("username", username, "email", username + "@example.com", "password", PASSWORD));
+                tokens.put(username, response.get("token").asText());
+                usernames.add(username);
+
+                List<Map<String, Object>> requests = new ArrayList<>();
+                for (int j = 0; j < settings.creditsPerUser; j++) {
+                    requests.add(syntheticData.nextCreditRequest());
+                }
+
+                for (JsonNode item : send("POST", "/api/credit/batch", tokens.get(username), requests)) {
+                    if (item.has("schedule")) {
+                        credits.add(new CreditState(item.get("schedule"), username));
+                    }
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+
+    private void drive(ExecutorService executor, int seconds, LatencyRecorder recorder) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < settings.threads; i++) {
+            Random random = new Random(settings.seed * 31 + i + seconds);
+
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    Operation operation = nextOperation(random);
+                    long start = System.nanoTime();
+                    boolean isError = false;
+
+                    try {
+                        if (!execute(operation, random)) {
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        isError = true;
+                    }
+
+                    recorder.record(operation.name, System.nanoTime() - start, isError);
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+
+    private Operation nextOperation(Random random) {
+        int total = settings.mix.values().stream().mapToInt(Integer::intValue).sum();
+        int value = random.nextInt(total);
+
+        for (Map.Entry<Operation, Integer> entry : settings.mix.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+
+        throw new IllegalStateException("Empty mix");
+    }
+
+
+    /**
+     * @return false, если операцию не с чем выполнить (все кредиты заняты или погашены) и её не нужно учитывать
+     */
+    private boolean execute(Operation operation, Random random) throws Exception {
+        String username = usernames.get(random.nextInt(usernames.size()));
+        String token = tokens.get(username);
+
+        switch (operation) {
+            case SIGN_IN -> tokens.put(username, send("POST", "/auth/sign-in", null, Map.of("username", username, "password", PASSWORD)).get("token").asText());
+            case CREATE_CREDIT -> credits.add(new CreditState(send("POST", "/api/credit", token, syntheticData.nextCreditRequest()), username));
+            case SCHEDULE -> {
+                CreditState credit = randomCredit(random);
+                send("GET", "/api/credit/" + credit.id + "/schedule", tokens.get(credit.owner), null);
+            }
+            case PDF -> {
+                CreditState credit = randomCredit(random);
+                sendForBytes("/api/download-pdf/" + credit.id, tokens.get(credit.owner));
+            }
+            case MAKE_PAYMENT -> {
+                CreditState credit = randomCredit(random);
+                return makePayment(credit, tokens.get(credit.owner));
+            }
+        }
+
+        return true;
+    }
+
+
+    // платежи по одному кредиту проводятся по очереди: следующий платёж известен только после предыдущего
+    private boolean makePayment(CreditState credit, String token) throws Exception {
+        if (!credit.lock.tryLock()) {
+            return false;
+        }
+
+        try {
+            JsonNode payment = credit.nextPayment();
+
+            if (payment == null) {
+                return false;
+            }
+
+            // до двух знаков после запятой и не меньше платежа по графику
+            BigDecimal amount = payment.get("payment_amount").decimalValue().setScale(2, RoundingMode.CEILING);
+
+            boolean isPosted = false;
+
+            try {
+                send("PATCH", "/api/credit/" + credit.id + "/make-payment?date=" + payment.get("payment_date").asText() + "&payment=" + amount.toPlainString(), token, null);
+                credit.next++;
+                isPosted = true;
+            } finally {
+                // после округления платежа вверх график пересчитывается (или платёж не прошёл),
+                // поэтому перечитываем его без учёта в статистике
+                if (!isPosted || amount.compareTo(payment.get("payment_amount").decimalValue()) != 0) {
+                    credit.reload(send("GET", "/api/credit/" + credit.id + "/schedule", token, null));
+                }
+            }
+
+            return true;
+        } finally {
+            credit.lock.unlock();
+        }
+    }
+
+
+    private CreditState randomCredit(Random random) {
+        return credits.get(random.nextInt(credits.size()));
+    }
+
+
+    private JsonNode send(String method, String path, String token, Object body) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(request(method, path, token, body), HttpResponse.BodyHandlers.ofByteArray());
+        checkStatus(method, path, response);
+
+        return objectMapper.readTree(response.body());
+    }
+
+
+    private byte[] sendForBytes(String path, String token) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(request("GET", path, token, null), HttpResponse.BodyHandlers.ofByteArray());
+        checkStatus("GET", path, response);
+
+        return response.body();
+    }
+
+
+    private HttpRequest request(String method, String path, String token, Object body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .header("Content-Type", "application/json");
+
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+
+        return builder.build();
+    }
+
+
+    private static void checkStatus(String method, String path, HttpResponse<byte[]> response) {
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(method + " " + path + " -> " + response.statusCode() + " " + new String(response.body()));
+        }
+    }
+
+
+    /**
+     * Кредит и его график на стороне клиента: по нему выбирается следующий платёж.
+     * С кредитом может работать только его владелец
+     */
+    private static final class CreditState {
+        final long id;
+        final String owner;
+        final ReentrantLock lock = new ReentrantLock();
+        JsonNode payments;
+        int next;
+
+        CreditState(JsonNode schedule, String owner) {
+            this.id = schedule.get("credit").get("id").asLong();
+            this.owner = owner;
+            reload(schedule);
+        }
+
+        void reload(JsonNode schedule) {
+            payments = schedule.get("payments");
+            next = 0;
+
+            while (next < payments.size() && "PAID".equals(payments.get(next).get("status").asText())) {
+                next++;
+            }
+        }
+
+        JsonNode nextPayment() {
+            return next < payments.size() ? payments.get(next) : null;
+        }
+    }
+}
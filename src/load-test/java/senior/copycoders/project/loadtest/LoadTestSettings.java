@@ -0,0 +1,97 @@
+package senior.copycoders.project.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста из аргументов вида --users=50.
+ * Аргументы --spring.*, --server.*, --credit.* и --logging.* передаются приложению как есть (например, --spring.datasource.hikari.maximum-pool-size=20)
+ */
+final class LoadTestSettings {
+
+    int users = 50;
+    int creditsPerUser = 4;
+    int threads = 16;
+    int warmupSeconds = 10;
+    int durationSeconds = 60;
+    long seed = 42;
+
+    // доли операций в смешанной нагрузке
+    final Map<Operation, Integer> mix = new LinkedHashMap<>(Map.of(
+            Operation.SIGN_IN, 5,
+            Operation.CREATE_CREDIT, 10,
+            Operation.SCHEDULE, 50,
+            Operation.MAKE_PAYMENT, 25,
+            Operation.PDF, 10));
+
+    final List<String> applicationArgs = new ArrayList<>();
+
+
+    static LoadTestSettings parse(String[] args) {
+        LoadTestSettings settings = new LoadTestSettings();
+
+        for (String arg : args) {
+            if (arg.startsWith("--spring.") || arg.startsWith("--server.") || arg.startsWith("--credit.") || arg.startsWith("--logging.")) {
+                settings.applicationArgs.add(arg);
+                continue;
+            }
+
+            String[] parts = arg.replaceFirst("^--", "").split("=", 2);
+
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+
+            switch (parts[0]) {
+                case "users" -> settings.users = Integer.parseInt(parts[1]);
+                case "credits-per-user" -> settings.creditsPerUser = Integer.parseInt(parts[1]);
+                case "threads" -> settings.threads = Integer.parseInt(parts[1]);
+                case "warmup" -> settings.warmupSeconds = Integer.parseInt(parts[1]);
+                case "duration" -> settings.durationSeconds = Integer.parseInt(parts[1]);
+                case "seed" -> settings.seed = Long.parseLong(parts[1]);
+                case "mix" -> settings.parseMix(parts[1]);
+                default -> throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        return settings;
+    }
+
+
+    // --mix=schedule:70,make-payment:30 (не указанные операции не выполняются)
+    private void parseMix(String value) {
+        mix.clear();
+
+        for (String item : value.split(",")) {
+            String[] parts = item.split(":");
+            mix.put(Operation.byName(parts[0]), Integer.parseInt(parts[1]));
+        }
+    }
+
+
+    enum Operation {
+        SIGN_IN("sign-in"),
+        CREATE_CREDIT("create-credit"),
+        SCHEDULE("schedule"),
+        MAKE_PAYMENT("make-payment"),
+        PDF("pdf");
+
+        final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        static Operation byName(String name) {
+            for (Operation operation : values()) {
+                if (operation.name.equals(name)) {
+                    return operation;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown operation " + name);
+        }
+    }
+}
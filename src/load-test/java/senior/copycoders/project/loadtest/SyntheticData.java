@@ -0,0 +1,74 @@
+package senior.copycoders.project.loadtest;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Заявки на кредит с правдоподобным распределением: суммы круглые (до 10 000), в основном ипотека на 10-30 лет,
+ * ставки около 12% с шагом 0.05, четыре из пяти кредитов - аннуитетные
+ */
+final class SyntheticData {
+
+    private static final int[] PERIODS = {12, 24, 36, 60, 120, 180, 240, 300, 360};
+    private static final int[] PERIOD_WEIGHTS = {5, 5, 10, 15, 15, 15, 20, 5, 10};
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private final Random random;
+
+
+    SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * Тело заявки для POST /api/credit (в формате CreditRequest)
+     */
+    synchronized Map<String, Object> nextCreditRequest() {
+        // логнормальное распределение с медианой 5 000 000
+        double amount = 5_000_000 * Math.exp(0.8 * random.nextGaussian());
+        long creditAmount = clamp(Math.round(amount / 10_000) * 10_000, 200_000, 30_000_000);
+
+        long initialPayment = random.nextInt(100) < 15 ? 0 : Math.round(creditAmount * (0.1 + 0.3 * random.nextDouble()) / 10_000) * 10_000;
+
+        double rate = Math.min(18, Math.max(0.05, 12 + 3 * random.nextGaussian()));
+        BigDecimal percentRate = BigDecimal.valueOf(Math.round(rate * 20) * 5L, 2);
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("date_of_first_payment", FIRST_DATE.plusDays(random.nextInt(365)).toString());
+        request.put("initial_payment", initialPayment);
+        request.put("credit_amount", creditAmount);
+        request.put("percent_rate", percentRate.setScale(2, RoundingMode.HALF_UP));
+        request.put("credit_period", nextPeriod());
+        request.put("type_of_credit", random.nextInt(5) == 0);
+
+        return request;
+    }
+
+
+    private int nextPeriod() {
+        int total = 0;
+        for (int weight : PERIOD_WEIGHTS) {
+            total += weight;
+        }
+
+        int value = random.nextInt(total);
+        for (int i = 0; i < PERIODS.length; i++) {
+            value -= PERIOD_WEIGHTS[i];
+            if (value < 0) {
+                return PERIODS[i];
+            }
+        }
+
+        return PERIODS[PERIODS.length - 1];
+    }
+
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
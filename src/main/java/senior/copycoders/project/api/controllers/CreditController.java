@@ -10,14 +10,23 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import senior.copycoders.project.api.dto.*;
+import senior.copycoders.project.api.exceptions.BadRequestException;
 import senior.copycoders.project.api.exceptions.ErrorDto;
+import senior.copycoders.project.api.services.CreditLedgerService;
 import senior.copycoders.project.api.services.CreditService;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+import senior.copycoders.project.store.repositories.CreditFilter;
 
 
 import java.math.BigDecimal;
@@ -30,6 +39,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CreditController {
     CreditService creditService;
+    CreditLedgerService creditLedgerService;
+    ObjectMapper objectMapper;
+
+    // через сколько элементов пакета сбрасывать ответ клиенту
+    private static final int BATCH_FLUSH_SIZE = 16;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @PostMapping("/api/credit")
     @Operation(
@@ -51,20 +67,111 @@ public class CreditController {
         return creditService.calculateSchedule(creditRequest.getDateOfFirstPayment(), BigDecimal.valueOf(creditRequest.getInitialPayment()), BigDecimal.valueOf(creditRequest.getCreditAmount()), BigDecimal.valueOf(creditRequest.getPercentRate()), creditRequest.getCreditPeriod(), creditRequest.getTypeOfCredit());
     }
 
+    @PostMapping(value = "/api/credit", produces = {ScheduleColumnsDto.MEDIA_TYPE, MediaType.APPLICATION_CBOR_VALUE})
+    @Operation(
+            summary = "Инициализация кредита и всех платежей к нему, график по столбцам (суммы в копейках), в JSON или CBOR в зависимости от Accept"
+    )
+    @SecurityRequirement(name = "Bearer Authentication")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = {@Content(mediaType = ScheduleColumnsDto.MEDIA_TYPE, schema = @Schema(implementation = ScheduleColumnsDto.class)),
+                            @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, schema = @Schema(implementation = ScheduleColumnsDto.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid information about credit.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ScheduleColumnsDto createCreditColumns(@RequestBody CreditRequest creditRequest) {
+        return creditService.calculateScheduleColumns(creditRequest.getDateOfFirstPayment(), BigDecimal.valueOf(creditRequest.getInitialPayment()), BigDecimal.valueOf(creditRequest.getCreditAmount()), BigDecimal.valueOf(creditRequest.getPercentRate()), creditRequest.getCreditPeriod(), creditRequest.getTypeOfCredit());
+    }
+
+    @PostMapping("/api/credit/batch")
+    @Operation(
+            summary = "Пакетная инициализация кредитов и всех платежей к ним",
+            description = "Графики считаются параллельно, ответ отдаётся потоком. Ошибка в заявке возвращается в элементе с её индексом и не отменяет остальные заявки"
+    )
+    @SecurityRequirement(name = "Bearer Authentication")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = CreditBatchItemDto.class)))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ResponseEntity<StreamingResponseBody> createCredits(@RequestBody List<CreditRequest> creditRequests) {
+
+        // все кредиты сохраняются до начала ответа, дальше только сериализация
+        List<CreditBatchItemDto> items = creditService.calculateSchedules(creditRequests);
+
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            generator.writeStartArray();
+
+            for (int i = 0; i < items.size(); i++) {
+                generator.writeObject(items.get(i));
+
+                if ((i + 1) % BATCH_FLUSH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/api/credit")
     @Operation(
-            summary = "Получение списка всех кредитов"
+            summary = "Получение списка своих кредитов постранично (без платежей)",
+            description = "Страницы выбираются по ключу: курсор следующей страницы приходит в заголовке X-Next-Cursor " +
+                    "(нет заголовка - страница последняя) и передаётся в параметре cursor вместе с теми же фильтрами и сортировкой"
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful response.",
                     content = @Content(array = @ArraySchema(schema = @Schema(implementation = CreditDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Invalid filter, sort or cursor.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
             @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
     })
-    public List<CreditDto> getAllCredit() {
-
-        // получаем список всех кредитов в БД
-        return creditService.getAllCredit();
+    public ResponseEntity<List<CreditDto>> getCredits(@RequestParam(name = "cursor", required = false) @Parameter(description = "курсор из заголовка X-Next-Cursor предыдущей страницы") String cursor,
+                                                            @RequestParam(name = "limit", defaultValue = "100") @Parameter(description = "размер страницы (от 1 до 1000)") Integer limit,
+                                                            @RequestParam(name = "sort", defaultValue = "id") @Parameter(description = "сортировка: id, credit_amount, percent_rate, credit_period или type_of_credit") String sort,
+                                                            @RequestParam(name = "direction", defaultValue = "asc") @Parameter(description = "направление сортировки: asc или desc") String direction,
+                                                            @RequestParam(name = "type_of_credit", required = false) @Parameter(description = "тип кредита: ANNUITY или DIFFERENTIATED") TypeOfCredit typeOfCredit,
+                                                            @RequestParam(name = "min_credit_amount", required = false) @Parameter(description = "минимальная сумма кредита") BigDecimal minCreditAmount,
+                                                            @RequestParam(name = "max_credit_amount", required = false) @Parameter(description = "максимальная сумма кредита") BigDecimal maxCreditAmount,
+                                                            @RequestParam(name = "min_percent_rate", required = false) @Parameter(description = "минимальная процентная ставка") BigDecimal minPercentRate,
+                                                            @RequestParam(name = "max_percent_rate", required = false) @Parameter(description = "максимальная процентная ставка") BigDecimal maxPercentRate,
+                                                            @RequestParam(name = "min_credit_period", required = false) @Parameter(description = "минимальный срок кредитования в месяцах") Integer minCreditPeriod,
+                                                            @RequestParam(name = "max_credit_period", required = false) @Parameter(description = "максимальный срок кредитования в месяцах") Integer maxCreditPeriod) {
+
+        if (!direction.equals("asc") && !direction.equals("desc")) {
+            throw new BadRequestException("Direction must be asc or desc");
+        }
+
+        CreditFilter filter = CreditFilter.builder()
+                .sort(CreditFilter.SortField.byApiName(sort).orElseThrow(() -> new BadRequestException("Unknown sort field: " + sort)))
+                .isDescending(direction.equals("desc"))
+                .typeOfCredit(typeOfCredit)
+                .minCreditAmount(minCreditAmount)
+                .maxCreditAmount(maxCreditAmount)
+                .minPercentRate(minPercentRate)
+                .maxPercentRate(maxPercentRate)
+                .minCreditPeriod(minCreditPeriod)
+                .maxCreditPeriod(maxCreditPeriod)
+                .build();
+
+        CreditPageDto page = creditService.getCreditPage(filter, cursor, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+
+        return response.body(page.getCredits());
     }
 
     @SecurityRequirement(name = "Bearer Authentication")
@@ -88,6 +195,23 @@ public class CreditController {
     }
 
 
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/api/credit/{credit_id}/events")
+    @Operation(
+            summary = "Получение журнала событий по кредиту (выдача, платежи, закрытие)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = CreditEventDto.class)))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token."),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class)))
+    })
+    public List<CreditEventDto> getCreditEvents(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId) {
+        return creditLedgerService.getEventsByCreditId(creditId);
+    }
+
+
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/api/credit/constants")
     @Operation(
@@ -3,6 +3,7 @@ package senior.copycoders.project.api.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,15 +13,33 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
 import senior.copycoders.project.api.dto.AckDto;
+import senior.copycoders.project.api.dto.AffordabilityDto;
+import senior.copycoders.project.api.dto.CreditRequest;
+import senior.copycoders.project.api.dto.EffectiveRateItemDto;
 import senior.copycoders.project.api.dto.InitialDataOfCreditDto;
+import senior.copycoders.project.api.dto.PaymentDeltaDto;
 import senior.copycoders.project.api.dto.PaymentWithCreditDto;
+import senior.copycoders.project.api.dto.ScenarioGridDto;
+import senior.copycoders.project.api.dto.ScenarioGridRequest;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+import senior.copycoders.project.api.dto.TaxDeductionDto;
 import senior.copycoders.project.api.exceptions.ErrorDto;
+import senior.copycoders.project.api.services.AffordabilityService;
+import senior.copycoders.project.api.services.EffectiveRateService;
 import senior.copycoders.project.api.services.PaymentService;
+import senior.copycoders.project.api.services.ScenarioService;
+import senior.copycoders.project.api.services.TaxDeductionService;
 import senior.copycoders.project.store.enums.TypeOfCredit;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 
 @RestController
@@ -29,6 +48,11 @@ import java.math.BigDecimal;
 @RequiredArgsConstructor
 public class PaymentController {
     PaymentService paymentService;
+    ControllerHelper controllerHelper;
+    ScenarioService scenarioService;
+    TaxDeductionService taxDeductionService;
+    EffectiveRateService effectiveRateService;
+    AffordabilityService affordabilityService;
 
     @GetMapping("/api/credit/{credit_id}/schedule")
     @SecurityRequirement(name = "Bearer Authentication")
@@ -38,11 +62,17 @@ public class PaymentController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful response.",
                     content = @Content(schema = @Schema(implementation = PaymentWithCreditDto.class))),
+            @ApiResponse(responseCode = "304", description = "Schedule not modified since the version in If-None-Match."),
             @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
                     content = @Content(schema = @Schema(implementation = ErrorDto.class))),
             @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
     })
-    public PaymentWithCreditDto getCreditById(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId) {
+    public PaymentWithCreditDto getCreditById(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId, ServletWebRequest webRequest) {
+
+        // если график не менялся, отвечаем 304 без загрузки платежей
+        if (controllerHelper.checkScheduleNotModified(creditId, "json", webRequest)) {
+            return null;
+        }
 
         // Получаем все платежи из paymentService
         return paymentService.getAllPaymentsByCreditId(creditId);
@@ -50,6 +80,77 @@ public class PaymentController {
     }
 
 
+    @GetMapping(value = "/api/credit/{credit_id}/schedule", produces = ScheduleColumnsDto.MEDIA_TYPE)
+    @SecurityRequirement(name = "Bearer Authentication")
+    @Operation(
+            summary = "Получение графика платежей по id кредита по столбцам (суммы в копейках) в JSON"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(mediaType = ScheduleColumnsDto.MEDIA_TYPE, schema = @Schema(implementation = ScheduleColumnsDto.class))),
+            @ApiResponse(responseCode = "304", description = "Schedule not modified since the version in If-None-Match."),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ScheduleColumnsDto getCreditColumnsById(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId, ServletWebRequest webRequest) {
+
+        if (controllerHelper.checkScheduleNotModified(creditId, "columnar", webRequest)) {
+            return null;
+        }
+
+        return paymentService.getScheduleColumnsByCreditId(creditId);
+    }
+
+
+    @GetMapping(value = "/api/credit/{credit_id}/schedule", produces = MediaType.APPLICATION_CBOR_VALUE)
+    @SecurityRequirement(name = "Bearer Authentication")
+    @Operation(
+            summary = "Получение графика платежей по id кредита по столбцам (суммы в копейках) в CBOR"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE, schema = @Schema(implementation = ScheduleColumnsDto.class))),
+            @ApiResponse(responseCode = "304", description = "Schedule not modified since the version in If-None-Match."),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ScheduleColumnsDto getCreditCborById(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId, ServletWebRequest webRequest) {
+
+        // те же столбцы, что и в JSON, но ETag свой: представление выбирает Spring по Accept
+        if (controllerHelper.checkScheduleNotModified(creditId, "cbor", webRequest)) {
+            return null;
+        }
+
+        return paymentService.getScheduleColumnsByCreditId(creditId);
+    }
+
+
+    @GetMapping(value = "/api/credit/{credit_id}/schedule", params = "stream=true")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @Operation(
+            summary = "Получение графика платежей по id кредита потоком (тот же JSON, но без промежуточных DTO)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = PaymentWithCreditDto.class))),
+            @ApiResponse(responseCode = "304", description = "Schedule not modified since the version in If-None-Match."),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ResponseEntity<StreamingResponseBody> streamCreditById(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId, @RequestParam(name = "stream") @Parameter(description = "true - отдать график потоком") Boolean stream, ServletWebRequest webRequest) {
+
+        // JSON тот же, что и без потока, поэтому и ETag тот же
+        if (controllerHelper.checkScheduleNotModified(creditId, "json", webRequest)) {
+            return null;
+        }
+
+        return paymentService.streamPaymentsByCreditId(creditId);
+    }
+
+
     @SecurityRequirement(name = "Bearer Authentication")
     @PatchMapping("/api/credit/{credit_id}/make-payment")
     @Operation(
@@ -69,6 +170,25 @@ public class PaymentController {
     }
 
 
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PatchMapping(value = "/api/credit/{credit_id}/make-payment", params = "delta=true")
+    @Operation(
+            summary = "Начисления платежа по кредиту, в ответе только изменившиеся платежи и новая версия графика"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = PaymentDeltaDto.class))),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token."),
+            @ApiResponse(responseCode = "400", description = "Invalid data of payment or date.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class)))
+    })
+    public PaymentDeltaDto makePaymentWithDelta(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId, @RequestParam(name = "date") @Parameter(description = "дата платежа (формат yyyy-MM-dd)") String date, @RequestParam(name = "payment") @Parameter(description = "сумма платежа (до двух знаков после запятой)") Double currentPayment, @RequestParam(name = "delta") @Parameter(description = "true - вернуть изменения графика") Boolean delta) {
+        return paymentService.makePaymentWithDelta(creditId, date, currentPayment);
+    }
+
+
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/api/calculate-payment")
     @Operation(
@@ -93,14 +213,108 @@ public class PaymentController {
 
         BigDecimal taxDeduction = paymentService.calculateTaxDeduction(BigDecimal.valueOf(initialPayment), BigDecimal.valueOf(creditAmount), BigDecimal.valueOf(percentRate), creditPeriod, typeOfCredit, payment);
 
+        // ПСК по графику платежей
+        BigDecimal effectiveRate = effectiveRateService.calculateEffectiveRate(BigDecimal.valueOf(initialPayment), BigDecimal.valueOf(creditAmount), BigDecimal.valueOf(percentRate), creditPeriod, typeOfCredit);
+
         return InitialDataOfCreditDto.builder()
                 .payment(payment)
                 .taxDeduction(taxDeduction)
-                .range("22.12-24.45%")
+                .range(effectiveRate.toPlainString() + "%")
+                .effectiveRate(effectiveRate)
                 .build();
 
 
     }
 
 
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/api/calculate-payment/grid")
+    @Operation(
+            summary = "Сравнение вариантов кредита: платёж, сумма процентов и налоговый вычет по сетке ставка × срок × первоначальный взнос"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = ScenarioGridDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid ranges or information about credit.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public ScenarioGridDto getScenarioGrid(@RequestBody ScenarioGridRequest scenarioGridRequest) {
+        return scenarioService.calculateGrid(scenarioGridRequest);
+    }
+
+
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/api/calculate-tax-deduction")
+    @Operation(
+            summary = "Налоговый вычет по процентам за весь срок кредита (по годам и нарастающим итогом)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = TaxDeductionDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid information about credit.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public TaxDeductionDto getTaxDeduction(@RequestParam(name = "initial_payment") @Parameter(description = "начальный платёж (неотрицательное вещественное число, до двух знаков после запятой)") Double initialPayment, @RequestParam(name = "credit_amount") @Parameter(description = "сумма кредита (положительное вещественное число, до двух знаков после запятой, min = 200_000, max = 30_000_000)") Double creditAmount, @RequestParam(name = "percent_rate") @Parameter(description = "годовая процентная ставка (положительное вещественное число, до двух знаков после запятой, min = 0% (не включительно), max = 18%)") Double percentRate, @RequestParam(name = "credit_period") @Parameter(description = "срок кредитования в месяцах (положительное целое число, min = 12 месяцев(1 год), max = 360(30 лет))") Integer creditPeriod, @RequestParam(name = "typeOfCredit") @Parameter(description = "тип кредита, false - аннуитет, true - дифференцированный") Boolean type) {
+
+        TypeOfCredit typeOfCredit = type ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY;
+
+        return taxDeductionService.calculateTaxDeduction(BigDecimal.valueOf(initialPayment), BigDecimal.valueOf(creditAmount), BigDecimal.valueOf(percentRate), creditPeriod, typeOfCredit);
+    }
+
+
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/api/credit/{credit_id}/tax-deduction")
+    @Operation(
+            summary = "Налоговый вычет по процентам за весь срок сохранённого кредита (с учётом внесённых платежей)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = TaxDeductionDto.class))),
+            @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public TaxDeductionDto getTaxDeductionByCreditId(@PathVariable(name = "credit_id") @Parameter(description = "id кредита") Long creditId) {
+        return taxDeductionService.getTaxDeductionByCreditId(creditId);
+    }
+
+
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/api/calculate-payment/effective-rate")
+    @Operation(
+            summary = "Пакетный расчёт эффективной годовой ставки (ПСК) по списку кредитов",
+            description = "Ошибка в заявке возвращается в элементе с её индексом и не отменяет остальные заявки, дата первого платежа не обязательна"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = EffectiveRateItemDto.class)))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public List<EffectiveRateItemDto> getEffectiveRates(@RequestBody List<CreditRequest> creditRequests) {
+        return effectiveRateService.calculateEffectiveRates(creditRequests);
+    }
+
+
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/api/calculate-credit-amount")
+    @Operation(
+            summary = "Узнать максимальную сумму кредита при заданном ежемесячном платеже (для дифференцированного - первом платеже)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successful response.",
+                    content = @Content(schema = @Schema(implementation = AffordabilityDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid information about credit or payment is too small.",
+                    content = @Content(schema = @Schema(implementation = ErrorDto.class))),
+            @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
+    })
+    public AffordabilityDto getMaxCreditAmount(@RequestParam(name = "payment") @Parameter(description = "ежемесячный платёж (положительное вещественное число, до двух знаков после запятой)") Double payment, @RequestParam(name = "initial_payment") @Parameter(description = "начальный платёж (неотрицательное вещественное число, до двух знаков после запятой)") Double initialPayment, @RequestParam(name = "percent_rate") @Parameter(description = "годовая процентная ставка (положительное вещественное число, до двух знаков после запятой, min = 0% (не включительно), max = 18%)") Double percentRate, @RequestParam(name = "credit_period") @Parameter(description = "срок кредитования в месяцах (положительное целое число, min = 12 месяцев(1 год), max = 360(30 лет))") Integer creditPeriod, @RequestParam(name = "typeOfCredit") @Parameter(description = "тип кредита, false - аннуитет, true - дифференцированный") Boolean type) {
+
+        TypeOfCredit typeOfCredit = type ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY;
+
+        return affordabilityService.findOutTheMaxCreditAmount(BigDecimal.valueOf(payment), BigDecimal.valueOf(initialPayment), BigDecimal.valueOf(percentRate), creditPeriod, typeOfCredit);
+    }
+
+
 }
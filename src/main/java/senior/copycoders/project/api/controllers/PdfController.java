@@ -25,6 +25,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
 import senior.copycoders.project.api.dto.InitialDataOfCreditDto;
 import senior.copycoders.project.api.exceptions.ErrorDto;
@@ -42,6 +43,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PdfController {
     PdfService pdfService;
+    ControllerHelper controllerHelper;
 
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/api/download-pdf/{credit_id}")
@@ -50,11 +52,18 @@ public class PdfController {
     )
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successful response."),
+            @ApiResponse(responseCode = "304", description = "Schedule not modified since the version in If-None-Match."),
             @ApiResponse(responseCode = "404", description = "Credit with {credit_id} not found.",
                     content = @Content(schema = @Schema(implementation = ErrorDto.class))),
             @ApiResponse(responseCode = "403", description = "Missing or invalid token.")
     })
-    public ResponseEntity<ByteArrayResource> downloadPdf(@PathVariable(name = "credit_id") Long creditId) throws IOException {
+    public ResponseEntity<ByteArrayResource> downloadPdf(@PathVariable(name = "credit_id") Long creditId, ServletWebRequest webRequest) throws IOException {
+
+        // если график не менялся, pdf не пересобираем
+        if (controllerHelper.checkScheduleNotModified(creditId, "pdf", webRequest)) {
+            return null;
+        }
+
         return pdfService.generatePdfOfPayments(creditId);
     }
 
@@ -5,9 +5,12 @@ import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
 import senior.copycoders.project.api.exceptions.BadRequestException;
 import senior.copycoders.project.api.exceptions.NotFoundException;
+import senior.copycoders.project.api.services.UserService;
 import senior.copycoders.project.store.entities.CreditEntity;
 import senior.copycoders.project.store.enums.CreditConstants;
 import senior.copycoders.project.store.repositories.CreditRepository;
@@ -23,6 +26,7 @@ import java.time.format.DateTimeParseException;
 @Transactional
 public class ControllerHelper {
     CreditRepository creditRepository;
+    UserService userService;
     static BigDecimal MAX_PERCENT_RATE = BigDecimal.valueOf(18);
 
 
@@ -34,6 +38,9 @@ public class ControllerHelper {
      * @param percentRate    годовая процентная ставка (именно 10, а не 0.1)
      * @param creditPeriod   срок кредитования в месяцах
      */
+    // ошибка валидации не должна откатывать внешнюю транзакцию (пакетное создание кредитов продолжается),
+    // а своя транзакция для проверки чисел не нужна
+    @Transactional(value = Transactional.TxType.SUPPORTS, dontRollbackOn = BadRequestException.class)
     public void validateDataOfCredit(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
 
         // сначала проверим, что все числа имеют не более двух знаков после запятой
@@ -115,15 +122,54 @@ public class ControllerHelper {
 
 
     /**
-     * Проверка нахождения кредита по id в БД
+     * Проверка нахождения кредита по id в БД. Кредит другого пользователя считается ненайденным
      *
      * @param creditId id кредита
      */
     public CreditEntity getCreditOrThrowException(Long creditId) {
-        return creditRepository.findById(creditId)
+        return creditRepository.findByIdAndPersonId(creditId, userService.getCurrentUserId())
                 .orElseThrow(() -> new NotFoundException(String.format("Credit with id=%d doesn't exists", creditId)));
     }
 
+    /**
+     * То же, что и getCreditOrThrowException, но строка кредита блокируется до конца транзакции:
+     * изменения одного кредита (платежи и события журнала) идут по очереди
+     *
+     * @param creditId id кредита
+     */
+    public CreditEntity getCreditForUpdateOrThrowException(Long creditId) {
+        return creditRepository.findForUpdateByIdAndPersonId(creditId, userService.getCurrentUserId())
+                .orElseThrow(() -> new NotFoundException(String.format("Credit with id=%d doesn't exists", creditId)));
+    }
+
+    /**
+     * Строгий ETag графика платежей: меняется при каждом изменении графика и отличается для разных представлений.
+     * Для проверки достаточно прочитать версию графика, сам кредит и платежи не загружаются
+     *
+     * @param creditId       id кредита
+     * @param representation представление графика (json, columnar, cbor, pdf)
+     */
+    public String getScheduleETag(Long creditId, String representation) {
+        Long version = creditRepository.findScheduleVersionByIdAndPersonId(creditId, userService.getCurrentUserId())
+                .orElseThrow(() -> new NotFoundException(String.format("Credit with id=%d doesn't exists", creditId)));
+
+        return String.format("\"%d-%d-%s\"", creditId, version, representation);
+    }
+
+    /**
+     * Проверка If-None-Match по ETag графика. Представления графика отдаются по одному адресу в зависимости от Accept,
+     * поэтому в каждом ответе (и в 304) есть Vary: Accept: иначе общий кэш мог бы отдать CBOR клиенту, который ждёт JSON
+     *
+     * @param creditId       id кредита
+     * @param representation представление графика (json, columnar, cbor, pdf)
+     * @return true, если график не менялся и ответ 304 уже подготовлен
+     */
+    public boolean checkScheduleNotModified(Long creditId, String representation, ServletWebRequest webRequest) {
+        webRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        return webRequest.checkNotModified(getScheduleETag(creditId, representation));
+    }
+
     /**
      * Проверка строки на правильный формат даты
      *
@@ -0,0 +1,31 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "максимальная сумма кредита при заданном ежемесячном платеже")
+public class AffordabilityDto {
+
+    @NonNull
+    @JsonProperty("credit_amount")
+    @Schema(description = "максимальная сумма кредита (вместе с первоначальным взносом)")
+    BigDecimal creditAmount;
+
+    @NonNull
+    @Schema(description = "платёж при этой сумме кредита (для дифференцированного - первый платёж), не больше бюджета")
+    BigDecimal payment;
+
+    @NonNull
+    @JsonProperty("limited_by_max_credit_amount")
+    @Schema(description = "true, если бюджет позволяет больше, но сумма ограничена максимальной суммой кредита")
+    Boolean limitedByMaxCreditAmount;
+}
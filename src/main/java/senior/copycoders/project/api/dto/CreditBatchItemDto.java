@@ -0,0 +1,27 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.api.exceptions.ErrorDto;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "результат обработки одной заявки из пакета: либо график платежей, либо ошибка")
+public class CreditBatchItemDto {
+
+    @NonNull
+    @Schema(description = "номер заявки в пакете (с нуля)")
+    Integer index;
+
+    @Schema(description = "созданный кредит и график платежей по нему")
+    PaymentWithCreditDto schedule;
+
+    @Schema(description = "ошибка валидации заявки")
+    ErrorDto error;
+}
@@ -0,0 +1,40 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "событие по кредиту")
+public class CreditEventDto {
+    @NonNull
+    @JsonProperty("event_number")
+    @Schema(description = "порядковый номер события по кредиту")
+    Integer eventNumber;
+
+    @NonNull
+    @Schema(description = "тип события: CREATED - кредит выдан, PAYMENT_POSTED - внесён платёж, CREDIT_CLOSED - кредит погашен")
+    TypeOfCreditEvent type;
+
+    @JsonProperty("event_date")
+    @Schema(description = "для CREATED - дата первого платежа, для PAYMENT_POSTED - дата платежа")
+    LocalDate eventDate;
+
+    @Schema(description = "для CREATED - сумма кредита за вычетом первоначального взноса, для PAYMENT_POSTED - сумма платежа")
+    BigDecimal amount;
+
+    @NonNull
+    @JsonProperty("created_at")
+    @Schema(description = "время записи события")
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,27 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "страница списка кредитов")
+public class CreditPageDto {
+
+    @NonNull
+    @Schema(description = "кредиты страницы в порядке сортировки")
+    List<CreditDto> credits;
+
+    @JsonProperty("next_cursor")
+    @Schema(description = "курсор следующей страницы (нет, если страница последняя)")
+    String nextCursor;
+}
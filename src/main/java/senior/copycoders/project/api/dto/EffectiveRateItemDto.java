@@ -0,0 +1,31 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.api.exceptions.ErrorDto;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "эффективная ставка по одной заявке из пакета: либо ставка, либо ошибка")
+public class EffectiveRateItemDto {
+
+    @NonNull
+    @Schema(description = "номер заявки в пакете (с нуля)")
+    Integer index;
+
+    @JsonProperty("effective_rate")
+    @Schema(description = "эффективная годовая ставка в процентах")
+    BigDecimal effectiveRate;
+
+    @Schema(description = "ошибка валидации заявки")
+    ErrorDto error;
+}
@@ -25,6 +25,11 @@ public class InitialDataOfCreditDto {
     BigDecimal payment;
 
     @NonNull
-    @Schema(description = "диапазон ПСК")
+    @Schema(description = "ПСК (эффективная годовая ставка в процентах, строкой вида \"12.68%\")")
     String range;
+
+    @NonNull
+    @JsonProperty("effective_rate")
+    @Schema(description = "эффективная годовая ставка в процентах")
+    BigDecimal effectiveRate;
 }
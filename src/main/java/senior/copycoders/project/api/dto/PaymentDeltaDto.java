@@ -0,0 +1,34 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "изменения графика платежей после внесения платежа")
+public class PaymentDeltaDto {
+
+    @NonNull
+    @Schema(description = "версия графика после платежа (та же, что в ETag графика)")
+    Long version;
+
+    @NonNull
+    @Schema(description = "новые платежи")
+    List<PaymentDto> inserted;
+
+    @NonNull
+    @Schema(description = "изменившиеся платежи (в новом виде)")
+    List<PaymentDto> updated;
+
+    @NonNull
+    @JsonProperty("deleted_payment_numbers")
+    @Schema(description = "номера удалённых платежей (по графику до внесения платежа)")
+    List<Integer> deletedPaymentNumbers;
+}
@@ -1,11 +1,13 @@
 package senior.copycoders.project.api.dto;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -25,4 +27,10 @@ public class PaymentWithCreditDto {
     @NonNull
     @Schema(description = "список платежей")
     List<PaymentDto> payments;
+
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("effective_rate")
+    @Schema(description = "эффективная годовая ставка в процентах по актуальному графику")
+    BigDecimal effectiveRate;
 }
@@ -0,0 +1,46 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "сетка сценариев: значения по осям и результаты по всем ячейкам. " +
+        "Ячейка [i][j][k] (ставка, срок, взнос) лежит в массивах по индексу (i * credit_periods.length + j) * initial_payments.length + k")
+public class ScenarioGridDto {
+
+    @NonNull
+    @Schema(description = "годовые процентные ставки (ось i)")
+    @JsonProperty("percent_rates")
+    double[] percentRates;
+
+    @NonNull
+    @Schema(description = "сроки кредитования в месяцах (ось j)")
+    @JsonProperty("credit_periods")
+    int[] creditPeriods;
+
+    @NonNull
+    @Schema(description = "первоначальные взносы (ось k)")
+    @JsonProperty("initial_payments")
+    double[] initialPayments;
+
+    @NonNull
+    @Schema(description = "ежемесячный платёж (для дифференцированного - первый платёж)")
+    @JsonProperty("payments")
+    double[] payments;
+
+    @NonNull
+    @Schema(description = "сумма процентов за весь срок")
+    @JsonProperty("total_interest")
+    double[] totalInterest;
+
+    @NonNull
+    @Schema(description = "налоговый вычет за первый год")
+    @JsonProperty("tax_deductions")
+    double[] taxDeductions;
+}
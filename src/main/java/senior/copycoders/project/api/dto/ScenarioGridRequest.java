@@ -0,0 +1,37 @@
+package senior.copycoders.project.api.dto;
+
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+
+@Getter
+public class ScenarioGridRequest {
+
+    @NotNull
+    @Schema(description = "сумма кредита (положительное вещественное число, до двух знаков после запятой, min = 200_000, max = 30_000_000)")
+    @JsonProperty("credit_amount")
+    private Double creditAmount;
+
+    @NotNull
+    @Schema(description = "тип кредита, false - аннуитет, true - дифференцированный")
+    @JsonProperty("type_of_credit")
+    private Boolean typeOfCredit;
+
+    @NotNull
+    @Schema(description = "диапазон годовой процентной ставки (до двух знаков после запятой)")
+    @JsonProperty("percent_rate")
+    private ValueRangeDto percentRate;
+
+    @NotNull
+    @Schema(description = "диапазон срока кредитования в месяцах (целые числа)")
+    @JsonProperty("credit_period")
+    private ValueRangeDto creditPeriod;
+
+    @NotNull
+    @Schema(description = "диапазон первоначального взноса (до двух знаков после запятой)")
+    @JsonProperty("initial_payment")
+    private ValueRangeDto initialPayment;
+
+}
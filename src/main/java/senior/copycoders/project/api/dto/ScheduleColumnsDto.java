@@ -0,0 +1,69 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "график платежей по столбцам: i-й платёж - i-е элементы всех массивов, суммы в копейках")
+public class ScheduleColumnsDto {
+
+    // Accept для графика по столбцам в JSON (в CBOR - application/cbor)
+    public static final String MEDIA_TYPE = "application/vnd.copycoders.schedule.columnar+json";
+
+    @NonNull
+    @JsonProperty("credit")
+    @Schema(description = "информация про кредит")
+    CreditDto credit;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("effective_rate")
+    @Schema(description = "эффективная годовая ставка в процентах по актуальному графику")
+    BigDecimal effectiveRate;
+
+    @NonNull
+    @JsonProperty("payment_number")
+    @Schema(description = "номера платежей")
+    int[] paymentNumber;
+
+    @NonNull
+    @JsonProperty("payment_date")
+    @Schema(description = "даты платежей (формат yyyy-MM-dd)")
+    String[] paymentDate;
+
+    @NonNull
+    @JsonProperty("payment_amount")
+    @Schema(description = "суммы платежей в копейках")
+    long[] paymentAmount;
+
+    @NonNull
+    @Schema(description = "погашение процентов в копейках")
+    long[] percent;
+
+    @NonNull
+    @JsonProperty("repayment_credit")
+    @Schema(description = "погашение основного долга в копейках")
+    long[] repaymentCredit;
+
+    @NonNull
+    @JsonProperty("after_payment")
+    @Schema(description = "долг после платежа в копейках")
+    long[] afterPayment;
+
+    @NonNull
+    @JsonProperty("before_payment")
+    @Schema(description = "долг до платежа в копейках")
+    long[] beforePayment;
+
+    @NonNull
+    @Schema(description = "статусы платежей (PAID или PENDING)")
+    String[] status;
+}
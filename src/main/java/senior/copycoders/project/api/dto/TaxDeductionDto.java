@@ -0,0 +1,37 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "налоговый вычет по процентам за весь срок кредита")
+public class TaxDeductionDto {
+
+    @NonNull
+    @JsonProperty("total_percent")
+    @Schema(description = "проценты за весь срок")
+    BigDecimal totalPercent;
+
+    @NonNull
+    @JsonProperty("total_tax_deduction")
+    @Schema(description = "налоговый вычет за весь срок (с учётом ограничения)")
+    BigDecimal totalTaxDeduction;
+
+    @NonNull
+    @JsonProperty("max_tax_deduction")
+    @Schema(description = "ограничение налогового вычета")
+    BigDecimal maxTaxDeduction;
+
+    @NonNull
+    @Schema(description = "вычет по годам кредита")
+    List<TaxDeductionYearDto> years;
+}
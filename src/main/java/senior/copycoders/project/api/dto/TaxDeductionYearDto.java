@@ -0,0 +1,35 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "налоговый вычет за один год кредита")
+public class TaxDeductionYearDto {
+
+    @NonNull
+    @Schema(description = "год кредита (1 - первые 12 платежей)")
+    Integer year;
+
+    @NonNull
+    @Schema(description = "уплаченные за год проценты")
+    BigDecimal percent;
+
+    @NonNull
+    @JsonProperty("tax_deduction")
+    @Schema(description = "налоговый вычет за год (с учётом ограничения)")
+    BigDecimal taxDeduction;
+
+    @NonNull
+    @JsonProperty("cumulative_tax_deduction")
+    @Schema(description = "налоговый вычет нарастающим итогом")
+    BigDecimal cumulativeTaxDeduction;
+}
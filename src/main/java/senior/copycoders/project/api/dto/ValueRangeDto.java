@@ -0,0 +1,31 @@
+package senior.copycoders.project.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Schema(description = "диапазон значений с шагом (границы включительно)")
+public class ValueRangeDto {
+
+    @NotNull
+    @Schema(description = "начало диапазона")
+    @JsonProperty("from")
+    Double from;
+
+    @NotNull
+    @Schema(description = "конец диапазона")
+    @JsonProperty("to")
+    Double to;
+
+    @NotNull
+    @Schema(description = "шаг (положительное число)")
+    @JsonProperty("step")
+    Double step;
+}
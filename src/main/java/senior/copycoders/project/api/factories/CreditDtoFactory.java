@@ -3,6 +3,7 @@ package senior.copycoders.project.api.factories;
 import org.springframework.stereotype.Component;
 import senior.copycoders.project.api.dto.CreditDto;
 import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.repositories.CreditSummary;
 
 @Component
 public class CreditDtoFactory {
@@ -19,4 +20,17 @@ public class CreditDtoFactory {
                 .typeOfCredit(creditEntity.getTypeOfCredit())
                 .build();
     }
+
+    public CreditDto makeCreditDto(CreditSummary creditSummary) {
+
+        return CreditDto.builder()
+                .id(creditSummary.id())
+                .initialPayment(creditSummary.initialPayment())
+                .creditAmount(creditSummary.creditAmount())
+                .percentRate(creditSummary.percentRate())
+                .creditPeriod(creditSummary.creditPeriod())
+                .payment(creditSummary.payment())
+                .typeOfCredit(creditSummary.typeOfCredit())
+                .build();
+    }
 }
@@ -0,0 +1,19 @@
+package senior.copycoders.project.api.factories;
+
+import org.springframework.stereotype.Component;
+import senior.copycoders.project.api.dto.CreditEventDto;
+import senior.copycoders.project.store.entities.CreditEventEntity;
+
+@Component
+public class CreditEventDtoFactory {
+
+    public CreditEventDto makeCreditEventDto(CreditEventEntity creditEventEntity) {
+        return CreditEventDto.builder()
+                .eventNumber(creditEventEntity.getEventNumber())
+                .type(creditEventEntity.getType())
+                .eventDate(creditEventEntity.getEventDate())
+                .amount(creditEventEntity.getAmount())
+                .createdAt(creditEventEntity.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package senior.copycoders.project.api.factories;
+
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import senior.copycoders.project.api.dto.CreditDto;
+import senior.copycoders.project.store.entities.PaymentEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Запись графика платежей в JSON напрямую из сущностей, без промежуточного списка PaymentDto.
+ * Результат совпадает с сериализацией PaymentWithCreditDto
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class PaymentJsonWriter {
+    ObjectMapper objectMapper;
+
+    // через сколько платежей сбрасывать ответ клиенту
+    static int FLUSH_SIZE = 32;
+
+
+    /**
+     * @param outputStream  куда писать (не закрывается)
+     * @param credit        информация про кредит
+     * @param payments      график платежей по порядку
+     * @param effectiveRate эффективная годовая ставка (может быть null)
+     */
+    public void writePaymentWithCreditDto(OutputStream outputStream, CreditDto credit, List<PaymentEntity> payments, BigDecimal effectiveRate) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(outputStream);
+
+        generator.writeStartObject();
+
+        generator.writeFieldName("credit");
+        generator.writeObject(credit);
+
+        generator.writeArrayFieldStart("payments");
+        for (int i = 0; i < payments.size(); i++) {
+            writePayment(generator, payments.get(i));
+
+            if ((i + 1) % FLUSH_SIZE == 0) {
+                generator.flush();
+            }
+        }
+        generator.writeEndArray();
+
+        if (effectiveRate != null) {
+            generator.writeNumberField("effective_rate", effectiveRate);
+        }
+
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+
+    // те же поля, что и в PaymentDto
+    private static void writePayment(JsonGenerator generator, PaymentEntity payment) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("payment_number", payment.getPaymentNumber());
+        generator.writeStringField("payment_date", payment.getPaymentDate().toString());
+        generator.writeNumberField("payment_amount", payment.getPaymentAmount());
+        generator.writeNumberField("percent", payment.getPercent());
+        generator.writeNumberField("repayment_credit", payment.getRepaymentCredit());
+        generator.writeNumberField("after_payment", payment.getAfterPayment());
+        generator.writeStringField("status", payment.getStatus().name());
+        generator.writeNumberField("before_payment", payment.getBeforePayment());
+        generator.writeEndObject();
+    }
+}
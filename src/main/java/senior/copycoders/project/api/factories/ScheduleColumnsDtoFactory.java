@@ -0,0 +1,59 @@
+package senior.copycoders.project.api.factories;
+
+import org.springframework.stereotype.Component;
+import senior.copycoders.project.api.dto.CreditDto;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+import senior.copycoders.project.store.entities.PaymentEntity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+@Component
+public class ScheduleColumnsDtoFactory {
+
+    public ScheduleColumnsDto makeScheduleColumnsDto(CreditDto credit, List<PaymentEntity> payments, BigDecimal effectiveRate) {
+        int size = payments.size();
+
+        int[] paymentNumber = new int[size];
+        String[] paymentDate = new String[size];
+        long[] paymentAmount = new long[size];
+        long[] percent = new long[size];
+        long[] repaymentCredit = new long[size];
+        long[] afterPayment = new long[size];
+        long[] beforePayment = new long[size];
+        String[] status = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            PaymentEntity payment = payments.get(i);
+
+            paymentNumber[i] = payment.getPaymentNumber();
+            paymentDate[i] = payment.getPaymentDate().toString();
+            paymentAmount[i] = toMinorUnits(payment.getPaymentAmount());
+            percent[i] = toMinorUnits(payment.getPercent());
+            repaymentCredit[i] = toMinorUnits(payment.getRepaymentCredit());
+            afterPayment[i] = toMinorUnits(payment.getAfterPayment());
+            beforePayment[i] = toMinorUnits(payment.getBeforePayment());
+            status[i] = payment.getStatus().name();
+        }
+
+        return ScheduleColumnsDto.builder()
+                .credit(credit)
+                .effectiveRate(effectiveRate)
+                .paymentNumber(paymentNumber)
+                .paymentDate(paymentDate)
+                .paymentAmount(paymentAmount)
+                .percent(percent)
+                .repaymentCredit(repaymentCredit)
+                .afterPayment(afterPayment)
+                .beforePayment(beforePayment)
+                .status(status)
+                .build();
+    }
+
+
+    // копейки, округление как при сохранении в БД
+    private static long toMinorUnits(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,132 @@
+package senior.copycoders.project.api.services;
+
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Service;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.dto.AffordabilityDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.api.services.engines.AnnuityFactorTable;
+import senior.copycoders.project.api.services.engines.BigDecimalAmortizationEngine;
+import senior.copycoders.project.store.enums.CreditConstants;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+
+
+/**
+ * Обратная задача к расчёту платежа: какую максимальную сумму кредита можно взять при заданном ежемесячном платеже.
+ * <p>
+ * Поиск перебирает десятки промежуточных сумм, которые больше никто не запросит, поэтому платежи считаются
+ * движком без кэша (CachingAmortizationEngine): иначе они вытесняли бы из кэша платежи настоящих запросов.
+ * Результаты движков совпадают, поэтому найденная сумма та же, что и при расчёте платежа
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class AffordabilityService {
+    ControllerHelper controllerHelper;
+    BigDecimalAmortizationEngine bigDecimalAmortizationEngine;
+    AnnuityFactorTable annuityFactorTable;
+
+
+    /**
+     * Максимальная сумма кредита (в копейках точно), при которой платёж не превышает бюджет.
+     * Платёж считается теми же формулами, что и в /api/calculate-payment
+     *
+     * @param budget         ежемесячный платёж, который готов вносить клиент
+     * @param initialPayment первоначальный взнос
+     * @param percentRate    годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod   срок кредитования в месяцах
+     * @param typeOfCredit   тип кредита (либо аннуитет, либо дифференцированный)
+     */
+    public AffordabilityDto findOutTheMaxCreditAmount(BigDecimal budget, BigDecimal initialPayment, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit) {
+        BigDecimal maxCreditAmount = BigDecimal.valueOf(CreditConstants.MAX_CREDIT_AMOUNT.getValue());
+
+        // проверяем ставку, срок и первоначальный взнос так же, как при расчёте платежа ("2024-08-24" - заглушка)
+        controllerHelper.validateDataOfCredit("2024-08-24", initialPayment, maxCreditAmount, percentRate, creditPeriod);
+
+        if (budget.scale() > 2) {
+            throw new BadRequestException("Payment contains more than two decimal places");
+        }
+
+        if (budget.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BadRequestException("Invalid value of payment");
+        }
+
+        // остаток кредита после первоначального взноса в копейках: от 1 до максимальной суммы кредита за вычетом взноса
+        long maxOstatok = maxCreditAmount.subtract(initialPayment).movePointRight(2).longValueExact();
+
+        long ostatok = typeOfCredit == TypeOfCredit.ANNUITY
+                ? findOutAnnuityOstatok(budget, percentRate, creditPeriod, maxOstatok)
+                : findOutDifferentiatedOstatok(budget, percentRate, creditPeriod, maxOstatok);
+
+        BigDecimal creditAmount = BigDecimal.valueOf(ostatok, 2).add(initialPayment);
+
+        if (ostatok == 0 || creditAmount.compareTo(BigDecimal.valueOf(CreditConstants.MIN_CREDIT_AMOUNT.getValue())) < 0) {
+            throw new BadRequestException("Payment is too small for the minimum credit amount of 200_000.");
+        }
+
+        return AffordabilityDto.builder()
+                .creditAmount(creditAmount)
+                .payment(payment(ostatok, percentRate, creditPeriod, typeOfCredit))
+                .limitedByMaxCreditAmount(ostatok == maxOstatok)
+                .build();
+    }
+
+
+    /**
+     * Аннуитет: обратная формула L = P / k, где k - аннуитетный коэффициент,
+     * затем поправка на округление платежа до копеек
+     */
+    private long findOutAnnuityOstatok(BigDecimal budget, BigDecimal percentRate, Integer creditPeriod, long maxOstatok) {
+        double factor = annuityFactorTable.factor(percentRate.movePointRight(2).intValueExact(), creditPeriod);
+        long ostatok = Math.min(maxOstatok, Math.max(0, (long) Math.floor(budget.doubleValue() / factor * 100)));
+
+        while (ostatok > 0 && payment(ostatok, percentRate, creditPeriod, TypeOfCredit.ANNUITY).compareTo(budget) > 0) {
+            ostatok--;
+        }
+
+        while (ostatok < maxOstatok && payment(ostatok + 1, percentRate, creditPeriod, TypeOfCredit.ANNUITY).compareTo(budget) <= 0) {
+            ostatok++;
+        }
+
+        return ostatok;
+    }
+
+
+    /**
+     * Дифференцированный: первый платёж (самый большой) растёт вместе с суммой кредита,
+     * поэтому ищем максимальную сумму делением пополам
+     */
+    private long findOutDifferentiatedOstatok(BigDecimal budget, BigDecimal percentRate, Integer creditPeriod, long maxOstatok) {
+        // платёж при lo не больше бюджета, при hi - больше
+        long lo = 0;
+        long hi = maxOstatok + 1;
+
+        while (hi - lo > 1) {
+            long mid = lo + (hi - lo) / 2;
+
+            if (payment(mid, percentRate, creditPeriod, TypeOfCredit.DIFFERENTIATED).compareTo(budget) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+
+    private BigDecimal payment(long ostatok, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit) {
+        BigDecimal ostatokOfCredit = BigDecimal.valueOf(ostatok, 2);
+
+        if (typeOfCredit == TypeOfCredit.ANNUITY) {
+            return bigDecimalAmortizationEngine.calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod);
+        }
+
+        return bigDecimalAmortizationEngine.calculateFirstPaymentOfDifferentiatedCredit(ostatokOfCredit, percentRate, creditPeriod);
+    }
+}
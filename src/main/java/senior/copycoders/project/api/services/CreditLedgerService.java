@@ -0,0 +1,363 @@
+package senior.copycoders.project.api.services;
+
+
+import jakarta.transaction.Transactional;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.dto.CreditEventDto;
+import senior.copycoders.project.api.factories.CreditEventDtoFactory;
+import senior.copycoders.project.store.ProjectedPayments;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.CreditEventEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+import senior.copycoders.project.store.repositories.CreditEventRepository;
+import senior.copycoders.project.store.repositories.CreditRepository;
+import senior.copycoders.project.store.repositories.PaymentRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+
+/**
+ * Журнал событий по кредиту.
+ * <p>
+ * Сохранённые платежи кредита - это снимок графика на момент события snapshotEventNumber.
+ * Актуальный график = снимок + события после него, снимок перезаписывается раз в snapshotInterval событий
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@Transactional
+public class CreditLedgerService {
+    CreditEventRepository creditEventRepository;
+    CreditEventDtoFactory creditEventDtoFactory;
+    CreditRepository creditRepository;
+    PaymentRepository paymentRepository;
+    ControllerHelper controllerHelper;
+
+    @NonFinal
+    @Value("${credit.ledger.snapshot-interval}")
+    int snapshotInterval;
+
+    @NonFinal
+    @Value("${credit.payments.compact-storage}")
+    boolean isCompactStorage;
+
+
+    /**
+     * Добавление события в журнал. Номер события - следующий за последним, поэтому строка кредита
+     * должна быть заблокирована вызывающим (ControllerHelper.getCreditForUpdateOrThrowException) или кредит только что создан
+     *
+     * @param credit    кредит
+     * @param type      тип события
+     * @param eventDate дата события (дата первого платежа или дата платежа)
+     * @param amount    сумма (сумма кредита или сумма платежа)
+     * @return сохранённое событие
+     */
+    public CreditEventEntity appendEvent(CreditEntity credit, TypeOfCreditEvent type, LocalDate eventDate, BigDecimal amount) {
+        int eventNumber = creditEventRepository.findFirstByCreditIdOrderByEventNumberDesc(credit.getId())
+                .map(CreditEventEntity::getEventNumber)
+                .orElse(0) + 1;
+
+        // любое событие меняет график
+        incrementScheduleVersion(credit);
+
+        return creditEventRepository.save(CreditEventEntity.builder()
+                .credit(credit)
+                .eventNumber(eventNumber)
+                .type(type)
+                .eventDate(eventDate)
+                .amount(amount)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+
+    /**
+     * Добавление событий о выдаче для только что сохранённых кредитов (одним пакетом).
+     * Сохранённые платежи этих кредитов уже учитывают событие, поэтому оно же становится снимком
+     *
+     * @param schedules кредиты и их графики платежей
+     */
+    public void appendCreatedEvents(Map<CreditEntity, List<PaymentEntity>> schedules) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<CreditEventEntity> events = new ArrayList<>(schedules.size());
+
+        for (Map.Entry<CreditEntity, List<PaymentEntity>> schedule : schedules.entrySet()) {
+            CreditEntity credit = schedule.getKey();
+
+            events.add(CreditEventEntity.builder()
+                    .credit(credit)
+                    .eventNumber(1)
+                    .type(TypeOfCreditEvent.CREATED)
+                    .eventDate(schedule.getValue().get(0).getPaymentDate())
+                    .amount(credit.getCreditAmount().subtract(credit.getInitialPayment()))
+                    .createdAt(createdAt)
+                    .build());
+
+            credit.setSnapshotEventNumber(1);
+            incrementScheduleVersion(credit);
+        }
+
+        creditEventRepository.saveAll(events);
+    }
+
+
+    /**
+     * События, которые ещё не учтены в снимке графика
+     *
+     * @param credit кредит
+     */
+    public List<CreditEventEntity> getEventsAfterSnapshot(CreditEntity credit) {
+        return creditEventRepository.findAllByCreditIdAndEventNumberGreaterThanOrderByEventNumber(credit.getId(), getSnapshotEventNumber(credit));
+    }
+
+
+    /**
+     * Нужно ли перезаписать снимок графика после события
+     *
+     * @param credit кредит
+     * @param event  последнее событие
+     */
+    public boolean isSnapshotDue(CreditEntity credit, CreditEventEntity event) {
+        return event.getEventNumber() - getSnapshotEventNumber(credit) >= snapshotInterval;
+    }
+
+
+    /**
+     * Чтение снимка графика: копии сохранённых платежей, которые можно менять, не затрагивая БД.
+     * Снимок - это строки payment и проекция из credit.projectedPayments (если график хранится компактно)
+     *
+     * @param credit кредит
+     */
+    public List<PaymentEntity> readSnapshot(CreditEntity credit) {
+        List<PaymentEntity> projected = ProjectedPayments.decode(credit);
+        List<PaymentEntity> payments = new ArrayList<>(credit.getPaymentList().size() + projected.size());
+
+        for (PaymentEntity payment : credit.getPaymentList()) {
+            PaymentEntity copy = copyPayment(payment);
+            copy.setCredit(credit);
+            payments.add(copy);
+        }
+
+        if (!projected.isEmpty()) {
+            payments.addAll(projected);
+            payments.sort(Comparator.naturalOrder());
+        }
+
+        return payments;
+    }
+
+
+    /**
+     * Перезапись снимка графика: меняются только изменившиеся платежи, лишние удаляются, новые добавляются.
+     * При компактном хранении строками остаются только проведённые платежи, остальные пишутся в credit.projectedPayments
+     *
+     * @param credit      кредит
+     * @param payments    актуальный график (платежи из readSnapshot и новые платежи)
+     * @param eventNumber номер последнего события, учтённого в графике
+     */
+    public void writeSnapshot(CreditEntity credit, List<PaymentEntity> payments, int eventNumber) {
+        normalize(payments);
+
+        payments = ProjectedPayments.split(credit, payments, isCompactStorage);
+
+        List<PaymentEntity> storedPayments = credit.getPaymentList();
+        Map<Long, PaymentEntity> storedPaymentsById = new HashMap<>();
+        storedPayments.forEach(payment -> storedPaymentsById.put(payment.getId(), payment));
+
+        Set<Long> keptIds = new HashSet<>();
+        List<PaymentEntity> newPayments = new ArrayList<>();
+
+        for (PaymentEntity payment : payments) {
+            PaymentEntity storedPayment = payment.getId() == null ? null : storedPaymentsById.get(payment.getId());
+
+            if (storedPayment == null) {
+                payment.setId(null);
+                payment.setCredit(credit);
+                newPayments.add(payment);
+            } else {
+                keptIds.add(storedPayment.getId());
+                copyChangedFields(storedPayment, payment);
+            }
+        }
+
+        List<PaymentEntity> removedPayments = storedPayments.stream()
+                .filter(payment -> !keptIds.contains(payment.getId()))
+                .toList();
+
+        storedPayments.removeAll(removedPayments);
+        storedPayments.addAll(newPayments);
+
+        // удалённые платежи остаются в контексте без изменений, поэтому Hibernate к ним больше не обращается
+        if (!removedPayments.isEmpty()) {
+            paymentRepository.deleteByCreditIdAndIdIn(credit.getId(), removedPayments.stream().map(PaymentEntity::getId).toList());
+        }
+
+        credit.setSnapshotEventNumber(eventNumber);
+        creditRepository.save(credit);
+    }
+
+
+    /**
+     * Округление платежей до точности столбцов в БД (так они выглядели бы после сохранения и повторного чтения)
+     *
+     * @param payments список платежей
+     */
+    public void normalize(List<PaymentEntity> payments) {
+        for (PaymentEntity payment : payments) {
+            payment.setPaymentAmount(round(payment.getPaymentAmount(), PaymentEntity.MONEY_SCALE));
+            payment.setPercent(round(payment.getPercent(), PaymentEntity.PERCENT_SCALE));
+            payment.setRepaymentCredit(round(payment.getRepaymentCredit(), PaymentEntity.MONEY_SCALE));
+            payment.setAfterPayment(round(payment.getAfterPayment(), PaymentEntity.MONEY_SCALE));
+            payment.setBeforePayment(round(payment.getBeforePayment(), PaymentEntity.MONEY_SCALE));
+            payment.setCreditAmount(round(payment.getCreditAmount(), PaymentEntity.MONEY_SCALE));
+        }
+    }
+
+
+    /**
+     * Дата первого платежа по исходному графику (из события о выдаче кредита)
+     *
+     * @param credit кредит
+     * @return пусто, если у кредита нет журнала
+     */
+    public Optional<LocalDate> getDateOfFirstPayment(CreditEntity credit) {
+        return creditEventRepository.findFirstByCreditIdAndTypeOrderByEventNumber(credit.getId(), TypeOfCreditEvent.CREATED)
+                .map(CreditEventEntity::getEventDate);
+    }
+
+
+    /**
+     * Получение журнала событий по id кредита
+     *
+     * @param creditId id кредита
+     * @return список событий по порядку
+     */
+    public List<CreditEventDto> getEventsByCreditId(Long creditId) {
+        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
+
+        return creditEventRepository.findAllByCreditIdOrderByEventNumber(credit.getId()).stream()
+                .map(creditEventDtoFactory::makeCreditEventDto)
+                .toList();
+    }
+
+
+    public void deleteEvents(CreditEntity credit) {
+        creditEventRepository.deleteAllByCreditId(credit.getId());
+    }
+
+
+    /**
+     * Изменится ли значение в БД, если записать туда newValue вместо storedValue
+     *
+     * @param scale количество знаков после запятой у столбца
+     */
+    static boolean isChanged(BigDecimal storedValue, BigDecimal newValue, int scale) {
+        if (storedValue == null || newValue == null) {
+            return storedValue != newValue;
+        }
+
+        return storedValue.compareTo(newValue.setScale(scale, RoundingMode.HALF_UP)) != 0;
+    }
+
+
+    /**
+     * Копия платежа (вместе с id), не связанная с БД
+     */
+    static PaymentEntity copyPayment(PaymentEntity payment) {
+        return PaymentEntity.builder()
+                .id(payment.getId())
+                .paymentNumber(payment.getPaymentNumber())
+                .paymentDate(payment.getPaymentDate())
+                .paymentAmount(payment.getPaymentAmount())
+                .percent(payment.getPercent())
+                .repaymentCredit(payment.getRepaymentCredit())
+                .afterPayment(payment.getAfterPayment())
+                .credit(payment.getCredit())
+                .status(payment.getStatus())
+                .beforePayment(payment.getBeforePayment())
+                .creditAmount(payment.getCreditAmount())
+                .build();
+    }
+
+
+    /**
+     * Отличается ли платёж от прежнего значения хоть в одном поле (с точностью столбцов в БД)
+     */
+    static boolean isChanged(PaymentEntity oldPayment, PaymentEntity payment) {
+        return !Objects.equals(oldPayment.getPaymentNumber(), payment.getPaymentNumber())
+                || !Objects.equals(oldPayment.getPaymentDate(), payment.getPaymentDate())
+                || oldPayment.getStatus() != payment.getStatus()
+                || isChanged(oldPayment.getPaymentAmount(), payment.getPaymentAmount(), PaymentEntity.MONEY_SCALE)
+                || isChanged(oldPayment.getPercent(), payment.getPercent(), PaymentEntity.PERCENT_SCALE)
+                || isChanged(oldPayment.getRepaymentCredit(), payment.getRepaymentCredit(), PaymentEntity.MONEY_SCALE)
+                || isChanged(oldPayment.getAfterPayment(), payment.getAfterPayment(), PaymentEntity.MONEY_SCALE)
+                || isChanged(oldPayment.getBeforePayment(), payment.getBeforePayment(), PaymentEntity.MONEY_SCALE)
+                || isChanged(oldPayment.getCreditAmount(), payment.getCreditAmount(), PaymentEntity.MONEY_SCALE);
+    }
+
+
+    private static void copyChangedFields(PaymentEntity storedPayment, PaymentEntity payment) {
+        if (!Objects.equals(storedPayment.getPaymentNumber(), payment.getPaymentNumber())) {
+            storedPayment.setPaymentNumber(payment.getPaymentNumber());
+        }
+
+        if (!Objects.equals(storedPayment.getPaymentDate(), payment.getPaymentDate())) {
+            storedPayment.setPaymentDate(payment.getPaymentDate());
+        }
+
+        if (storedPayment.getStatus() != payment.getStatus()) {
+            storedPayment.setStatus(payment.getStatus());
+        }
+
+        if (isChanged(storedPayment.getPaymentAmount(), payment.getPaymentAmount(), PaymentEntity.MONEY_SCALE)) {
+            storedPayment.setPaymentAmount(payment.getPaymentAmount());
+        }
+
+        if (isChanged(storedPayment.getPercent(), payment.getPercent(), PaymentEntity.PERCENT_SCALE)) {
+            storedPayment.setPercent(payment.getPercent());
+        }
+
+        if (isChanged(storedPayment.getRepaymentCredit(), payment.getRepaymentCredit(), PaymentEntity.MONEY_SCALE)) {
+            storedPayment.setRepaymentCredit(payment.getRepaymentCredit());
+        }
+
+        if (isChanged(storedPayment.getAfterPayment(), payment.getAfterPayment(), PaymentEntity.MONEY_SCALE)) {
+            storedPayment.setAfterPayment(payment.getAfterPayment());
+        }
+
+        if (isChanged(storedPayment.getBeforePayment(), payment.getBeforePayment(), PaymentEntity.MONEY_SCALE)) {
+            storedPayment.setBeforePayment(payment.getBeforePayment());
+        }
+
+        if (isChanged(storedPayment.getCreditAmount(), payment.getCreditAmount(), PaymentEntity.MONEY_SCALE)) {
+            storedPayment.setCreditAmount(payment.getCreditAmount());
+        }
+    }
+
+
+    private static BigDecimal round(BigDecimal value, int scale) {
+        return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+    }
+
+
+    private static void incrementScheduleVersion(CreditEntity credit) {
+        credit.setScheduleVersion(credit.getScheduleVersion() == null ? 1 : credit.getScheduleVersion() + 1);
+    }
+
+
+    private static int getSnapshotEventNumber(CreditEntity credit) {
+        // у кредитов, созданных до появления журнала, сохранённые платежи всегда актуальны
+        return credit.getSnapshotEventNumber() == null ? 0 : credit.getSnapshotEventNumber();
+    }
+}
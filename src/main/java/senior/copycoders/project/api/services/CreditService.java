@@ -7,18 +7,34 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import org.springframework.stereotype.Service;
 import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.dto.CreditBatchItemDto;
 import senior.copycoders.project.api.dto.CreditDto;
+import senior.copycoders.project.api.dto.CreditPageDto;
+import senior.copycoders.project.api.dto.CreditRequest;
 import senior.copycoders.project.api.dto.PaymentDto;
 import senior.copycoders.project.api.dto.PaymentWithCreditDto;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.api.exceptions.ErrorDto;
 import senior.copycoders.project.api.factories.CreditDtoFactory;
 import senior.copycoders.project.api.factories.PaymentWithCreditDtoFactory;
+import senior.copycoders.project.api.factories.ScheduleColumnsDtoFactory;
+import senior.copycoders.project.store.PaymentBulkWriter;
 import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.CreditEventEntity;
 import senior.copycoders.project.store.entities.PaymentEntity;
 import senior.copycoders.project.store.enums.TypeOfCredit;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+import senior.copycoders.project.store.repositories.CreditFilter;
 import senior.copycoders.project.store.repositories.CreditRepository;
+import senior.copycoders.project.store.repositories.CreditSummary;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 
 @Service
@@ -31,6 +47,19 @@ public class CreditService {
     PaymentWithCreditDtoFactory paymentDtoWithCreditDtoFactory;
     CreditDtoFactory creditDtoFactory;
     ControllerHelper controllerHelper;
+    CreditLedgerService creditLedgerService;
+    ScheduleColumnsDtoFactory scheduleColumnsDtoFactory;
+    PaymentBulkWriter paymentBulkWriter;
+    UserService userService;
+
+    // максимальный размер страницы списка кредитов
+    static int MAX_PAGE_SIZE = 1000;
+
+    // максимальное число заявок в пакете: все графики пакета (до 360 платежей в каждом) держатся в памяти
+    // и сохраняются одной транзакцией
+    static int MAX_BATCH_SIZE = 500;
+
+    static String CURSOR_SEPARATOR = "|";
 
 
     /**
@@ -47,6 +76,7 @@ public class CreditService {
                 .creditPeriod(creditPeriod)
                 .payment(payment)
                 .typeOfCredit(typeOfCredit)
+                .person(userService.getCurrentUserReference())
                 .build());
 
     }
@@ -66,31 +96,171 @@ public class CreditService {
      */
     public PaymentWithCreditDto calculateSchedule(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, Boolean type) {
 
-        // для начала установим тип кредита
-        // false - аннуитет, когда true - дифф.
-        TypeOfCredit typeOfCredit = type ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY;
+        CreditEntity currentCredit = createCreditWithSchedule(dateOfFirstPayment, initialPayment, creditAmount, percentRate, creditPeriod, type);
 
+        List<PaymentDto> payments = paymentService.createListOfPaymentDto(currentCredit.getPaymentList());
 
-        CreditEntity currentCredit = saveCredit(initialPayment, creditAmount, percentRate, BigDecimal.valueOf(1), creditPeriod, typeOfCredit);
+        return paymentDtoWithCreditDtoFactory.makePaymentWithIdCreditDto(creditDtoFactory.makeCreditDto(currentCredit), payments);
+    }
 
-        List<PaymentDto> payments = paymentService.calculatePayments(dateOfFirstPayment, initialPayment, creditAmount, percentRate, creditPeriod, currentCredit, typeOfCredit);
 
-        currentCredit.setPayment(payments.get(0).getPaymentAmount());
+    /**
+     * То же, что и calculateSchedule, но график возвращается по столбцам (суммы в копейках)
+     */
+    public ScheduleColumnsDto calculateScheduleColumns(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, Boolean type) {
 
-        return paymentDtoWithCreditDtoFactory.makePaymentWithIdCreditDto(creditDtoFactory.makeCreditDto(currentCredit), payments);
+        CreditEntity currentCredit = createCreditWithSchedule(dateOfFirstPayment, initialPayment, creditAmount, percentRate, creditPeriod, type);
+
+        return scheduleColumnsDtoFactory.makeScheduleColumnsDto(creditDtoFactory.makeCreditDto(currentCredit), currentCredit.getPaymentList(), null);
     }
 
 
     /**
-     * Возвращает список всех кредит
+     * Пакетное создание кредитов вместе с графиками платежей.
+     * Заявки проверяются по очереди, графики по правильным заявкам считаются параллельно на всех ядрах,
+     * после чего все кредиты сохраняются одним пакетом. Ошибка в одной заявке не отменяет остальные
+     *
+     * @param creditRequests список заявок на кредит
+     * @return результат по каждой заявке в том же порядке: либо график платежей, либо ошибка
      */
-    public List<CreditDto> getAllCredit() {
+    public List<CreditBatchItemDto> calculateSchedules(List<CreditRequest> creditRequests) {
+
+        if (creditRequests.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException(String.format("Batch must contain at most %d credit requests", MAX_BATCH_SIZE));
+        }
+
+        int size = creditRequests.size();
+
+        CreditEntity[] credits = new CreditEntity[size];
+        LocalDate[] dates = new LocalDate[size];
+        ErrorDto[] errors = new ErrorDto[size];
+
+        // валидация идёт в текущем потоке, ошибки записываем в ответ по конкретной заявке
+        for (int i = 0; i < size; i++) {
+            try {
+                credits[i] = makeCreditFromRequest(creditRequests.get(i));
+                dates[i] = LocalDate.parse(creditRequests.get(i).getDateOfFirstPayment());
+            } catch (BadRequestException ex) {
+                errors[i] = new ErrorDto("400", ex.getMessage());
+            }
+        }
+
+        // расчёт графиков не обращается к БД, поэтому его можно распараллелить
+        List<List<PaymentEntity>> schedules = new ArrayList<>(Collections.nCopies(size, null));
+
+        IntStream.range(0, size)
+                .parallel()
+                .filter(i -> credits[i] != null)
+                .forEach(i -> {
+                    CreditEntity credit = credits[i];
+                    List<PaymentEntity> payments = paymentService.createSchedule(dates[i], credit.getCreditAmount().subtract(credit.getInitialPayment()), credit.getPercentRate(), credit.getCreditPeriod(), credit, credit.getTypeOfCredit());
+
+                    schedules.set(i, payments);
+                    credit.setPayment(payments.get(0).getPaymentAmount());
+                });
+
+        Map<CreditEntity, List<PaymentEntity>> schedulesByCredit = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (credits[i] != null) {
+                schedulesByCredit.put(credits[i], schedules.get(i));
+            }
+        }
+
+        // сохраняем кредиты и события о выдаче пакетами, платежи - одним COPY (или каскадом, если COPY недоступен)
+        creditRepository.saveAll(schedulesByCredit.keySet());
+        creditLedgerService.appendCreatedEvents(schedulesByCredit);
+        paymentBulkWriter.insertSchedules(schedulesByCredit);
+
+        List<CreditBatchItemDto> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CreditBatchItemDto item = CreditBatchItemDto.builder()
+                    .index(i)
+                    .error(errors[i])
+                    .build();
+
+            if (credits[i] != null) {
+                item.setSchedule(paymentDtoWithCreditDtoFactory.makePaymentWithIdCreditDto(creditDtoFactory.makeCreditDto(credits[i]), paymentService.createListOfPaymentDto(credits[i])));
+            }
+
+            result.add(item);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Страница списка кредитов текущего пользователя. Выбираются только столбцы кредита, платежи не загружаются
+     *
+     * @param filter фильтры и сортировка
+     * @param cursor курсор из предыдущей страницы (null - первая страница)
+     * @param limit  размер страницы
+     */
+    public CreditPageDto getCreditPage(CreditFilter filter, String cursor, Integer limit) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+
+        // только кредиты текущего пользователя, и на один кредит больше, чтобы узнать, есть ли следующая страница
+        CreditFilter.CreditFilterBuilder page = filter.toBuilder()
+                .personId(userService.getCurrentUserId())
+                .limit(limit + 1);
+
+        if (cursor != null) {
+            applyCursor(page, filter, cursor);
+        }
+
+        List<CreditSummary> credits = creditRepository.findPage(page.build());
+        String nextCursor = null;
+
+        if (credits.size() > limit) {
+            credits = credits.subList(0, limit);
+            nextCursor = makeCursor(filter, credits.get(limit - 1));
+        }
+
+        return CreditPageDto.builder()
+                .credits(credits.stream().map(creditDtoFactory::makeCreditDto).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
 
-        List<CreditEntity> creditEntities = creditRepository.findAll();
 
-        return creditEntities.stream()
-                .map(creditDtoFactory::makeCreditDto)
-                .toList();
+    // курсор - последний кредит страницы вместе с сортировкой, по которой он получен: "сортировка|направление|значение|id"
+    private static String makeCursor(CreditFilter filter, CreditSummary last) {
+        String cursor = String.join(CURSOR_SEPARATOR,
+                filter.getSort().getApiName(),
+                filter.isDescending() ? "desc" : "asc",
+                String.valueOf(filter.getSort().getGetter().apply(last)),
+                String.valueOf(last.id()));
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private static void applyCursor(CreditFilter.CreditFilterBuilder page, CreditFilter filter, String cursor) {
+        String[] parts;
+
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(Pattern.quote(CURSOR_SEPARATOR), -1);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+
+        if (parts.length != 4) {
+            throw new BadRequestException("Invalid cursor");
+        }
+
+        if (!parts[0].equals(filter.getSort().getApiName()) || !parts[1].equals(filter.isDescending() ? "desc" : "asc")) {
+            throw new BadRequestException("Cursor was issued for another sort order");
+        }
+
+        try {
+            page.afterValue(filter.getSort().getParser().apply(parts[2]))
+                    .afterId(Long.valueOf(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
 
@@ -104,14 +274,73 @@ public class CreditService {
         // получаем кредит
         CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-        // получаем список всех платежей
-        List<PaymentEntity> payments = credit.getPaymentList();
-
         // удаляем сначала все платежи (так как платежи привязаны к кредиту)
-        paymentService.deletePayments(payments);
+        paymentService.deletePayments(credit);
+
+        // удаляем журнал событий по кредиту
+        creditLedgerService.deleteEvents(credit);
 
         // удаляем кредит
         creditRepository.delete(credit);
     }
 
+
+    /**
+     * Проверка заявки на кредит и создание по ней (ещё не сохранённого) кредита
+     *
+     * @param creditRequest заявка на кредит
+     */
+    private CreditEntity makeCreditFromRequest(CreditRequest creditRequest) {
+        if (creditRequest == null || creditRequest.getDateOfFirstPayment() == null || creditRequest.getInitialPayment() == null
+                || creditRequest.getCreditAmount() == null || creditRequest.getPercentRate() == null
+                || creditRequest.getCreditPeriod() == null || creditRequest.getTypeOfCredit() == null) {
+            throw new BadRequestException("All fields of the credit request are required");
+        }
+
+        BigDecimal initialPayment = BigDecimal.valueOf(creditRequest.getInitialPayment());
+        BigDecimal creditAmount = BigDecimal.valueOf(creditRequest.getCreditAmount());
+        BigDecimal percentRate = BigDecimal.valueOf(creditRequest.getPercentRate());
+
+        controllerHelper.validateDataOfCredit(creditRequest.getDateOfFirstPayment(), initialPayment, creditAmount, percentRate, creditRequest.getCreditPeriod());
+
+        return CreditEntity.builder()
+                .initialPayment(initialPayment)
+                .creditAmount(creditAmount)
+                .percentRate(percentRate)
+                .creditPeriod(creditRequest.getCreditPeriod())
+                .payment(BigDecimal.valueOf(1))
+                .typeOfCredit(creditRequest.getTypeOfCredit() ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY)
+                .person(userService.getCurrentUserReference())
+                .build();
+    }
+
+
+    /**
+     * Сохранение кредита и расчёт графика платежей по нему
+     *
+     * @return кредит, в paymentList которого лежит график платежей
+     */
+    private CreditEntity createCreditWithSchedule(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, Boolean type) {
+
+        // для начала установим тип кредита
+        // false - аннуитет, когда true - дифф.
+        TypeOfCredit typeOfCredit = type ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY;
+
+
+        CreditEntity currentCredit = saveCredit(initialPayment, creditAmount, percentRate, BigDecimal.valueOf(1), creditPeriod, typeOfCredit);
+
+        List<PaymentEntity> payments = paymentService.calculatePayments(dateOfFirstPayment, initialPayment, creditAmount, percentRate, creditPeriod, currentCredit, typeOfCredit);
+
+        currentCredit.setPayment(payments.get(0).getPaymentAmount());
+
+        // первое событие в журнале - выдача кредита, сохранённые платежи уже его учитывают
+        CreditEventEntity created = creditLedgerService.appendEvent(currentCredit, TypeOfCreditEvent.CREATED, payments.get(0).getPaymentDate(), creditAmount.subtract(initialPayment));
+        currentCredit.setSnapshotEventNumber(created.getEventNumber());
+
+        // график сохраняется последним: после этого кредит может быть отсоединён от контекста
+        paymentBulkWriter.insertSchedules(Map.of(currentCredit, payments));
+
+        return currentCredit;
+    }
+
 }
@@ -0,0 +1,116 @@
+package senior.copycoders.project.api.services;
+
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Service;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.dto.CreditRequest;
+import senior.copycoders.project.api.dto.EffectiveRateItemDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.api.exceptions.ErrorDto;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Эффективная годовая ставка (ПСК) кредита, который ещё не сохранён в БД.
+ * <p>
+ * Пока не было досрочных платежей, проценты начисляются на остаток долга по месячной ставке r, поэтому
+ * платежи любого из двух типов, дисконтированные по r, в сумме дают ровно выданную сумму: эффективная ставка
+ * равна (1 + r)^12 - 1 и от типа, срока и суммы не зависит. График для этого не строится
+ * (округление платежей до копеек меняет ставку меньше, чем на 0.005%)
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class EffectiveRateService {
+    ControllerHelper controllerHelper;
+
+    // дата первого платежа не влияет на ставку при ежемесячных платежах
+    static LocalDate STUB_DATE = LocalDate.of(2024, 8, 24);
+
+    static MathContext PRECISION = MathContext.DECIMAL128;
+
+
+    /**
+     * Эффективная годовая ставка по параметрам кредита
+     *
+     * @param initialPayment начальный платёж
+     * @param creditAmount   сумма кредита
+     * @param percentRate    годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod   срок кредитования в месяцах
+     * @param typeOfCredit   тип кредита (либо аннуитет, либо дифференцированный)
+     * @return ставка в процентах
+     */
+    public BigDecimal calculateEffectiveRate(BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit) {
+        controllerHelper.validateDataOfCredit(STUB_DATE.toString(), initialPayment, creditAmount, percentRate, creditPeriod);
+
+        return calculateEffectiveRate(percentRate);
+    }
+
+
+    /**
+     * Эффективные ставки по пакету заявок.
+     * Ошибка в одной заявке не отменяет остальные
+     *
+     * @param creditRequests список заявок на кредит (дата первого платежа не обязательна)
+     * @return результат по каждой заявке в том же порядке
+     */
+    public List<EffectiveRateItemDto> calculateEffectiveRates(List<CreditRequest> creditRequests) {
+        int size = creditRequests.size();
+        EffectiveRateItemDto[] result = new EffectiveRateItemDto[size];
+        List<Integer> valid = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            result[i] = EffectiveRateItemDto.builder().index(i).build();
+
+            try {
+                validate(creditRequests.get(i));
+                valid.add(i);
+            } catch (BadRequestException ex) {
+                result[i].setError(new ErrorDto("400", ex.getMessage()));
+            }
+        }
+
+        for (int i : valid) {
+            result[i].setEffectiveRate(calculateEffectiveRate(BigDecimal.valueOf(creditRequests.get(i).getPercentRate())));
+        }
+
+        return List.of(result);
+    }
+
+
+    /**
+     * Эффективная годовая ставка по номинальной: (1 + r / 1200)^12 - 1
+     *
+     * @param percentRate годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @return ставка в процентах
+     */
+    static BigDecimal calculateEffectiveRate(BigDecimal percentRate) {
+        BigDecimal monthlyRate = percentRate.divide(BigDecimal.valueOf(1200), PRECISION);
+
+        return BigDecimal.ONE.add(monthlyRate).pow(12, PRECISION)
+                .subtract(BigDecimal.ONE)
+                .movePointRight(2)
+                .setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+
+    private void validate(CreditRequest creditRequest) {
+        if (creditRequest == null || creditRequest.getInitialPayment() == null || creditRequest.getCreditAmount() == null
+                || creditRequest.getPercentRate() == null || creditRequest.getCreditPeriod() == null || creditRequest.getTypeOfCredit() == null) {
+            throw new BadRequestException("All fields of the credit request are required");
+        }
+
+        controllerHelper.validateDataOfCredit(STUB_DATE.toString(), BigDecimal.valueOf(creditRequest.getInitialPayment()), BigDecimal.valueOf(creditRequest.getCreditAmount()),
+                BigDecimal.valueOf(creditRequest.getPercentRate()), creditRequest.getCreditPeriod());
+    }
+}
@@ -5,6 +5,7 @@ import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -28,6 +29,7 @@ public class JwtService {
      * @param token токен
      * @return имя пользователя
      */
+    @Timed(value = "jwt.parse", extraTags = {"operation", "extract-user-name"}, histogram = true)
     public String extractUserName(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -55,6 +57,7 @@ public class JwtService {
      * @param userDetails данные пользователя
      * @return true, если токен валиден
      */
+    @Timed(value = "jwt.parse", extraTags = {"operation", "validate"}, histogram = true)
     public boolean isTokenValid(String token, UserDetails userDetails) {
         final String userName = extractUserName(token);
         return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
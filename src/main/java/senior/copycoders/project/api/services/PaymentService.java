@@ -1,33 +1,48 @@
 package senior.copycoders.project.api.services;
 
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
 import senior.copycoders.project.api.dto.AckDto;
+import senior.copycoders.project.api.dto.CreditDto;
+import senior.copycoders.project.api.dto.PaymentDeltaDto;
 import senior.copycoders.project.api.dto.PaymentDto;
 import senior.copycoders.project.api.dto.PaymentWithCreditDto;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
 import senior.copycoders.project.api.exceptions.BadRequestException;
 import senior.copycoders.project.api.factories.CreditDtoFactory;
 import senior.copycoders.project.api.factories.PaymentDtoFactory;
+import senior.copycoders.project.api.factories.PaymentJsonWriter;
 import senior.copycoders.project.api.factories.PaymentWithCreditDtoFactory;
+import senior.copycoders.project.api.factories.ScheduleColumnsDtoFactory;
+import senior.copycoders.project.api.services.engines.AmortizationEngine;
+import senior.copycoders.project.api.services.engines.EffectiveRateSolver;
+import senior.copycoders.project.jfr.CreditCalculationEvent;
+import senior.copycoders.project.jfr.PaymentPostingEvent;
 import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.CreditEventEntity;
 import senior.copycoders.project.store.entities.PaymentEntity;
 import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+import senior.copycoders.project.store.enums.CreditConstants;
 import senior.copycoders.project.store.enums.TypeOfCredit;
-import senior.copycoders.project.store.repositories.CreditRepository;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
 import senior.copycoders.project.store.repositories.PaymentRepository;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 
 @Service
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -39,11 +54,17 @@ public class PaymentService {
     PaymentDtoFactory paymentDtoFactory;
     CreditDtoFactory creditDtoFactory;
     PaymentWithCreditDtoFactory paymentWithCreditDtoFactory;
-    CreditRepository creditRepository;
+    AmortizationEngine amortizationEngine;
+    CreditLedgerService creditLedgerService;
+    EffectiveRateSolver effectiveRateSolver;
+    PaymentJsonWriter paymentJsonWriter;
+    ScheduleColumnsDtoFactory scheduleColumnsDtoFactory;
+    MeterRegistry meterRegistry;
 
 
     /**
-     * Метод, который рассчитывает и сохраняет все платежи по данным кредита
+     * Метод, который проверяет данные кредита и рассчитывает все платежи по ним.
+     * Платежи к кредиту не прикрепляются, их сохраняет PaymentBulkWriter
      *
      * @param initialPayment первоначальный взнос
      * @param creditAmount   сумма кредита
@@ -51,178 +72,165 @@ public class PaymentService {
      * @param creditPeriod   срок кредитования в месяцах
      * @param currentCredit  сущность кредит, к которому привязаны платежи
      */
-    public List<PaymentDto> calculatePayments(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, TypeOfCredit typeOfCredit) {
+    @Timed(value = "credit.payments.calculate", histogram = true)
+    public List<PaymentEntity> calculatePayments(String dateOfFirstPayment, BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, TypeOfCredit typeOfCredit) {
         // валидация данных для платежа
         controllerHelper.validateDataOfCredit(dateOfFirstPayment, initialPayment, creditAmount, percentRate, creditPeriod);
 
 
-        // Нам важна точность вычислений, поэтому для вычислений будем использовать BigDecimal
-
         // для начала нужно подсчитать остаток кредита после начального взноса
         // остаток кредита = creditAmount - initialPayment
         BigDecimal ostatokOfCredit = creditAmount.subtract(initialPayment);
 
-        // список платежей, который мы будем возвращать
-        List<PaymentEntity> payments;
-
         // дата первого платежа
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate date = LocalDate.parse(dateOfFirstPayment, formatter);
 
-        // аннуитет
-        if (typeOfCredit == TypeOfCredit.ANNUITY) {
-            // вычисляем платёж
-            BigDecimal payment = calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod);
-
-            // Теперь нужно сформировать список всех платежей
-            payments = createListOfAnnuityCredit(date, ostatokOfCredit, payment, percentRate, creditPeriod, currentCredit, false, BigDecimal.valueOf(0));
-        }
-
-        // дифференцированный
-        else {
-            payments = createListOfDifferentiatedCredit(date, ostatokOfCredit, percentRate, creditPeriod, currentCredit, false, BigDecimal.valueOf(0));
-        }
-
-        currentCredit.setPaymentList(payments);
-        // Теперь нужно сформировать список paymentDto
-        return createListOfPaymentDto(payments);
-
+        // список платежей, который мы будем возвращать
+        return createSchedule(date, ostatokOfCredit, percentRate, creditPeriod, currentCredit, typeOfCredit);
     }
 
 
     /**
-     * Метод для вычисления списка платежей по дифференцированному кредиту
+     * Расчёт графика платежей по уже проверенным данным кредита.
+     * Только вычисления, без обращения к БД, поэтому метод можно вызывать из нескольких потоков сразу
      *
-     * @param creditAmount  сумма кредита
-     * @param percentRate   годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param date          дата первого платежа
+     * @param creditAmount  сумма кредита за вычетом первоначального взноса
+     * @param percentRate   процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
      * @param creditPeriod  срок кредитования в месяцах
      * @param currentCredit кредит, к которому привязаны платежи
+     * @param typeOfCredit  тип кредита (либо аннуитет, либо дифференцированный)
      * @return список платежей
      */
-    private List<PaymentEntity> createListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
-
-        List<PaymentEntity> payments = new ArrayList<>();
-
-        // посчитаем общую сумму долга
-        BigDecimal totalSum = createTotalSumForDifferentiatedCredit(creditAmount, percentRate, creditPeriod);
-
-        if (isNeedCheck) {
-            if (totalSum.compareTo(helpTotalSum) != 0) {
-                totalSum = helpTotalSum;
-            }
-        }
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public List<PaymentEntity> createSchedule(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, TypeOfCredit typeOfCredit) {
+        // Нам важна точность вычислений, поэтому движок обязан давать тот же результат, что и BigDecimal
 
-        // каждый месяц долг должен уменьшаться на эту величину
-        BigDecimal decrease = creditAmount.divide(BigDecimal.valueOf(creditPeriod), 2, RoundingMode.HALF_EVEN);
+        CreditCalculationEvent event = new CreditCalculationEvent();
+        event.begin();
 
-        // r = r / 100;
-        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
+        List<PaymentEntity> payments;
 
-        // r = r / 12;
-        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+        // аннуитет
+        if (typeOfCredit == TypeOfCredit.ANNUITY) {
+            // вычисляем платёж
+            BigDecimal payment = amortizationEngine.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod);
 
+            // Теперь нужно сформировать список всех платежей
+            payments = amortizationEngine.createListOfAnnuityCredit(date, creditAmount, payment, percentRate, creditPeriod, currentCredit, false, BigDecimal.valueOf(0));
+        } else {
+            // дифференцированный
+            payments = amortizationEngine.createListOfDifferentiatedCredit(date, creditAmount, percentRate, creditPeriod, currentCredit, false, BigDecimal.valueOf(0));
+        }
 
-        for (int i = 1; i <= creditPeriod; i++) {
-            PaymentEntity paymentEntity = new PaymentEntity();
+        event.end();
 
-            // начисляем проценты
-            BigDecimal percent = creditAmount.multiply(percentRate).setScale(4, RoundingMode.HALF_EVEN);
+        // поля заполняются, только если событие пишется в запись JFR
+        if (event.shouldCommit()) {
+            event.creditId = currentCredit == null || currentCredit.getId() == null ? 0 : currentCredit.getId();
+            event.typeOfCredit = typeOfCredit.name();
+            event.creditPeriod = creditPeriod;
+            event.rows = payments.size();
+            event.commit();
+        }
 
-            // платёж = проценты + постоянная часть
-            BigDecimal payment = percent.add(decrease).setScale(4, RoundingMode.HALF_EVEN);
+        return payments;
+    }
 
-            paymentEntity.setPaymentAmount(payment);
 
-            // привязываем платёж к кредиту
-            paymentEntity.setCredit(currentCredit);
-            // установка даты
-            paymentEntity.setPaymentDate(date);
-            // установка общей суммы выплат до платежа
-            paymentEntity.setBeforePayment(totalSum);
-            // погашение процентов
-            paymentEntity.setPercent(percent);
-            // погашение долга
-            paymentEntity.setRepaymentCredit(decrease);
+    /**
+     * Получение списка всех платежей по id кредита
+     *
+     * @param creditId id кредита
+     * @return список платежей
+     */
+    public PaymentWithCreditDto getAllPaymentsByCreditId(Long creditId) {
 
-            // уменьшим текущую сумма долга
-            creditAmount = creditAmount.subtract(decrease);
-            paymentEntity.setCreditAmount(creditAmount);
-            // установим дату следующего платежа
-            date = date.plusMonths(1);
-            // уменьшим общую сумму выплат
-            totalSum = totalSum.subtract(payment).setScale(4, RoundingMode.HALF_EVEN);
+        // получаем кредит по creditId
+        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-            // установим общую сумму выплат после платежа
-            paymentEntity.setAfterPayment(totalSum);
-            // установим статус - не оплачен
-            paymentEntity.setStatus(StatusOfPaymentOrCredit.PENDING);
+        // формируем список платежей по актуальному графику (они уже идут по порядку)
+        List<PaymentEntity> schedule = deriveSchedule(credit);
+        List<PaymentDto> payments = createListOfPaymentDto(schedule);
 
-            // установим номер платежа
-            paymentEntity.setPaymentNumber(i);
+        PaymentWithCreditDto result = paymentWithCreditDtoFactory.makePaymentWithIdCreditDto(creditDtoFactory.makeCreditDto(credit), payments);
+        result.setEffectiveRate(calculateEffectiveRate(credit, schedule));
 
-            payments.add(paymentEntity);
-        }
+        return result;
 
-        PaymentEntity lastPayment = payments.get(payments.size() - 1);
+    }
 
-        // проверим последний платёж, из-за неточности округления может быть проблемы
-        if (lastPayment.getAfterPayment().compareTo(BigDecimal.ZERO) != 0) {
-            lastPayment.setPaymentAmount(lastPayment.getPaymentAmount().add(lastPayment.getAfterPayment()));
-            lastPayment.setRepaymentCredit(lastPayment.getRepaymentCredit().add(lastPayment.getAfterPayment()));
-            lastPayment.setAfterPayment(BigDecimal.ZERO);
-        }
+    /**
+     * Получение графика платежей по id кредита по столбцам (суммы в копейках)
+     *
+     * @param creditId id кредита
+     */
+    public ScheduleColumnsDto getScheduleColumnsByCreditId(Long creditId) {
+        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-        return payments;
+        List<PaymentEntity> schedule = deriveSchedule(credit);
 
+        return scheduleColumnsDtoFactory.makeScheduleColumnsDto(creditDtoFactory.makeCreditDto(credit), schedule, calculateEffectiveRate(credit, schedule));
     }
 
 
     /**
-     * Метод для расчёта общей суммы выплат для дифференцированного кредита
+     * Получение графика платежей по id кредита потоком: JSON пишется прямо из платежей актуального графика,
+     * без промежуточного списка PaymentDto. График вычисляется в транзакции, сериализация идёт уже после неё
      *
-     * @param creditAmount сумма кредита
-     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
-     * @param creditPeriod срок кредитования в месяцах
+     * @param creditId id кредита
+     * @return тот же JSON, что и у getAllPaymentsByCreditId
      */
-    private BigDecimal createTotalSumForDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
-        // Общая сумма выплат = сумма кредита + r/(100*12) * сумма кредита * (n+1) / 2;
-
-        // r = r / 100;
-        percentRate = percentRate.divide(BigDecimal.valueOf(100), 11, RoundingMode.HALF_EVEN);
-
-        // r = r / 12;
-        percentRate = percentRate.divide(BigDecimal.valueOf(12), 11, RoundingMode.HALF_EVEN);
+    public ResponseEntity<StreamingResponseBody> streamPaymentsByCreditId(Long creditId) {
+        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-        // r/(100*12) * сумма кредита * (n+1) / 2
-        BigDecimal result = (percentRate.multiply(creditAmount)).multiply(BigDecimal.valueOf(creditPeriod).add(BigDecimal.valueOf(1))).divide(BigDecimal.valueOf(2), 38, RoundingMode.HALF_EVEN);
+        // deriveSchedule возвращает отсоединённые копии платежей, поэтому их можно читать вне транзакции
+        List<PaymentEntity> schedule = deriveSchedule(credit);
+        CreditDto creditDto = creditDtoFactory.makeCreditDto(credit);
+        BigDecimal effectiveRate = calculateEffectiveRate(credit, schedule);
 
+        StreamingResponseBody body = outputStream -> paymentJsonWriter.writePaymentWithCreditDto(outputStream, creditDto, schedule, effectiveRate);
 
-        // сумма кредита + r/(100*12) * сумма кредита * (n+1) / 2;
-        return result.add(creditAmount).setScale(2, RoundingMode.HALF_EVEN);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
 
     /**
-     * Получение списка всех платежей по id кредита
+     * Эффективная годовая ставка (в процентах) по актуальному графику сохранённого кредита.
+     * Платежи учитываются по их датам, кредит считается выданным за месяц до первого платежа исходного графика
+     * (первый платёж актуального графика после досрочного погашения может быть и раньше)
      *
-     * @param creditId id кредита
-     * @return список платежей
+     * @param credit   кредит
+     * @param payments актуальный график платежей
      */
-    public PaymentWithCreditDto getAllPaymentsByCreditId(Long creditId) {
+    public BigDecimal calculateEffectiveRate(CreditEntity credit, List<PaymentEntity> payments) {
+        if (payments.isEmpty()) {
+            return null;
+        }
 
-        // получаем кредит по creditId
-        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
+        LocalDate dateOfIssue = creditLedgerService.getDateOfFirstPayment(credit)
+                .orElse(payments.get(0).getPaymentDate())
+                .minusMonths(1);
 
-        // формируем список платежей
-        List<PaymentDto> payments = createListOfPaymentDto(credit);
+        double[] amounts = new double[payments.size()];
+        double[] times = new double[payments.size()];
+        for (int k = 0; k < amounts.length; k++) {
+            amounts[k] = payments.get(k).getPaymentAmount().doubleValue();
+            times[k] = ChronoUnit.DAYS.between(dateOfIssue, payments.get(k).getPaymentDate()) / 365.0;
+        }
 
-        // сортируем список платежей, чтобы они шли по порядку
-        Collections.sort(payments);
+        return toPercent(effectiveRateSolver.solve(credit.getCreditAmount().subtract(credit.getInitialPayment()).doubleValue(), amounts, times));
+    }
 
-        return paymentWithCreditDtoFactory.makePaymentWithIdCreditDto(creditDtoFactory.makeCreditDto(credit), payments);
 
+    private static BigDecimal toPercent(double rate) {
+        return BigDecimal.valueOf(rate * 100).setScale(2, RoundingMode.HALF_EVEN);
     }
 
+
     public List<PaymentDto> createListOfPaymentDto(CreditEntity credit) {
         return new ArrayList<>(credit.getPaymentList().stream()
                 .map(paymentDtoFactory::makePaymentDto)
@@ -235,425 +243,474 @@ public class PaymentService {
                 .toList();
     }
 
-    public void deletePayments(List<PaymentEntity> payments) {
-        paymentRepository.deleteAll(payments);
-    }
-
-
     /**
-     * Метод для вычисления платежа по аннуитетному кредиту
+     * Удаление всех платежей кредита одним запросом, без загрузки графика
      *
-     * @param creditAmount сумма кредита
-     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
-     * @param creditPeriod срок кредитования в месяцах
-     * @return платёж
+     * @param credit кредит
      */
-    private BigDecimal calculatePaymentOfAnnuityCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
-        // Ежемесячный платеж = (Сумма кредита * Процентная ставка / 12) / (1 - (1 + Процентная ставка / 12)^(-Срок кредита в месяцах))
-
-        // Преобразуем percentRate, разделив его на 100
-        percentRate = percentRate.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_EVEN);
+    public void deletePayments(CreditEntity credit) {
+        paymentRepository.deleteByCreditId(credit.getId());
 
-        // (ostatokOfCredit * percentRate) / 12
-        BigDecimal firstPart = (creditAmount.multiply(percentRate)).divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+        // удалённые платежи не должны попасть в каскадное удаление вместе с кредитом (и загружать их не нужно)
+        credit.setPaymentList(new ArrayList<>());
+    }
 
-        // percentRate/12
-        BigDecimal secondPart = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
 
-        // 1 + percentRate/12
-        BigDecimal thirdPart = BigDecimal.ONE.add(secondPart);
+    /**
+     * Сделать платёж по кредиту
+     *
+     * @param creditId       id кредита
+     * @param date           дата платежа
+     * @param currentPayment сумма платежа
+     */
+    @Timed(value = "credit.payments.make", histogram = true, extraTags = {"response", "ack"})
+    public AckDto makePayment(Long creditId, String date, Double currentPayment) {
 
-        // (1 + percentRate/12) ^ creditPeriod
-        BigDecimal fourthPart = thirdPart.pow(creditPeriod);
+        postPayment(creditId, date, currentPayment, false);
 
-        // 1/ ((1 + percentRate/12) ^ creditPeriod)
-        BigDecimal fivePart = BigDecimal.ONE.divide(fourthPart, 38, RoundingMode.HALF_EVEN);
+        return AckDto.makeDefault(true);
+    }
 
-        // 1 - (1 + percentRate/12) ^ (-creditPeriod)
-        BigDecimal sixPart = BigDecimal.ONE.subtract(fivePart);
 
-        return firstPart.divide(sixPart, 2, RoundingMode.HALF_EVEN);
+    /**
+     * То же, что и makePayment, но в ответе изменения графика: новые, изменившиеся и удалённые платежи
+     *
+     * @param creditId       id кредита
+     * @param date           дата платежа (формат yyyy-MM-dd)
+     * @param currentPayment сумма платежа
+     */
+    @Timed(value = "credit.payments.make", histogram = true, extraTags = {"response", "delta"})
+    public PaymentDeltaDto makePaymentWithDelta(Long creditId, String date, Double currentPayment) {
+        return postPayment(creditId, date, currentPayment, true);
     }
 
 
     /**
-     * Метод для вычисления списка платежей по аннуитетному кредиту
+     * Проведение платежа по кредиту
      *
-     * @param creditAmount  сумма кредита
-     * @param payment       платёж
-     * @param percentRate   годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
-     * @param creditPeriod  срок кредитования в месяцах
-     * @param currentCredit кредит, к которому привязаны платежи
-     * @return список платежей
+     * @param isNeedDelta нужно ли собирать изменения графика
+     * @return изменения графика (null, если isNeedDelta = false)
      */
-    private List<PaymentEntity> createListOfAnnuityCredit(LocalDate dateOfFirstPayment, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
-        // Общая сумма денег, которую мы заплатим по итогу, равняется payment * creditPeriod
+    private PaymentDeltaDto postPayment(Long creditId, String date, Double currentPayment, boolean isNeedDelta) {
 
-        // Преобразуем percentRate, разделив его на 100
-        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
+        // параллельный платёж по тому же кредиту ждёт конца транзакции: иначе оба платежа провелись бы
+        // по одному и тому же графику и получили бы один номер события в журнале
+        CreditEntity credit = controllerHelper.getCreditForUpdateOrThrowException(creditId);
 
-        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+        LocalDate dateOfPayment = controllerHelper.getDateOrThrowException(date);
 
-        BigDecimal totalSum = payment.multiply(BigDecimal.valueOf(creditPeriod)).setScale(2, RoundingMode.HALF_EVEN);
+        // платёж от пользователя
+        BigDecimal paymentOfUser = BigDecimal.valueOf(currentPayment);
 
-        if (isNeedCheck) {
-            if (totalSum.compareTo(helpTotalSum) != 0) {
-                totalSum = helpTotalSum;
-            }
+        // валидация платежа по количеству знаков после запятой и положительности
+        if (paymentOfUser.scale() > 2) {
+            throw new BadRequestException("Payment contains more than two decimal places.");
         }
 
+        if (paymentOfUser.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new BadRequestException("The payment must be greater than zero.");
+        }
 
-        List<PaymentEntity> payments = new ArrayList<>();
+        PaymentPostingEvent postingEvent = new PaymentPostingEvent();
+        postingEvent.begin();
 
-        for (int i = 1; i <= creditPeriod; i++) {
+        // актуальный график: снимок из БД и ещё не учтённые в нём платежи
+        List<PaymentEntity> payments = deriveSchedule(credit);
 
-            // Посчитаем какая часть платежа уйдёт на оплату процентов
-            BigDecimal currentPercent = (creditAmount.multiply(percentRate));
+        // изменения графика нужны для ответа и для события JFR, без записи JFR их не считаем
+        boolean isNeedDiff = isNeedDelta || postingEvent.isEnabled();
 
-            // Посчитаем какая часть платежа уйдёт на погашение основного долга
-            BigDecimal repaymentCredit = payment.subtract(currentPercent).setScale(2, RoundingMode.HALF_EVEN);
+        // платежи до проведения (сами объекты из графика и их копии) - для изменений графика
+        List<PaymentEntity> oldPayments = isNeedDiff ? new ArrayList<>(payments) : List.of();
+        List<PaymentEntity> oldCopies = oldPayments.stream().map(CreditLedgerService::copyPayment).toList();
 
-            // сумма долга до платежа
-            BigDecimal beforePayment = new BigDecimal(totalSum.toString());
+        // платежи упорядочены по номеру, а значит и по дате: первый платёж с датой не раньше dateOfPayment
+        int index = findFirstPaymentNotBefore(payments, dateOfPayment);
 
-            // сумма долга после платежи
-            totalSum = totalSum.subtract(payment).setScale(2, RoundingMode.HALF_EVEN);
+        // для метрик: попал ли платёж на дату по графику и оставалось ли больше одного платежа
+        // (проведённые платежи идут перед непроведёнными, поэтому достаточно посмотреть на предпоследний)
+        boolean isOnScheduledDate = index < payments.size() && payments.get(index).getPaymentDate().equals(dateOfPayment);
+        boolean isSeveralPending = payments.size() > 1 && payments.get(payments.size() - 2).getStatus() == StatusOfPaymentOrCredit.PENDING;
 
+        // проводим платёж по графику, здесь же проверяется, можно ли его провести
+        applyPayment(credit, payments, index, dateOfPayment, paymentOfUser);
 
-            // акутальная сумма кредита после платежа
-            creditAmount = (creditAmount.add(currentPercent)).subtract(payment);
+        // в журнал записывается только сам платёж
+        CreditEventEntity event = creditLedgerService.appendEvent(credit, TypeOfCreditEvent.PAYMENT_POSTED, dateOfPayment, paymentOfUser);
 
-            payments.add(PaymentEntity.builder()
-                    .paymentNumber(i)
-                    .paymentDate(dateOfFirstPayment)
-                    .paymentAmount(payment)
-                    .percent(currentPercent.setScale(4, RoundingMode.HALF_EVEN))
-                    .repaymentCredit(repaymentCredit)
-                    .afterPayment(totalSum)
-                    .credit(currentCredit)
-                    .status(StatusOfPaymentOrCredit.PENDING)
-                    .beforePayment(beforePayment)
-                    .creditAmount(creditAmount)
-                    .build());
+        boolean isClosed = payments.stream().allMatch(payment -> payment.getStatus() == StatusOfPaymentOrCredit.PAID);
 
-            dateOfFirstPayment = dateOfFirstPayment.plusMonths(1);
+        String kindOfPayment = isClosed && isSeveralPending ? "early-payoff" : isOnScheduledDate ? "exact-date" : "between-dates";
+        meterRegistry.counter("credit.payments.posted", "kind", kindOfPayment).increment();
 
+        if (isClosed) {
+            event = creditLedgerService.appendEvent(credit, TypeOfCreditEvent.CREDIT_CLOSED, dateOfPayment, null);
         }
 
-        // проведём стабилизацию последнего платежа
-        PaymentEntity lastPayment = payments.get(payments.size() - 1);
+        // снимок графика перезаписываем периодически и при закрытии кредита
+        boolean isSnapshotWritten = isClosed || creditLedgerService.isSnapshotDue(credit, event);
 
-        // проверим последний платёж, из-за неточности округления может быть проблемы
-        if (lastPayment.getAfterPayment().compareTo(BigDecimal.ZERO) != 0) {
-            lastPayment.setPaymentAmount(lastPayment.getPaymentAmount().add(lastPayment.getAfterPayment()));
-            lastPayment.setRepaymentCredit(lastPayment.getRepaymentCredit().add(lastPayment.getAfterPayment()));
-            lastPayment.setAfterPayment(BigDecimal.ZERO);
+        if (isSnapshotWritten) {
+            creditLedgerService.writeSnapshot(credit, payments, event.getEventNumber());
         }
 
+        if (!isNeedDiff) {
+            return null;
+        }
 
-        return payments;
+        // так же, как график будет выглядеть при следующем чтении
+        creditLedgerService.normalize(payments);
+
+        ScheduleDiff diff = diffSchedule(oldPayments, oldCopies, payments);
+
+        postingEvent.end();
+
+        if (postingEvent.shouldCommit()) {
+            postingEvent.creditId = creditId;
+            postingEvent.typeOfCredit = credit.getTypeOfCredit().name();
+            postingEvent.creditPeriod = credit.getCreditPeriod();
+            postingEvent.kind = kindOfPayment;
+            postingEvent.rowsInserted = diff.inserted().size();
+            postingEvent.rowsRecalculated = diff.updated().size();
+            postingEvent.rowsDeleted = diff.deletedPaymentNumbers().size();
+            postingEvent.snapshotWritten = isSnapshotWritten;
+            postingEvent.commit();
+        }
+
+        if (!isNeedDelta) {
+            return null;
+        }
+
+        return PaymentDeltaDto.builder()
+                .version(credit.getScheduleVersion())
+                .inserted(diff.inserted().stream().map(paymentDtoFactory::makePaymentDto).toList())
+                .updated(diff.updated().stream().map(paymentDtoFactory::makePaymentDto).toList())
+                .deletedPaymentNumbers(diff.deletedPaymentNumbers())
+                .build();
     }
 
 
     /**
-     * Сделать платёж по кредиту
+     * Изменения графика после проведения платежа
      *
-     * @param creditId       id кредита
-     * @param date           дата платежа
-     * @param currentPayment сумма платежа
+     * @param inserted              новые платежи
+     * @param updated               платежи, которые пересчитаны
+     * @param deletedPaymentNumbers номера удалённых платежей
      */
-    public AckDto makePayment(Long creditId, String date, Double currentPayment) {
+    private record ScheduleDiff(List<PaymentEntity> inserted, List<PaymentEntity> updated, List<Integer> deletedPaymentNumbers) {
+    }
 
-        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-        LocalDate dateOfPayment = controllerHelper.getDateOrThrowException(date);
+    /**
+     * Изменения графика: платежи сравниваются по ссылке, так как applyPayment меняет платежи на месте,
+     * добавляет новые объекты и убирает лишние
+     *
+     * @param oldPayments платежи графика до проведения платежа
+     * @param oldCopies   их копии (значения до проведения платежа)
+     * @param payments    график после проведения платежа
+     */
+    private ScheduleDiff diffSchedule(List<PaymentEntity> oldPayments, List<PaymentEntity> oldCopies, List<PaymentEntity> payments) {
+        Map<PaymentEntity, PaymentEntity> oldCopyByPayment = new IdentityHashMap<>();
+        for (int i = 0; i < oldPayments.size(); i++) {
+            oldCopyByPayment.put(oldPayments.get(i), oldCopies.get(i));
+        }
 
-        // получим список платежей
-        List<PaymentEntity> payments = credit.getPaymentList();
+        List<PaymentEntity> inserted = new ArrayList<>();
+        List<PaymentEntity> updated = new ArrayList<>();
+        Set<PaymentEntity> kept = Collections.newSetFromMap(new IdentityHashMap<>());
 
-        // отсортируем их по порядку
-        Collections.sort(payments);
+        for (PaymentEntity payment : payments) {
+            PaymentEntity oldCopy = oldCopyByPayment.get(payment);
 
-        // платёж от пользователя
-        BigDecimal paymentOfUser = BigDecimal.valueOf(currentPayment);
+            if (oldCopy == null) {
+                inserted.add(payment);
+            } else {
+                kept.add(payment);
 
-        // валидация платежа по количеству знаков после запятой и положительности
-        if (paymentOfUser.scale() > 2) {
-            throw new BadRequestException("Payment contains more than two decimal places.");
+                if (CreditLedgerService.isChanged(oldCopy, payment)) {
+                    updated.add(payment);
+                }
+            }
         }
 
-        if (paymentOfUser.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BadRequestException("The payment must be greater than zero.");
+        List<Integer> deleted = new ArrayList<>();
+        for (int i = 0; i < oldPayments.size(); i++) {
+            if (!kept.contains(oldPayments.get(i))) {
+                deleted.add(oldCopies.get(i).getPaymentNumber());
+            }
         }
 
+        return new ScheduleDiff(inserted, updated, deleted);
+    }
 
-        // процентная ставка
-        BigDecimal percentRate = (credit.getPercentRate().divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_UP)).divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_UP);
 
-        // теперь нам нужно найти платёж, который соответствует dateOfPayment
-        boolean flag = true;
-        for (int i = 0; i < payments.size(); i++) {
-            if (payments.get(i).getPaymentDate().equals(dateOfPayment)) {
+    /**
+     * Актуальный график платежей: снимок из БД, к которому применены платежи из журнала, ещё не учтённые в нём.
+     * Платежи графика не связаны с БД, их можно менять
+     *
+     * @param credit кредит
+     * @return список платежей по порядку
+     */
+    public List<PaymentEntity> deriveSchedule(CreditEntity credit) {
+        List<PaymentEntity> payments = creditLedgerService.readSnapshot(credit);
 
-                PaymentEntity payment = payments.get(i); // текущая сущность платежа
+        for (CreditEventEntity event : creditLedgerService.getEventsAfterSnapshot(credit)) {
+            if (event.getType() == TypeOfCreditEvent.PAYMENT_POSTED) {
+                applyPayment(credit, payments, findFirstPaymentNotBefore(payments, event.getEventDate()), event.getEventDate(), event.getAmount());
 
-                // для начала посмотрим, внесён ли уже платёж
-                if (StatusOfPaymentOrCredit.PAID == payment.getStatus()) {
+                // раньше после каждого платежа график сохранялся в БД и читался заново, округляем так же
+                creditLedgerService.normalize(payments);
+            }
+        }
 
-                    if (i != payments.size() - 1) {
-                        if (payments.get(i + 1).getStatus() == StatusOfPaymentOrCredit.PAID) {
-                            throw new BadRequestException("The amount has already been deposited during this period");
-                        }
+        return payments;
+    }
 
-                        int count = i + 2;
-                        PaymentEntity newPayment = new PaymentEntity();
-                        newPayment.setPaymentNumber(count);
-                        count++;
-                        newPayment.setPaymentDate(dateOfPayment);
-                        newPayment.setBeforePayment(payment.getAfterPayment());
-                        newPayment.setStatus(StatusOfPaymentOrCredit.PAID); // ставим статус оплачено
-                        newPayment.setPaymentAmount(paymentOfUser); // меняем сумму платежа
-                        newPayment.setAfterPayment(newPayment.getBeforePayment().subtract(paymentOfUser));
 
+    /**
+     * Проведение платежа по графику (в памяти, без обращения к БД)
+     *
+     * @param credit        кредит
+     * @param payments      график платежей по порядку, меняется на месте
+     * @param index         индекс первого платежа с датой не раньше dateOfPayment (findFirstPaymentNotBefore)
+     * @param dateOfPayment дата платежа
+     * @param paymentOfUser сумма платежа
+     */
+    private void applyPayment(CreditEntity credit, List<PaymentEntity> payments, int index, LocalDate dateOfPayment, BigDecimal paymentOfUser) {
 
-                        // когда платёж больше чем общая сумма выплат
-                        if (paymentOfUser.compareTo(newPayment.getBeforePayment()) > 0) {
-                            throw new BadRequestException("The payment must not exceed the total amount of the debt.");
-                        }
+        // процентная ставка
+        BigDecimal percentRate = (credit.getPercentRate().divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_UP)).divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_UP);
 
-                        newPayment.setCredit(credit);
-                        if (paymentOfUser.compareTo(newPayment.getBeforePayment()) == 0) {
-                            // платёж равен остатку долга, то есть пользователь погасил кредит на данном этапе
-                            // нужно удалить следующие за ним платежи, так как кредит мы уже выплатили
+        // теперь нам нужно найти платёж, который соответствует dateOfPayment
+        boolean flag = true;
 
+        if (index < payments.size() && payments.get(index).getPaymentDate().equals(dateOfPayment)) {
+            int i = index;
 
-                            // теперь нужно посчитать сумму процентов
-                            BigDecimal sumOfPercent = BigDecimal.ZERO;
+            PaymentEntity payment = payments.get(i); // текущая сущность платежа
 
-                            // и сразу же будем удалять лишние платежи
-                            for (int j = payments.size() - 1; j > i; j--) {
-                                sumOfPercent = sumOfPercent.add(payments.get(j).getPercent());
-                                PaymentEntity remove = payments.remove(j);
-                                paymentRepository.delete(remove);
-                            }
+            // для начала посмотрим, внесён ли уже платёж
+            if (StatusOfPaymentOrCredit.PAID == payment.getStatus()) {
 
-                            newPayment.setPercent(sumOfPercent); // меняем сумму процентов
-                            newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent)); // вычисляем какая сумма пошла на погашение долга
-                            payments.add(newPayment);
+                if (i != payments.size() - 1) {
+                    if (payments.get(i + 1).getStatus() == StatusOfPaymentOrCredit.PAID) {
+                        throw new BadRequestException("The amount has already been deposited during this period");
+                    }
 
-                            creditRepository.save(credit); // сохраняем кредит вместе с листом payment
+                    int count = i + 2;
+                    PaymentEntity newPayment = new PaymentEntity();
+                    newPayment.setPaymentNumber(count);
+                    count++;
+                    newPayment.setPaymentDate(dateOfPayment);
+                    newPayment.setBeforePayment(payment.getAfterPayment());
+                    newPayment.setStatus(StatusOfPaymentOrCredit.PAID); // ставим статус оплачено
+                    newPayment.setPaymentAmount(paymentOfUser); // меняем сумму платежа
+                    newPayment.setAfterPayment(newPayment.getBeforePayment().subtract(paymentOfUser));
 
-                            return AckDto.makeDefault(true);
 
-                        } else {
-                            // поменяем данные текущего платежа
-                            PaymentEntity nextPayment = payments.get(i + 1);
+                    // когда платёж больше чем общая сумма выплат
+                    if (paymentOfUser.compareTo(newPayment.getBeforePayment()) > 0) {
+                        throw new BadRequestException("The payment must not exceed the total amount of the debt.");
+                    }
 
-                            if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
-                                newPayment.setPercent(paymentOfUser);
-                                newPayment.setRepaymentCredit(BigDecimal.ZERO);
-                            } else {
-                                if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
-                                    newPayment.setPercent(BigDecimal.ZERO);
-                                    newPayment.setRepaymentCredit(paymentOfUser);
-                                } else {
-                                    newPayment.setPercent(nextPayment.getPercent());
-                                    newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
-                                }
-                            }
+                    newPayment.setCredit(credit);
+                    if (paymentOfUser.compareTo(newPayment.getBeforePayment()) == 0) {
+                        // платёж равен остатку долга, то есть пользователь погасил кредит на данном этапе
+                        // нужно удалить следующие за ним платежи, так как кредит мы уже выплатили
 
-                            // теперь нужно пересчитать все остальные платежи
 
-                            // создаём список новых платежей
-                            List<PaymentEntity> newPayments;
-                            // узнаём тип кредита
-                            TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
+                        // теперь нужно посчитать сумму процентов
+                        BigDecimal sumOfPercent = BigDecimal.ZERO;
 
+                        // и сразу же будем удалять лишние платежи
+                        for (int j = payments.size() - 1; j > i; j--) {
+                            sumOfPercent = sumOfPercent.add(payments.get(j).getPercent());
+                            payments.remove(j);
+                        }
 
-                            // здесь вычисляем какой будет сумма долга после нового платежа
-                            BigDecimal currentCreditAmount = payment.getCreditAmount();
-                            currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
-                            currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
+                        newPayment.setPercent(sumOfPercent); // меняем сумму процентов
+                        newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent)); // вычисляем какая сумма пошла на погашение долга
+                        payments.add(newPayment);
 
-                            newPayment.setCreditAmount(currentCreditAmount);
+                        return;
 
-                            // аннуитет
-                            if (typeOfCredit == TypeOfCredit.ANNUITY) {
-                                BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size() - i - 1), 38, RoundingMode.HALF_EVEN);
+                    } else {
+                        // поменяем данные текущего платежа
+                        PaymentEntity nextPayment = payments.get(i + 1);
 
-                                newPayments = createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
+                        if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
+                            newPayment.setPercent(paymentOfUser);
+                            newPayment.setRepaymentCredit(BigDecimal.ZERO);
+                        } else {
+                            if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
+                                newPayment.setPercent(BigDecimal.ZERO);
+                                newPayment.setRepaymentCredit(paymentOfUser);
+                            } else {
+                                newPayment.setPercent(nextPayment.getPercent());
+                                newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
                             }
+                        }
 
-                            // дифференцированный
-                            else {
-                                newPayments = createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
-                            }
+                        // теперь нужно пересчитать все остальные платежи
 
-                            int indexOfOldPayments = i + 1;
-                            // теперь нужно сохранить все эти платежи
-                            for (int j = 0; j < newPayments.size(); j++) {
-                                PaymentEntity paymentToChange = payments.get(indexOfOldPayments); // платёж, который нужно поменять
-                                indexOfOldPayments++;
-                                PaymentEntity paymentChanging = newPayments.get(j); // платёж, у которого есть данные, чтобы изменить платёж по графику (выше)
-                                paymentToChange.setBeforePayment(paymentChanging.getBeforePayment());
-                                paymentToChange.setAfterPayment(paymentChanging.getAfterPayment());
-                                paymentToChange.setPercent(paymentChanging.getPercent());
-                                paymentToChange.setPaymentAmount(paymentChanging.getPaymentAmount());
-                                paymentToChange.setRepaymentCredit(paymentChanging.getRepaymentCredit());
-                                paymentToChange.setPaymentNumber(count);
-                                count++;
-                            }
+                        // создаём список новых платежей
+                        List<PaymentEntity> newPayments;
+                        // узнаём тип кредита
+                        TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
 
-                            payments.add(i + 1, newPayment);
 
-                            creditRepository.save(credit);
+                        // здесь вычисляем какой будет сумма долга после нового платежа
+                        BigDecimal currentCreditAmount = payment.getCreditAmount();
+                        currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
+                        currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
+
+                        newPayment.setCreditAmount(currentCreditAmount);
 
-                            return AckDto.makeDefault(true);
+                        // аннуитет
+                        if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                            BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size() - i - 1), 38, RoundingMode.HALF_EVEN);
+
+                            newPayments = amortizationEngine.createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
                         }
 
-                    }
+                        // дифференцированный
+                        else {
+                            newPayments = amortizationEngine.createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
+                        }
 
+                        // теперь нужно сохранить все эти платежи (меняем только те, что действительно изменились)
+                        applyRecalculatedTail(payments, i + 1, newPayments, count);
 
-                    // платёж на данную дату уже внесён, генерируем исключение
-                    throw new BadRequestException("The loan has already been paid");
-                }
+                        payments.add(i + 1, newPayment);
 
-                // теперь посмотрим на порядок внесения платежей, вдруг ещё не был внесён платёж по предыдущему платежу
-                if (i != 0) {
-                    PaymentEntity previous = payments.get(i - 1);
-                    if (previous.getStatus() == StatusOfPaymentOrCredit.PENDING) {
-                        throw new BadRequestException("First, you need to make payments for previous years.");
+                        return;
                     }
-                }
 
-                // установка флага, что мы нашли нужную дату
-                flag = false;
+                }
 
-                // платёж по плану
-                BigDecimal paymentForPlan = payment.getPaymentAmount();
 
+                // платёж на данную дату уже внесён, генерируем исключение
+                throw new BadRequestException("The loan has already been paid");
+            }
 
-                // если платёж от пользователя меньше чем платёж по плану - генерируем исключение
-                if (paymentOfUser.compareTo(paymentForPlan) < 0) {
-                    throw new BadRequestException("The payment has not been accepted, the payment must be at least the scheduled payment.");
+            // теперь посмотрим на порядок внесения платежей, вдруг ещё не был внесён платёж по предыдущему платежу
+            if (i != 0) {
+                PaymentEntity previous = payments.get(i - 1);
+                if (previous.getStatus() == StatusOfPaymentOrCredit.PENDING) {
+                    throw new BadRequestException("First, you need to make payments for previous years.");
                 }
+            }
 
+            // установка флага, что мы нашли нужную дату
+            flag = false;
 
-                // самая интересная ситуация возникает когда платёж больше чем по плану - тогда нужно делать перерасчёт платежей
-                if (paymentOfUser.compareTo(paymentForPlan) > 0) {
+            // платёж по плану
+            BigDecimal paymentForPlan = payment.getPaymentAmount();
 
 
-                    // проверяем случай когда платёж превысил остаток долга, генерируем исключение
-                    if (paymentOfUser.compareTo(payment.getBeforePayment()) > 0) {
-                        // платёж превысил остаток долга
-                        throw new BadRequestException("The payment must not exceed the total amount of the debt");
-                    }
+            // если платёж от пользователя меньше чем платёж по плану - генерируем исключение
+            if (paymentOfUser.compareTo(paymentForPlan) < 0) {
+                throw new BadRequestException("The payment has not been accepted, the payment must be at least the scheduled payment.");
+            }
 
-                    // если мы платёжом покрыли сразу весь долг, то нужно закрыть платежи
-                    if (paymentOfUser.compareTo(payment.getBeforePayment()) == 0) {
-                        // платёж равен остатку долга, то есть пользователь погасил кредит на данном этапе
-                        // нужно удалить следующие за ним платежи, так как кредит мы уже выплатили
 
-                        payment.setStatus(StatusOfPaymentOrCredit.PAID); // ставим статус оплачено
-                        payment.setAfterPayment(BigDecimal.ZERO); // сумма после платежа равняется нулю, так как мы весь платёж погасили
-                        payment.setPaymentAmount(paymentOfUser); // меняем сумма платежа
+            // самая интересная ситуация возникает когда платёж больше чем по плану - тогда нужно делать перерасчёт платежей
+            if (paymentOfUser.compareTo(paymentForPlan) > 0) {
 
-                        // теперь нужно посчитать сумму процентов
-                        BigDecimal sumOfPercent = payment.getPercent();
 
-                        // и сразу же будем удалять лишние платежи
-                        for (int j = payments.size() - 1; j > i; j--) {
-                            sumOfPercent = sumOfPercent.add(payments.get(j).getPercent());
-                            PaymentEntity remove = payments.remove(j);
-                            paymentRepository.delete(remove);
-                        }
+                // проверяем случай когда платёж превысил остаток долга, генерируем исключение
+                if (paymentOfUser.compareTo(payment.getBeforePayment()) > 0) {
+                    // платёж превысил остаток долга
+                    throw new BadRequestException("The payment must not exceed the total amount of the debt");
+                }
 
-                        payment.setPercent(sumOfPercent); // меняем сумму процентов
-                        payment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent)); // вычисляем какая сумма пошла на погашение долга
+                // если мы платёжом покрыли сразу весь долг, то нужно закрыть платежи
+                if (paymentOfUser.compareTo(payment.getBeforePayment()) == 0) {
+                    // платёж равен остатку долга, то есть пользователь погасил кредит на данном этапе
+                    // нужно удалить следующие за ним платежи, так как кредит мы уже выплатили
 
-                        creditRepository.save(credit); // сохраняем кредит вместе с листом payment
+                    payment.setStatus(StatusOfPaymentOrCredit.PAID); // ставим статус оплачено
+                    payment.setAfterPayment(BigDecimal.ZERO); // сумма после платежа равняется нулю, так как мы весь платёж погасили
+                    payment.setPaymentAmount(paymentOfUser); // меняем сумма платежа
 
-                        return AckDto.makeDefault(true);
+                    // теперь нужно посчитать сумму процентов
+                    BigDecimal sumOfPercent = payment.getPercent();
 
-                    } else {
+                    // и сразу же будем удалять лишние платежи
+                    for (int j = payments.size() - 1; j > i; j--) {
+                        sumOfPercent = sumOfPercent.add(payments.get(j).getPercent());
+                        payments.remove(j);
+                    }
 
+                    payment.setPercent(sumOfPercent); // меняем сумму процентов
+                    payment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent)); // вычисляем какая сумма пошла на погашение долга
 
-                        // здесь нужно пересчитать все платежи, начиная с i+1 платежа
+                    return;
 
-                        // но сначала поменяем сущность - текущий платёж
-                        BigDecimal diff = paymentOfUser.subtract(paymentForPlan);
+                } else {
 
-                        payment.setStatus(StatusOfPaymentOrCredit.PAID); // статус оплачено
-                        payment.setRepaymentCredit(payment.getRepaymentCredit().add(diff)); // мы же внесли больше платёж, значит оплатили больше сумма по остатку долга
-                        payment.setPaymentAmount(paymentOfUser); // устанавливаем новый платёж
 
+                    // здесь нужно пересчитать все платежи, начиная с i+1 платежа
 
-                        // новый остаток долга
-                        BigDecimal ostatokAfterNewPayment = payment.getBeforePayment().subtract(paymentOfUser);
-                        payment.setAfterPayment(ostatokAfterNewPayment);
+                    // но сначала поменяем сущность - текущий платёж
+                    BigDecimal diff = paymentOfUser.subtract(paymentForPlan);
 
-                        // теперь нужно пересчитать все платежи
-                        int creditPeriod = payments.size() - i - 1; // срок кредитования, который равен количеству оставшихся платежей
+                    payment.setStatus(StatusOfPaymentOrCredit.PAID); // статус оплачено
+                    payment.setRepaymentCredit(payment.getRepaymentCredit().add(diff)); // мы же внесли больше платёж, значит оплатили больше сумма по остатку долга
+                    payment.setPaymentAmount(paymentOfUser); // устанавливаем новый платёж
 
 
-                        // вычисляем долг на текущий момент
+                    // новый остаток долга
+                    BigDecimal ostatokAfterNewPayment = payment.getBeforePayment().subtract(paymentOfUser);
+                    payment.setAfterPayment(ostatokAfterNewPayment);
 
-                        // здесь вычисляем какой будет сумма долга после нового платежа
-                        BigDecimal currentCreditAmount = payment.getCreditAmount();
-                        currentCreditAmount = currentCreditAmount.subtract(paymentOfUser.subtract(paymentForPlan));
-                        payment.setCreditAmount(currentCreditAmount);
+                    // теперь нужно пересчитать все платежи
+                    int creditPeriod = payments.size() - i - 1; // срок кредитования, который равен количеству оставшихся платежей
 
 
-                        // создаём список новых платежей
-                        List<PaymentEntity> newPayments;
-                        // узнаём тип кредита
-                        TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
+                    // вычисляем долг на текущий момент
 
+                    // здесь вычисляем какой будет сумма долга после нового платежа
+                    BigDecimal currentCreditAmount = payment.getCreditAmount();
+                    currentCreditAmount = currentCreditAmount.subtract(paymentOfUser.subtract(paymentForPlan));
+                    payment.setCreditAmount(currentCreditAmount);
 
-                        // аннуитет
-                        if (typeOfCredit == TypeOfCredit.ANNUITY) {
-                            BigDecimal paymentForNewPlan = ostatokAfterNewPayment.divide(BigDecimal.valueOf(creditPeriod), 38, RoundingMode.HALF_EVEN);
 
-                            newPayments = createListOfAnnuityCredit(payments.get(i + 1).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), creditPeriod, credit, true, payments.get(i).getAfterPayment());
-                        }
+                    // создаём список новых платежей
+                    List<PaymentEntity> newPayments;
+                    // узнаём тип кредита
+                    TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
 
-                        // дифференцированный
-                        else {
 
-                            newPayments = createListOfDifferentiatedCredit(payments.get(i + 1).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), creditPeriod, credit, true, payments.get(i).getAfterPayment());
-                        }
+                    // аннуитет
+                    if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                        BigDecimal paymentForNewPlan = ostatokAfterNewPayment.divide(BigDecimal.valueOf(creditPeriod), 38, RoundingMode.HALF_EVEN);
 
-                        // теперь нужно сохранить все эти платежи
-                        int count = 0; // счётчик для newPayments
-                        for (int j = i + 1; j < payments.size(); j++) {
-                            PaymentEntity paymentToChange = payments.get(j); // платёж, который нужно поменять
-                            PaymentEntity paymentChanging = newPayments.get(count); // платёж, у которого есть данные, чтобы изменить платёж по графику (выше)
-                            count++;
-
-                            paymentToChange.setBeforePayment(paymentChanging.getBeforePayment());
-                            paymentToChange.setAfterPayment(paymentChanging.getAfterPayment());
-                            paymentToChange.setPercent(paymentChanging.getPercent());
-                            paymentToChange.setPaymentAmount(paymentChanging.getPaymentAmount());
-                            paymentToChange.setRepaymentCredit(paymentChanging.getRepaymentCredit());
-                        }
+                        newPayments = amortizationEngine.createListOfAnnuityCredit(payments.get(i + 1).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), creditPeriod, credit, true, payments.get(i).getAfterPayment());
+                    }
 
-                        // сохраняем кредит, вместе с его списком платежей
-                        creditRepository.save(credit);
+                    // дифференцированный
+                    else {
 
-                        return AckDto.makeDefault(true);
+                        newPayments = amortizationEngine.createListOfDifferentiatedCredit(payments.get(i + 1).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), creditPeriod, credit, true, payments.get(i).getAfterPayment());
                     }
 
-                } else {
-                    // если сумма платежа равняется по плану, то просто поставим статус PAID
-                    payment.setStatus(StatusOfPaymentOrCredit.PAID);
+                    // теперь нужно сохранить все эти платежи (меняем только те, что действительно изменились)
+                    applyRecalculatedTail(payments, i + 1, newPayments, null);
 
-                    creditRepository.save(credit); // сохраняем кредит вместе с листом payment
+                    // сохраняем кредит, вместе с его списком платежей
 
-                    return AckDto.makeDefault(true);
+                    return;
                 }
 
+            } else {
+                // если сумма платежа равняется по плану, то просто поставим статус PAID
+                payment.setStatus(StatusOfPaymentOrCredit.PAID);
 
+                return;
             }
+
+
         }
 
 
@@ -661,248 +718,280 @@ public class PaymentService {
             // это означает, что в качестве даты платежа была выбрана дата, которой нет в списке платежей
             // значит нужно немного переделать список всех платежей (включая номера платежей)
 
-            // сначала нужно найти между какими датами
-            for (int i = 0; i <= payments.size() - 1; i++) {
+            // случай, когда платёж раньше официальной даты первого платежа
+            if (index == 0) {
+                int i = 0;
 
-                // случай, когда платёж раньше официальной даты первого платежа
-                if (i == 0) {
-                    if (dateOfPayment.isBefore(payments.get(i).getPaymentDate())) {
+                // нужно проверить оплачено ли эта дата (проверка на прошлое)
+                if (payments.get(i).getStatus() == StatusOfPaymentOrCredit.PAID) {
+                    throw new BadRequestException("The amount has already been deposited during this period");
+                }
 
-                        // нужно проверить оплачено ли эта дата (проверка на прошлое)
-                        if (payments.get(i).getStatus() == StatusOfPaymentOrCredit.PAID) {
-                            throw new BadRequestException("The amount has already been deposited during this period");
-                        }
 
+                PaymentEntity nextPayment = payments.get(0);
+
+                PaymentEntity newPayment = new PaymentEntity();
+                newPayment.setPaymentNumber(1);
+                newPayment.setPaymentDate(dateOfPayment);
+                newPayment.setStatus(StatusOfPaymentOrCredit.PAID);
+                newPayment.setBeforePayment(nextPayment.getBeforePayment());
+                newPayment.setAfterPayment(nextPayment.getBeforePayment().subtract(paymentOfUser));
 
-                        PaymentEntity nextPayment = payments.get(0);
 
-                        PaymentEntity newPayment = new PaymentEntity();
-                        newPayment.setPaymentNumber(1);
-                        newPayment.setPaymentDate(dateOfPayment);
-                        newPayment.setStatus(StatusOfPaymentOrCredit.PAID);
-                        newPayment.setBeforePayment(nextPayment.getBeforePayment());
-                        newPayment.setAfterPayment(nextPayment.getBeforePayment().subtract(paymentOfUser));
+                // когда платёж больше чем общая сумма выплат
+                if (paymentOfUser.compareTo(nextPayment.getBeforePayment()) > 0) {
+                    throw new BadRequestException("The payment must not exceed the total amount of the debt.");
+                }
 
+                newPayment.setPaymentAmount(paymentOfUser);
 
-                        // когда платёж больше чем общая сумма выплат
-                        if (paymentOfUser.compareTo(nextPayment.getBeforePayment()) > 0) {
-                            throw new BadRequestException("The payment must not exceed the total amount of the debt.");
-                        }
+                // мы сразу выплатили общую сумму выплат
+                if (paymentOfUser.compareTo(nextPayment.getBeforePayment()) == 0) {
 
-                        newPayment.setPaymentAmount(paymentOfUser);
 
-                        // мы сразу выплатили общую сумму выплат
-                        if (paymentOfUser.compareTo(nextPayment.getBeforePayment()) == 0) {
+                    BigDecimal sumOfPercent = BigDecimal.ZERO;
+                    for (int j = payments.size() - 1; j >= 0; j--) {
+                        sumOfPercent = payments.get(j).getPercent();
+                        payments.remove(j);
+                    }
 
+                    newPayment.setPercent(sumOfPercent);
+                    newPayment.setCredit(credit);
+                    newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent));
 
-                            BigDecimal sumOfPercent = BigDecimal.ZERO;
-                            for (int j = payments.size() - 1; j >= 0; j--) {
-                                sumOfPercent = payments.get(j).getPercent();
-                                PaymentEntity remove = payments.remove(j);
-                                paymentRepository.delete(remove);
-                            }
+                    payments.add(newPayment);
 
-                            newPayment.setPercent(sumOfPercent);
-                            newPayment.setCredit(credit);
-                            newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent));
+                    return;
+                } else {
 
-                            payments.add(newPayment);
-                            creditRepository.save(credit); // сохраняем кредит вместе с листом payment
+                    // поменяем данные текущего платежа
 
-                            return AckDto.makeDefault(true);
+
+                    if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
+                        newPayment.setPercent(paymentOfUser);
+                        newPayment.setRepaymentCredit(BigDecimal.ZERO);
+                    } else {
+                        if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
+                            newPayment.setPercent(BigDecimal.ZERO);
+                            newPayment.setRepaymentCredit(paymentOfUser);
                         } else {
+                            newPayment.setPercent(nextPayment.getPercent());
+                            newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
+                        }
+                    }
 
-                            // поменяем данные текущего платежа
+                    // теперь нужно пересчитать все остальные платежи
+                    int count = 2;
 
+                    // создаём список новых платежей
+                    List<PaymentEntity> newPayments;
+                    // узнаём тип кредита
+                    TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
 
-                            if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
-                                newPayment.setPercent(paymentOfUser);
-                                newPayment.setRepaymentCredit(BigDecimal.ZERO);
-                            } else {
-                                if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
-                                    newPayment.setPercent(BigDecimal.ZERO);
-                                    newPayment.setRepaymentCredit(paymentOfUser);
-                                } else {
-                                    newPayment.setPercent(nextPayment.getPercent());
-                                    newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
-                                }
-                            }
 
-                            // теперь нужно пересчитать все остальные платежи
-                            int count = 2;
+                    // здесь вычисляем какой будет сумма долга после нового платежа
+                    BigDecimal currentCreditAmount = credit.getCreditAmount().subtract(credit.getInitialPayment());
+                    currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
+                    currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
+                    newPayment.setCreditAmount(currentCreditAmount);
 
-                            // создаём список новых платежей
-                            List<PaymentEntity> newPayments;
-                            // узнаём тип кредита
-                            TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
+                    // аннуитет
+                    if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                        BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size()), 38, RoundingMode.HALF_EVEN);
 
+                        newPayments = amortizationEngine.createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size(), credit, true, newPayment.getAfterPayment());
+                    }
 
-                            // здесь вычисляем какой будет сумма долга после нового платежа
-                            BigDecimal currentCreditAmount = credit.getCreditAmount().subtract(credit.getInitialPayment());
-                            currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
-                            currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
-                            newPayment.setCreditAmount(currentCreditAmount);
+                    // дифференцированный
+                    else {
+                        newPayments = amortizationEngine.createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size(), credit, true, newPayment.getAfterPayment());
+                    }
 
-                            // аннуитет
-                            if (typeOfCredit == TypeOfCredit.ANNUITY) {
-                                BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size()), 38, RoundingMode.HALF_EVEN);
 
-                                newPayments = createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size(), credit, true, newPayment.getAfterPayment());
-                            }
+                    // теперь нужно сохранить все эти платежи (меняем только те, что действительно изменились)
+                    applyRecalculatedTail(payments, 0, newPayments, count);
 
-                            // дифференцированный
-                            else {
-                                newPayments = createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size(), credit, true, newPayment.getAfterPayment());
-                            }
+                    payments.add(0, newPayment);
 
+                    return;
 
-                            // теперь нужно сохранить все эти платежи
-                            for (int j = 0; j < payments.size(); j++) {
-                                PaymentEntity paymentToChange = payments.get(j); // платёж, который нужно поменять
-                                PaymentEntity paymentChanging = newPayments.get(j); // платёж, у которого есть данные, чтобы изменить платёж по графику (выше)
-                                paymentToChange.setBeforePayment(paymentChanging.getBeforePayment());
-                                paymentToChange.setAfterPayment(paymentChanging.getAfterPayment());
-                                paymentToChange.setPercent(paymentChanging.getPercent());
-                                paymentToChange.setPaymentAmount(paymentChanging.getPaymentAmount());
-                                paymentToChange.setRepaymentCredit(paymentChanging.getRepaymentCredit());
-                                paymentToChange.setPaymentNumber(count);
-                                count++;
-                            }
 
-                            payments.add(0, newPayment);
+                }
 
-                            creditRepository.save(credit);
+            }
 
-                            return AckDto.makeDefault(true);
+            // дата платежа между датами платежей index - 1 и index
+            if (index < payments.size()) {
+                int i = index - 1;
 
+                if (payments.get(i).getStatus() == StatusOfPaymentOrCredit.PENDING) {
+                    throw new BadRequestException("First, you need to make payments for previous years.");
+                }
 
-                        }
+                if (payments.get(i + 1).getStatus() == StatusOfPaymentOrCredit.PAID) {
+                    throw new BadRequestException("The amount has already been deposited during this period.");
+                }
 
-                    }
+                PaymentEntity previousPayment = payments.get(i);
+                PaymentEntity newPayment = new PaymentEntity();
+                int count = i + 2;
+
+                newPayment.setPaymentDate(dateOfPayment);
+                newPayment.setPaymentAmount(paymentOfUser);
+                newPayment.setBeforePayment(previousPayment.getAfterPayment());
+                newPayment.setPaymentNumber(count);
+                count++;
+                // когда платёж больше чем общая сумма выплат
+                if (paymentOfUser.compareTo(newPayment.getBeforePayment()) > 0) {
+                    throw new BadRequestException("The payment must not exceed the total amount of the debt.");
                 }
 
-                if (i != payments.size() - 1) {
-                    // нужно смотреть, чтобы наша дата была между датами
-                    if (dateOfPayment.isAfter(payments.get(i).getPaymentDate()) && dateOfPayment.isBefore(payments.get(i + 1).getPaymentDate())) {
+                newPayment.setStatus(StatusOfPaymentOrCredit.PAID);
 
-                        if (payments.get(i).getStatus() == StatusOfPaymentOrCredit.PENDING) {
-                            throw new BadRequestException("First, you need to make payments for previous years.");
-                        }
+                // если сразу погасили платёж
+                if (paymentOfUser.compareTo(newPayment.getBeforePayment()) == 0) {
 
-                        if (payments.get(i + 1).getStatus() == StatusOfPaymentOrCredit.PAID) {
-                            throw new BadRequestException("The amount has already been deposited during this period.");
-                        }
+                    newPayment.setAfterPayment(BigDecimal.ZERO);
+
+                    BigDecimal sumOfPercent = BigDecimal.ZERO;
+                    for (int j = payments.size() - 1; j >= i + 1; j--) {
+                        sumOfPercent = payments.get(j).getPercent();
+                        payments.remove(j);
+                    }
+
+                    newPayment.setPercent(sumOfPercent);
+                    newPayment.setCredit(credit);
+                    newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent));
+
+                    payments.add(newPayment);
 
-                        PaymentEntity previousPayment = payments.get(i);
-                        PaymentEntity newPayment = new PaymentEntity();
-                        int count = i + 2;
-
-                        newPayment.setPaymentDate(dateOfPayment);
-                        newPayment.setPaymentAmount(paymentOfUser);
-                        newPayment.setBeforePayment(previousPayment.getAfterPayment());
-                        newPayment.setPaymentNumber(count);
-                        count++;
-                        // когда платёж больше чем общая сумма выплат
-                        if (paymentOfUser.compareTo(newPayment.getBeforePayment()) > 0) {
-                            throw new BadRequestException("The payment must not exceed the total amount of the debt.");
+                    return;
+                } else {
+
+                    // поменяем данные текущего платежа
+                    newPayment.setAfterPayment(newPayment.getBeforePayment().subtract(paymentOfUser));
+                    PaymentEntity nextPayment = payments.get(i + 1);
+
+                    if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
+                        newPayment.setPercent(paymentOfUser);
+                        newPayment.setRepaymentCredit(BigDecimal.ZERO);
+                    } else {
+                        if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
+                            newPayment.setPercent(BigDecimal.ZERO);
+                            newPayment.setRepaymentCredit(paymentOfUser);
+                        } else {
+                            newPayment.setPercent(nextPayment.getPercent());
+                            newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
                         }
+                    }
 
-                        newPayment.setStatus(StatusOfPaymentOrCredit.PAID);
+                    // теперь нужно пересчитать все остальные платежи
 
-                        // если сразу погасили платёж
-                        if (paymentOfUser.compareTo(newPayment.getBeforePayment()) == 0) {
+                    // создаём список новых платежей
+                    List<PaymentEntity> newPayments;
+                    // узнаём тип кредита
+                    TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
 
-                            newPayment.setAfterPayment(BigDecimal.ZERO);
 
-                            BigDecimal sumOfPercent = BigDecimal.ZERO;
-                            for (int j = payments.size() - 1; j >= i + 1; j--) {
-                                sumOfPercent = payments.get(j).getPercent();
-                                PaymentEntity remove = payments.remove(j);
-                                paymentRepository.delete(remove);
-                            }
+                    // здесь вычисляем какой будет сумма долга после нового платежа
+                    BigDecimal currentCreditAmount = previousPayment.getCreditAmount();
+                    currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
+                    currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
+                    newPayment.setCreditAmount(currentCreditAmount);
 
-                            newPayment.setPercent(sumOfPercent);
-                            newPayment.setCredit(credit);
-                            newPayment.setRepaymentCredit(paymentOfUser.subtract(sumOfPercent));
+                    // аннуитет
+                    if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                        BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size() - i - 1), 38, RoundingMode.HALF_EVEN);
 
-                            payments.add(newPayment);
-                            creditRepository.save(credit); // сохраняем кредит вместе с листом payment
+                        newPayments = amortizationEngine.createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
+                    }
 
-                            return AckDto.makeDefault(true);
-                        } else {
+                    // дифференцированный
+                    else {
+                        newPayments = amortizationEngine.createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
+                    }
 
-                            // поменяем данные текущего платежа
-                            newPayment.setAfterPayment(newPayment.getBeforePayment().subtract(paymentOfUser));
-                            PaymentEntity nextPayment = payments.get(i + 1);
+                    // теперь нужно сохранить все эти платежи (меняем только те, что действительно изменились)
+                    applyRecalculatedTail(payments, i + 1, newPayments, count);
 
-                            if (paymentOfUser.compareTo(nextPayment.getPercent()) <= 0) {
-                                newPayment.setPercent(paymentOfUser);
-                                newPayment.setRepaymentCredit(BigDecimal.ZERO);
-                            } else {
-                                if (paymentOfUser.compareTo(nextPayment.getRepaymentCredit()) <= 0) {
-                                    newPayment.setPercent(BigDecimal.ZERO);
-                                    newPayment.setRepaymentCredit(paymentOfUser);
-                                } else {
-                                    newPayment.setPercent(nextPayment.getPercent());
-                                    newPayment.setRepaymentCredit(paymentOfUser.subtract(nextPayment.getPercent()));
-                                }
-                            }
+                    payments.add(i + 1, newPayment);
 
-                            // теперь нужно пересчитать все остальные платежи
+                    return;
 
-                            // создаём список новых платежей
-                            List<PaymentEntity> newPayments;
-                            // узнаём тип кредита
-                            TypeOfCredit typeOfCredit = credit.getTypeOfCredit();
+                }
+            }
+        }
+        throw new BadRequestException("The date is beyond the payment period.");
 
+    }
 
-                            // здесь вычисляем какой будет сумма долга после нового платежа
-                            BigDecimal currentCreditAmount = previousPayment.getCreditAmount();
-                            currentCreditAmount = currentCreditAmount.add(currentCreditAmount.multiply(percentRate));
-                            currentCreditAmount = currentCreditAmount.subtract(paymentOfUser);
-                            newPayment.setCreditAmount(currentCreditAmount);
 
-                            // аннуитет
-                            if (typeOfCredit == TypeOfCredit.ANNUITY) {
-                                BigDecimal paymentForNewPlan = newPayment.getAfterPayment().divide(BigDecimal.valueOf(payments.size() - i - 1), 38, RoundingMode.HALF_EVEN);
 
-                                newPayments = createListOfAnnuityCredit(payments.get(i).getPaymentDate(), currentCreditAmount, paymentForNewPlan, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
-                            }
 
-                            // дифференцированный
-                            else {
-                                newPayments = createListOfDifferentiatedCredit(payments.get(i).getPaymentDate(), currentCreditAmount, credit.getPercentRate(), payments.size() - i - 1, credit, true, newPayment.getAfterPayment());
-                            }
+    /**
+     * Перенос пересчитанного хвоста графика на сохранённые платежи.
+     * Поле меняется, только если новое значение после округления до точности столбца отличается от сохранённого,
+     * поэтому Hibernate обновит лишь действительно изменившиеся платежи (одним пакетом)
+     *
+     * @param payments    сохранённые платежи
+     * @param from        индекс первого платежа хвоста
+     * @param newPayments пересчитанные платежи
+     * @param firstNumber номер первого платежа хвоста или null, если номера не меняются
+     */
+    private void applyRecalculatedTail(List<PaymentEntity> payments, int from, List<PaymentEntity> newPayments, Integer firstNumber) {
+        for (int j = 0; j < newPayments.size(); j++) {
+            PaymentEntity paymentToChange = payments.get(from + j); // платёж, который нужно поменять
+            PaymentEntity paymentChanging = newPayments.get(j); // платёж, у которого есть данные, чтобы изменить платёж по графику
 
-                            int indexOfOldPayment = i + 1;
-                            // теперь нужно сохранить все эти платежи
-                            for (int j = 0; j < newPayments.size(); j++) {
-                                PaymentEntity paymentToChange = payments.get(indexOfOldPayment); // платёж, который нужно поменять
-                                indexOfOldPayment++;
-                                PaymentEntity paymentChanging = newPayments.get(j); // платёж, у которого есть данные, чтобы изменить платёж по графику (выше)
-                                paymentToChange.setBeforePayment(paymentChanging.getBeforePayment());
-                                paymentToChange.setAfterPayment(paymentChanging.getAfterPayment());
-                                paymentToChange.setPercent(paymentChanging.getPercent());
-                                paymentToChange.setPaymentAmount(paymentChanging.getPaymentAmount());
-                                paymentToChange.setRepaymentCredit(paymentChanging.getRepaymentCredit());
-                                paymentToChange.setPaymentNumber(count);
-                                count++;
-                            }
+            if (CreditLedgerService.isChanged(paymentToChange.getBeforePayment(), paymentChanging.getBeforePayment(), PaymentEntity.MONEY_SCALE)) {
+                paymentToChange.setBeforePayment(paymentChanging.getBeforePayment());
+            }
 
-                            payments.add(i + 1, newPayment);
+            if (CreditLedgerService.isChanged(paymentToChange.getAfterPayment(), paymentChanging.getAfterPayment(), PaymentEntity.MONEY_SCALE)) {
+                paymentToChange.setAfterPayment(paymentChanging.getAfterPayment());
+            }
 
-                            creditRepository.save(credit);
+            if (CreditLedgerService.isChanged(paymentToChange.getPercent(), paymentChanging.getPercent(), PaymentEntity.PERCENT_SCALE)) {
+                paymentToChange.setPercent(paymentChanging.getPercent());
+            }
 
-                            return AckDto.makeDefault(true);
+            if (CreditLedgerService.isChanged(paymentToChange.getPaymentAmount(), paymentChanging.getPaymentAmount(), PaymentEntity.MONEY_SCALE)) {
+                paymentToChange.setPaymentAmount(paymentChanging.getPaymentAmount());
+            }
 
-                        }
-                    }
+            if (CreditLedgerService.isChanged(paymentToChange.getRepaymentCredit(), paymentChanging.getRepaymentCredit(), PaymentEntity.MONEY_SCALE)) {
+                paymentToChange.setRepaymentCredit(paymentChanging.getRepaymentCredit());
+            }
 
-                }
+            if (firstNumber != null && paymentToChange.getPaymentNumber() != firstNumber + j) {
+                paymentToChange.setPaymentNumber(firstNumber + j);
             }
         }
-        throw new BadRequestException("The date is beyond the payment period.");
+    }
+
 
+    /**
+     * Бинарный поиск первого платежа, дата которого не раньше date
+     *
+     * @param payments список платежей, упорядоченный по номеру (даты при этом не убывают)
+     * @param date     дата платежа
+     * @return индекс платежа или payments.size(), если все платежи раньше date
+     */
+    private int findFirstPaymentNotBefore(List<PaymentEntity> payments, LocalDate date) {
+        int low = 0;
+        int high = payments.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (payments.get(middle).getPaymentDate().isBefore(date)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
     }
 
 
@@ -915,6 +1004,8 @@ public class PaymentService {
      * @param typeOfCredit   тип кредита (либо аннуитет, либо дифференцированный)
      * @param initialPayment начальный платёж
      */
+    // только вычисления (результаты движка кэшируются), транзакция и соединение с БД не нужны
+    @Transactional(Transactional.TxType.SUPPORTS)
     public BigDecimal findOutThePayment(BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit) {
 
         // сначала валидация данных кредита
@@ -928,19 +1019,9 @@ public class PaymentService {
 
 
         if (typeOfCredit == TypeOfCredit.ANNUITY) {
-            payment = calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod);
+            payment = amortizationEngine.calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod);
         } else {
-            // r = r / 100;
-            percentRate = percentRate.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_EVEN);
-
-            // r = r / 12;
-            percentRate = percentRate.divide(BigDecimal.valueOf(12), 4, RoundingMode.HALF_EVEN);
-
-            // постоянная часть уменьшения кредита
-            BigDecimal decrease = ostatokOfCredit.divide(BigDecimal.valueOf(creditPeriod), 4, RoundingMode.HALF_EVEN);
-
-            // тут прибавляем проценты ещё
-            payment = decrease.add(percentRate.multiply(ostatokOfCredit));
+            payment = amortizationEngine.calculateFirstPaymentOfDifferentiatedCredit(ostatokOfCredit, percentRate, creditPeriod);
         }
 
 
@@ -958,46 +1039,15 @@ public class PaymentService {
      * @param initialPayment начальный платёж
      * @param payment        ежемесячный платёж (для аннуитета)
      */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public BigDecimal calculateTaxDeduction(BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment) {
 
 
         // Умножьте сумму уплаченных процентов за год на 13% (ставка НДФЛ)
-        // не более 650_000
-
-        BigDecimal sumOfPercent = BigDecimal.ZERO;
-
-        creditAmount = creditAmount.subtract(initialPayment);
-
-        BigDecimal decrease = creditAmount.divide(BigDecimal.valueOf(creditPeriod), 4, RoundingMode.HALF_EVEN);
-
-        // r = r / 100;
-        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
-
-        // r = r / 12;
-        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
-
-        for (int i = 1; i <= 12; i++) {
-            BigDecimal currentPercent = creditAmount.multiply(percentRate);
-
-            sumOfPercent = sumOfPercent.add(currentPercent);
-
-            creditAmount = creditAmount.add(currentPercent);
-
-            // сделаем платёж
-            if (typeOfCredit == TypeOfCredit.ANNUITY) {
-                creditAmount = creditAmount.subtract(payment);
-            } else {
-                creditAmount = creditAmount.subtract(currentPercent.add(decrease));
-            }
-
-        }
-
-        // надо умножить выплаченные проценты на 13%
-
-
-        sumOfPercent = sumOfPercent.multiply(BigDecimal.valueOf(0.13)).setScale(2, RoundingMode.HALF_EVEN);
-
+        // не более MAX_TAX_DEDUCTION
+        BigDecimal sumOfPercent = amortizationEngine.calculateTaxDeductionOfFirstYear(creditAmount.subtract(initialPayment), percentRate, creditPeriod, typeOfCredit, payment);
+        BigDecimal maxTaxDeduction = BigDecimal.valueOf(CreditConstants.MAX_TAX_DEDUCTION.getValue());
 
-        return sumOfPercent.compareTo(BigDecimal.valueOf(650_000)) > 0 ? BigDecimal.valueOf(650_000) : sumOfPercent;
+        return sumOfPercent.compareTo(maxTaxDeduction) > 0 ? maxTaxDeduction : sumOfPercent;
     }
 }
@@ -11,6 +11,7 @@ import com.itextpdf.layout.Document;
 import com.itextpdf.layout.element.*;
 import com.itextpdf.layout.properties.*;
 import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -20,13 +21,13 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.jfr.PdfGenerationEvent;
 import senior.copycoders.project.store.entities.CreditEntity;
 import senior.copycoders.project.store.entities.PaymentEntity;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.RoundingMode;
-import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -36,14 +37,18 @@ import java.util.List;
 public class PdfService {
 
     ControllerHelper controllerHelper;
+    PaymentService paymentService;
 
+    @Timed(value = "credit.pdf.generate", histogram = true)
     public ResponseEntity<ByteArrayResource> generatePdfOfPayments(Long creditId) throws IOException {
+        PdfGenerationEvent event = new PdfGenerationEvent();
+        event.begin();
+
         // получаем желаемый кредит по id
         CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
 
-        // список платежей
-        List<PaymentEntity> payments = credit.getPaymentList();
-        Collections.sort(payments);
+        // актуальный список платежей по порядку
+        List<PaymentEntity> payments = paymentService.deriveSchedule(credit);
 
         // Генерируем PDF в ByteArrayOutputStream
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -144,6 +149,17 @@ public class PdfService {
         // Создаем ByteArrayResource из ByteArrayOutputStream
         ByteArrayResource resource = new ByteArrayResource(baos.toByteArray());
 
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.creditId = creditId;
+            event.typeOfCredit = credit.getTypeOfCredit().name();
+            event.creditPeriod = credit.getCreditPeriod();
+            event.rows = payments.size();
+            event.bytes = resource.contentLength();
+            event.commit();
+        }
+
         // Возвращаем PDF как ResponseEntity
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=persons.pdf")
@@ -0,0 +1,156 @@
+package senior.copycoders.project.api.services;
+
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Service;
+import senior.copycoders.project.api.dto.ScenarioGridDto;
+import senior.copycoders.project.api.dto.ScenarioGridRequest;
+import senior.copycoders.project.api.dto.ValueRangeDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.api.services.engines.ScenarioGridKernel;
+import senior.copycoders.project.store.enums.CreditConstants;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+
+
+/**
+ * Сравнение вариантов кредита ("что, если") без сохранения в БД
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class ScenarioService {
+    ScenarioGridKernel scenarioGridKernel;
+
+    // максимальное количество ячеек в одной сетке
+    static int MAX_GRID_SIZE = 500_000;
+
+
+    /**
+     * Расчёт сетки сценариев "ставка × срок × первоначальный взнос"
+     *
+     * @param request сумма кредита, тип кредита и диапазоны по осям
+     * @return значения по осям и платёж, сумма процентов, налоговый вычет по каждой ячейке
+     */
+    public ScenarioGridDto calculateGrid(ScenarioGridRequest request) {
+        if (request.getCreditAmount() == null || request.getTypeOfCredit() == null || request.getPercentRate() == null
+                || request.getCreditPeriod() == null || request.getInitialPayment() == null) {
+            throw new BadRequestException("All fields of the scenario request are required");
+        }
+
+        BigDecimal creditAmount = BigDecimal.valueOf(request.getCreditAmount());
+
+        if (creditAmount.scale() > 2) {
+            throw new BadRequestException("Credit_amount contains more than two decimal places");
+        }
+
+        if (creditAmount.compareTo(BigDecimal.valueOf(CreditConstants.MIN_CREDIT_AMOUNT.getValue())) < 0) {
+            throw new BadRequestException("Credit amount cannot be less than 200_000.");
+        }
+
+        if (creditAmount.compareTo(BigDecimal.valueOf(CreditConstants.MAX_CREDIT_AMOUNT.getValue())) > 0) {
+            throw new BadRequestException("Credit amount cannot be more than 30_000_000.");
+        }
+
+        // все оси переводим в целые числа: ставку и взнос в сотые доли, срок в месяцы
+        long[] rates = expandRange(request.getPercentRate(), 2, "percent_rate");
+        long[] periods = expandRange(request.getCreditPeriod(), 0, "credit_period");
+        long[] initialPayments = expandRange(request.getInitialPayment(), 2, "initial_payment");
+
+        if (rates[0] <= 0 || rates[rates.length - 1] > CreditConstants.MAX_INTEREST_RATE.getValue() * 100L) {
+            throw new BadRequestException("Percent_rate must be more than 0 and not more than 18 percent");
+        }
+
+        if (periods[0] < CreditConstants.MIN_CREDIT_PERIOD.getValue() || periods[periods.length - 1] > CreditConstants.MAX_CREDIT_PERIOD.getValue()) {
+            throw new BadRequestException("Credit term must be from 12 to 360 months");
+        }
+
+        if (initialPayments[0] < 0 || initialPayments[initialPayments.length - 1] >= creditAmount.movePointRight(2).longValueExact()) {
+            throw new BadRequestException("Initial_payment must be non-negative and less than the credit_amount");
+        }
+
+        if ((long) rates.length * periods.length * initialPayments.length > MAX_GRID_SIZE) {
+            throw new BadRequestException(String.format("Grid cannot contain more than %d cells", MAX_GRID_SIZE));
+        }
+
+        int[] rateAxis = new int[rates.length];
+        double[] percentRates = new double[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            rateAxis[i] = (int) rates[i];
+            percentRates[i] = rates[i] / 100.0;
+        }
+
+        int[] creditPeriods = new int[periods.length];
+        for (int i = 0; i < periods.length; i++) {
+            creditPeriods[i] = (int) periods[i];
+        }
+
+        double[] initialPaymentAxis = new double[initialPayments.length];
+        for (int i = 0; i < initialPayments.length; i++) {
+            initialPaymentAxis[i] = initialPayments[i] / 100.0;
+        }
+
+        int size = rates.length * periods.length * initialPayments.length;
+        double[] payments = new double[size];
+        double[] totalInterest = new double[size];
+        double[] taxDeductions = new double[size];
+
+        TypeOfCredit typeOfCredit = request.getTypeOfCredit() ? TypeOfCredit.DIFFERENTIATED : TypeOfCredit.ANNUITY;
+
+        scenarioGridKernel.calculate(creditAmount.doubleValue(), rateAxis, creditPeriods, initialPaymentAxis, typeOfCredit, payments, totalInterest, taxDeductions);
+
+        return ScenarioGridDto.builder()
+                .percentRates(percentRates)
+                .creditPeriods(creditPeriods)
+                .initialPayments(initialPaymentAxis)
+                .payments(payments)
+                .totalInterest(totalInterest)
+                .taxDeductions(taxDeductions)
+                .build();
+    }
+
+
+    /**
+     * Значения диапазона в целых единицах (например, в сотых долях при scale = 2)
+     *
+     * @param range диапазон
+     * @param scale сколько знаков после запятой допускается
+     * @param name  название поля (для текста ошибки)
+     */
+    private static long[] expandRange(ValueRangeDto range, int scale, String name) {
+        if (range.getFrom() == null || range.getTo() == null || range.getStep() == null) {
+            throw new BadRequestException(String.format("Range of %s must contain from, to and step", name));
+        }
+
+        BigDecimal from = BigDecimal.valueOf(range.getFrom());
+        BigDecimal to = BigDecimal.valueOf(range.getTo());
+        BigDecimal step = BigDecimal.valueOf(range.getStep());
+
+        if (from.stripTrailingZeros().scale() > scale || to.stripTrailingZeros().scale() > scale || step.stripTrailingZeros().scale() > scale) {
+            throw new BadRequestException(String.format("Range of %s contains more than %d decimal places", name, scale));
+        }
+
+        if (step.signum() <= 0 || from.compareTo(to) > 0) {
+            throw new BadRequestException(String.format("Invalid range of %s", name));
+        }
+
+        long first = from.movePointRight(scale).longValueExact();
+        long last = to.movePointRight(scale).longValueExact();
+        long delta = step.movePointRight(scale).longValueExact();
+
+        long count = (last - first) / delta + 1;
+        if (count > MAX_GRID_SIZE) {
+            throw new BadRequestException(String.format("Grid cannot contain more than %d cells", MAX_GRID_SIZE));
+        }
+
+        long[] values = new long[(int) count];
+        for (int i = 0; i < count; i++) {
+            values[i] = first + i * delta;
+        }
+
+        return values;
+    }
+}
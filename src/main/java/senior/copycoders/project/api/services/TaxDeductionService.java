@@ -0,0 +1,146 @@
+package senior.copycoders.project.api.services;
+
+
+import jakarta.transaction.Transactional;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Service;
+import senior.copycoders.project.api.controllers.helpers.ControllerHelper;
+import senior.copycoders.project.api.dto.TaxDeductionDto;
+import senior.copycoders.project.api.dto.TaxDeductionYearDto;
+import senior.copycoders.project.api.services.engines.AmortizationEngine;
+import senior.copycoders.project.api.services.engines.TaxDeductionCalculator;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.CreditConstants;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Налоговый вычет по уплаченным процентам за весь срок кредита (по годам и нарастающим итогом)
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@Transactional
+public class TaxDeductionService {
+    ControllerHelper controllerHelper;
+    PaymentService paymentService;
+    AmortizationEngine amortizationEngine;
+    TaxDeductionCalculator taxDeductionCalculator;
+
+    // ставка НДФЛ, которая возвращается с уплаченных процентов
+    static BigDecimal TAX_RATE = BigDecimal.valueOf(0.13);
+
+
+    /**
+     * Налоговый вычет по параметрам кредита (как в /api/calculate-payment)
+     *
+     * @param initialPayment начальный платёж
+     * @param creditAmount   сумма кредита
+     * @param percentRate    годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod   срок кредитования в месяцах
+     * @param typeOfCredit   тип кредита (либо аннуитет, либо дифференцированный)
+     */
+    public TaxDeductionDto calculateTaxDeduction(BigDecimal initialPayment, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit) {
+
+        // "2024-08-24" - заглушка, чтобы прошла валидация по дате
+        controllerHelper.validateDataOfCredit("2024-08-24", initialPayment, creditAmount, percentRate, creditPeriod);
+
+        BigDecimal ostatokOfCredit = creditAmount.subtract(initialPayment);
+
+        // платёж по аннуитету и погашение долга по дифференцированному - так же, как в графике платежей
+        BigDecimal payment = typeOfCredit == TypeOfCredit.ANNUITY
+                ? amortizationEngine.calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod)
+                : BigDecimal.ZERO;
+        BigDecimal decrease = ostatokOfCredit.divide(BigDecimal.valueOf(creditPeriod), 2, RoundingMode.HALF_EVEN);
+
+        double[] percentByYear = taxDeductionCalculator.calculatePercentByYear(ostatokOfCredit.doubleValue(), percentRate.movePointRight(2).intValueExact(),
+                creditPeriod, typeOfCredit, payment.doubleValue(), decrease.doubleValue());
+
+        List<BigDecimal> percents = new ArrayList<>(percentByYear.length);
+        for (double percent : percentByYear) {
+            percents.add(BigDecimal.valueOf(percent).setScale(2, RoundingMode.HALF_EVEN));
+        }
+
+        return makeTaxDeductionDto(percents);
+    }
+
+
+    /**
+     * Налоговый вычет по сохранённому кредиту. Проценты берутся из актуального графика,
+     * поэтому учитываются все внесённые платежи (в том числе досрочные)
+     *
+     * @param creditId id кредита
+     */
+    public TaxDeductionDto getTaxDeductionByCreditId(Long creditId) {
+        CreditEntity credit = controllerHelper.getCreditOrThrowException(creditId);
+
+        List<PaymentEntity> payments = paymentService.deriveSchedule(credit);
+        List<BigDecimal> percents = new ArrayList<>();
+
+        if (!payments.isEmpty()) {
+            LocalDate firstDate = payments.get(0).getPaymentDate();
+
+            for (PaymentEntity payment : payments) {
+                int year = (int) (ChronoUnit.MONTHS.between(firstDate, payment.getPaymentDate()) / 12);
+
+                while (percents.size() <= year) {
+                    percents.add(BigDecimal.ZERO);
+                }
+
+                percents.set(year, percents.get(year).add(payment.getPercent()));
+            }
+        }
+
+        percents.replaceAll(percent -> percent.setScale(2, RoundingMode.HALF_EVEN));
+
+        return makeTaxDeductionDto(percents);
+    }
+
+
+    /**
+     * Вычет по годам: 13% от уплаченных процентов, нарастающим итогом не больше MAX_TAX_DEDUCTION
+     *
+     * @param percentByYear проценты за каждый год кредита
+     */
+    private TaxDeductionDto makeTaxDeductionDto(List<BigDecimal> percentByYear) {
+        BigDecimal maxTaxDeduction = BigDecimal.valueOf(CreditConstants.MAX_TAX_DEDUCTION.getValue());
+
+        BigDecimal totalPercent = BigDecimal.ZERO;
+        BigDecimal cumulativeTaxDeduction = BigDecimal.ZERO;
+        List<TaxDeductionYearDto> years = new ArrayList<>(percentByYear.size());
+
+        for (int i = 0; i < percentByYear.size(); i++) {
+            BigDecimal percent = percentByYear.get(i);
+
+            BigDecimal taxDeduction = percent.multiply(TAX_RATE).setScale(2, RoundingMode.HALF_EVEN)
+                    .min(maxTaxDeduction.subtract(cumulativeTaxDeduction));
+
+            totalPercent = totalPercent.add(percent);
+            cumulativeTaxDeduction = cumulativeTaxDeduction.add(taxDeduction);
+
+            years.add(TaxDeductionYearDto.builder()
+                    .year(i + 1)
+                    .percent(percent)
+                    .taxDeduction(taxDeduction)
+                    .cumulativeTaxDeduction(cumulativeTaxDeduction)
+                    .build());
+        }
+
+        return TaxDeductionDto.builder()
+                .totalPercent(totalPercent)
+                .totalTaxDeduction(cumulativeTaxDeduction)
+                .maxTaxDeduction(maxTaxDeduction)
+                .years(years)
+                .build();
+    }
+}
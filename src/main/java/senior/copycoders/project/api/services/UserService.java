@@ -76,6 +76,29 @@ public class UserService {
         return getByUsername(username);
     }
 
+    /**
+     * Получение id текущего пользователя без запроса к БД: JwtAuthenticationFilter кладёт в контекст
+     * Spring Security самого пользователя
+     *
+     * @return id текущего пользователя
+     */
+    public Long getCurrentUserId() {
+        if (SecurityContextHolder.getContext().getAuthentication().getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+
+        return getCurrentUser().getId();
+    }
+
+    /**
+     * Ссылка на текущего пользователя для связей (например, владелец кредита): сам пользователь не загружается
+     *
+     * @return текущий пользователь
+     */
+    public User getCurrentUserReference() {
+        return repository.getReferenceById(getCurrentUserId());
+    }
+
 
 
 }
@@ -0,0 +1,95 @@
+package senior.copycoders.project.api.services.engines;
+
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Движок расчёта платежей по кредиту.
+ * <p>
+ * Все реализации обязаны давать одинаковый результат (вплоть до масштаба BigDecimal),
+ * поэтому их можно подменять через свойство credit.engine
+ */
+public interface AmortizationEngine {
+
+    /**
+     * Метод для вычисления платежа по аннуитетному кредиту
+     *
+     * @param creditAmount сумма кредита
+     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod срок кредитования в месяцах
+     * @return платёж
+     */
+    BigDecimal calculatePaymentOfAnnuityCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod);
+
+    /**
+     * Метод для вычисления первого платежа по дифференцированному кредиту
+     *
+     * @param creditAmount сумма кредита
+     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod срок кредитования в месяцах
+     * @return первый платёж
+     */
+    BigDecimal calculateFirstPaymentOfDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod);
+
+    /**
+     * Метод для вычисления списка платежей по аннуитетному кредиту
+     *
+     * @param dateOfFirstPayment дата первого платежа
+     * @param creditAmount       сумма кредита
+     * @param payment            платёж
+     * @param percentRate        годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod       срок кредитования в месяцах
+     * @param currentCredit      кредит, к которому привязаны платежи
+     * @param isNeedCheck        нужно ли сверять общую сумму выплат с helpTotalSum (при перерасчёте)
+     * @param helpTotalSum       общая сумма выплат, которая должна получиться
+     * @return список платежей
+     */
+    List<PaymentEntity> createListOfAnnuityCredit(LocalDate dateOfFirstPayment, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum);
+
+    /**
+     * Метод для вычисления списка платежей по дифференцированному кредиту
+     *
+     * @param date          дата первого платежа
+     * @param creditAmount  сумма кредита
+     * @param percentRate   годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod  срок кредитования в месяцах
+     * @param currentCredit кредит, к которому привязаны платежи
+     * @param isNeedCheck   нужно ли сверять общую сумму выплат с helpTotalSum (при перерасчёте)
+     * @param helpTotalSum  общая сумма выплат, которая должна получиться
+     * @return список платежей
+     */
+    List<PaymentEntity> createListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum);
+
+    /**
+     * Метод для расчёта налогового вычета (13% от процентов, уплаченных за первые 12 месяцев), без учёта лимита
+     *
+     * @param creditAmount сумма кредита (уже за вычетом начального платежа)
+     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod срок кредитования в месяцах
+     * @param typeOfCredit тип кредита (либо аннуитет, либо дифференцированный)
+     * @param payment      ежемесячный платёж (для аннуитета)
+     * @return налоговый вычет
+     */
+    BigDecimal calculateTaxDeductionOfFirstYear(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment);
+
+
+    /**
+     * Стабилизация последнего платежа: из-за неточности округления после последнего платежа может остаться долг
+     *
+     * @param payments список платежей
+     */
+    static void stabilizeLastPayment(List<PaymentEntity> payments) {
+        PaymentEntity lastPayment = payments.get(payments.size() - 1);
+
+        if (lastPayment.getAfterPayment().compareTo(BigDecimal.ZERO) != 0) {
+            lastPayment.setPaymentAmount(lastPayment.getPaymentAmount().add(lastPayment.getAfterPayment()));
+            lastPayment.setRepaymentCredit(lastPayment.getRepaymentCredit().add(lastPayment.getAfterPayment()));
+            lastPayment.setAfterPayment(BigDecimal.ZERO);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package senior.copycoders.project.api.services.engines;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+
+/**
+ * Выбор движка расчёта платежей: credit.engine=fixed-point (по умолчанию) или credit.engine=bigdecimal.
+ * Сервисы получают выбранный движок через кэш результатов (credit.cache.*)
+ */
+@Configuration
+public class AmortizationEngineConfiguration {
+
+    @Bean
+    public BigDecimalAmortizationEngine bigDecimalAmortizationEngine() {
+        return new BigDecimalAmortizationEngine();
+    }
+
+    @Bean
+    public AnnuityFactorTable annuityFactorTable() {
+        return new AnnuityFactorTable();
+    }
+
+    @Bean
+    public ScenarioGridKernel scenarioGridKernel(AnnuityFactorTable annuityFactorTable) {
+        return new ScenarioGridKernel(annuityFactorTable);
+    }
+
+    @Bean
+    public TaxDeductionCalculator taxDeductionCalculator() {
+        return new TaxDeductionCalculator();
+    }
+
+    @Bean
+    public EffectiveRateSolver effectiveRateSolver() {
+        return new EffectiveRateSolver();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "credit.engine", havingValue = "fixed-point", matchIfMissing = true)
+    public FixedPointAmortizationEngine fixedPointAmortizationEngine(BigDecimalAmortizationEngine bigDecimalAmortizationEngine, AnnuityFactorTable annuityFactorTable) {
+        return new FixedPointAmortizationEngine(bigDecimalAmortizationEngine, annuityFactorTable);
+    }
+
+    @Bean
+    @Primary
+    public CachingAmortizationEngine cachingAmortizationEngine(BigDecimalAmortizationEngine bigDecimalAmortizationEngine,
+                                                               ObjectProvider<FixedPointAmortizationEngine> fixedPointAmortizationEngine,
+                                                               @Value("${credit.cache.maximum-size}") long maximumSize,
+                                                               @Value("${credit.cache.schedule-maximum-rows}") long scheduleMaximumRows,
+                                                               @Value("${credit.cache.expire-after-access}") Duration expireAfterAccess) {
+        // при credit.engine=bigdecimal движка на long нет
+        AmortizationEngine engine = fixedPointAmortizationEngine.getIfAvailable();
+
+        if (engine == null) {
+            engine = bigDecimalAmortizationEngine;
+        }
+
+        return new CachingAmortizationEngine(engine, maximumSize, scheduleMaximumRows, expireAfterAccess);
+    }
+}
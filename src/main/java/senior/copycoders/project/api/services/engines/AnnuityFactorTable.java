@@ -0,0 +1,51 @@
+package senior.copycoders.project.api.services.engines;
+
+import senior.copycoders.project.store.enums.CreditConstants;
+
+/**
+ * Таблица аннуитетных коэффициентов r / (1 - (1 + r)^(-n)) для всех допустимых ставок (с шагом 0.01%)
+ * и сроков кредитования, строится один раз при старте приложения
+ */
+public class AnnuityFactorTable {
+
+    private static final int MAX_RATE = CreditConstants.MAX_INTEREST_RATE.getValue() * 100;
+    private static final int MIN_PERIOD = CreditConstants.MIN_CREDIT_PERIOD.getValue();
+    private static final int MAX_PERIOD = CreditConstants.MAX_CREDIT_PERIOD.getValue();
+    private static final int PERIODS = MAX_PERIOD - MIN_PERIOD + 1;
+
+    // factors[(rate - 1) * PERIODS + (creditPeriod - MIN_PERIOD)]
+    private final double[] factors = new double[MAX_RATE * PERIODS];
+
+    public AnnuityFactorTable() {
+        for (int rate = 1; rate <= MAX_RATE; rate++) {
+            for (int creditPeriod = MIN_PERIOD; creditPeriod <= MAX_PERIOD; creditPeriod++) {
+                factors[(rate - 1) * PERIODS + creditPeriod - MIN_PERIOD] = calculate(rate, creditPeriod);
+            }
+        }
+    }
+
+
+    /**
+     * Аннуитетный коэффициент
+     *
+     * @param rate         годовая ставка в сотых долях процента (10.25% = 1025)
+     * @param creditPeriod срок кредитования в месяцах
+     */
+    public double factor(int rate, int creditPeriod) {
+        if (rate < 1 || rate > MAX_RATE || creditPeriod < MIN_PERIOD || creditPeriod > MAX_PERIOD) {
+            return calculate(rate, creditPeriod);
+        }
+
+        return factors[(rate - 1) * PERIODS + creditPeriod - MIN_PERIOD];
+    }
+
+
+    /**
+     * Аннуитетный коэффициент r / (1 - (1 + r)^(-n)), где r = rate / 120_000 - месячная ставка
+     */
+    static double calculate(int rate, int creditPeriod) {
+        double monthlyRate = rate / 120_000.0;
+
+        return monthlyRate / -Math.expm1(-creditPeriod * Math.log1p(monthlyRate));
+    }
+}
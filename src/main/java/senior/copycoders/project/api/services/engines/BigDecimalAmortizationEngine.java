@@ -0,0 +1,259 @@
+package senior.copycoders.project.api.services.engines;
+
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Эталонный движок расчёта: все вычисления ведутся в BigDecimal с масштабом 38
+ */
+public class BigDecimalAmortizationEngine implements AmortizationEngine {
+
+
+    @Override
+    public BigDecimal calculatePaymentOfAnnuityCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        // Ежемесячный платеж = (Сумма кредита * Процентная ставка / 12) / (1 - (1 + Процентная ставка / 12)^(-Срок кредита в месяцах))
+
+        // Преобразуем percentRate, разделив его на 100
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_EVEN);
+
+        // (ostatokOfCredit * percentRate) / 12
+        BigDecimal firstPart = (creditAmount.multiply(percentRate)).divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+
+        // percentRate/12
+        BigDecimal secondPart = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+
+        // 1 + percentRate/12
+        BigDecimal thirdPart = BigDecimal.ONE.add(secondPart);
+
+        // (1 + percentRate/12) ^ creditPeriod
+        BigDecimal fourthPart = thirdPart.pow(creditPeriod);
+
+        // 1/ ((1 + percentRate/12) ^ creditPeriod)
+        BigDecimal fivePart = BigDecimal.ONE.divide(fourthPart, 38, RoundingMode.HALF_EVEN);
+
+        // 1 - (1 + percentRate/12) ^ (-creditPeriod)
+        BigDecimal sixPart = BigDecimal.ONE.subtract(fivePart);
+
+        return firstPart.divide(sixPart, 2, RoundingMode.HALF_EVEN);
+    }
+
+
+    @Override
+    public BigDecimal calculateFirstPaymentOfDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        // r = r / 100;
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_EVEN);
+
+        // r = r / 12;
+        percentRate = percentRate.divide(BigDecimal.valueOf(12), 4, RoundingMode.HALF_EVEN);
+
+        // постоянная часть уменьшения кредита
+        BigDecimal decrease = creditAmount.divide(BigDecimal.valueOf(creditPeriod), 4, RoundingMode.HALF_EVEN);
+
+        // тут прибавляем проценты ещё
+        return decrease.add(percentRate.multiply(creditAmount));
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfAnnuityCredit(LocalDate dateOfFirstPayment, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        // Общая сумма денег, которую мы заплатим по итогу, равняется payment * creditPeriod
+
+        // Преобразуем percentRate, разделив его на 100
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
+
+        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+
+        BigDecimal totalSum = payment.multiply(BigDecimal.valueOf(creditPeriod)).setScale(2, RoundingMode.HALF_EVEN);
+
+        if (isNeedCheck) {
+            if (totalSum.compareTo(helpTotalSum) != 0) {
+                totalSum = helpTotalSum;
+            }
+        }
+
+
+        List<PaymentEntity> payments = new ArrayList<>();
+
+        for (int i = 1; i <= creditPeriod; i++) {
+
+            // Посчитаем какая часть платежа уйдёт на оплату процентов
+            BigDecimal currentPercent = (creditAmount.multiply(percentRate));
+
+            // Посчитаем какая часть платежа уйдёт на погашение основного долга
+            BigDecimal repaymentCredit = payment.subtract(currentPercent).setScale(2, RoundingMode.HALF_EVEN);
+
+            // сумма долга до платежа
+            BigDecimal beforePayment = new BigDecimal(totalSum.toString());
+
+            // сумма долга после платежи
+            totalSum = totalSum.subtract(payment).setScale(2, RoundingMode.HALF_EVEN);
+
+
+            // акутальная сумма кредита после платежа
+            creditAmount = (creditAmount.add(currentPercent)).subtract(payment);
+
+            payments.add(PaymentEntity.builder()
+                    .paymentNumber(i)
+                    .paymentDate(dateOfFirstPayment)
+                    .paymentAmount(payment)
+                    .percent(currentPercent.setScale(4, RoundingMode.HALF_EVEN))
+                    .repaymentCredit(repaymentCredit)
+                    .afterPayment(totalSum)
+                    .credit(currentCredit)
+                    .status(StatusOfPaymentOrCredit.PENDING)
+                    .beforePayment(beforePayment)
+                    .creditAmount(creditAmount)
+                    .build());
+
+            dateOfFirstPayment = dateOfFirstPayment.plusMonths(1);
+
+        }
+
+        // проведём стабилизацию последнего платежа
+        AmortizationEngine.stabilizeLastPayment(payments);
+
+        return payments;
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+
+        List<PaymentEntity> payments = new ArrayList<>();
+
+        // посчитаем общую сумму долга
+        BigDecimal totalSum = createTotalSumForDifferentiatedCredit(creditAmount, percentRate, creditPeriod);
+
+        if (isNeedCheck) {
+            if (totalSum.compareTo(helpTotalSum) != 0) {
+                totalSum = helpTotalSum;
+            }
+        }
+
+        // каждый месяц долг должен уменьшаться на эту величину
+        BigDecimal decrease = creditAmount.divide(BigDecimal.valueOf(creditPeriod), 2, RoundingMode.HALF_EVEN);
+
+        // r = r / 100;
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
+
+        // r = r / 12;
+        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+
+
+        for (int i = 1; i <= creditPeriod; i++) {
+            PaymentEntity paymentEntity = new PaymentEntity();
+
+            // начисляем проценты
+            BigDecimal percent = creditAmount.multiply(percentRate).setScale(4, RoundingMode.HALF_EVEN);
+
+            // платёж = проценты + постоянная часть
+            BigDecimal payment = percent.add(decrease).setScale(4, RoundingMode.HALF_EVEN);
+
+            paymentEntity.setPaymentAmount(payment);
+
+            // привязываем платёж к кредиту
+            paymentEntity.setCredit(currentCredit);
+            // установка даты
+            paymentEntity.setPaymentDate(date);
+            // установка общей суммы выплат до платежа
+            paymentEntity.setBeforePayment(totalSum);
+            // погашение процентов
+            paymentEntity.setPercent(percent);
+            // погашение долга
+            paymentEntity.setRepaymentCredit(decrease);
+
+            // уменьшим текущую сумма долга
+            creditAmount = creditAmount.subtract(decrease);
+            paymentEntity.setCreditAmount(creditAmount);
+            // установим дату следующего платежа
+            date = date.plusMonths(1);
+            // уменьшим общую сумму выплат
+            totalSum = totalSum.subtract(payment).setScale(4, RoundingMode.HALF_EVEN);
+
+            // установим общую сумму выплат после платежа
+            paymentEntity.setAfterPayment(totalSum);
+            // установим статус - не оплачен
+            paymentEntity.setStatus(StatusOfPaymentOrCredit.PENDING);
+
+            // установим номер платежа
+            paymentEntity.setPaymentNumber(i);
+
+            payments.add(paymentEntity);
+        }
+
+        // проверим последний платёж, из-за неточности округления может быть проблемы
+        AmortizationEngine.stabilizeLastPayment(payments);
+
+        return payments;
+
+    }
+
+
+    @Override
+    public BigDecimal calculateTaxDeductionOfFirstYear(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment) {
+
+        // Умножьте сумму уплаченных процентов за год на 13% (ставка НДФЛ)
+
+        BigDecimal sumOfPercent = BigDecimal.ZERO;
+
+        BigDecimal decrease = creditAmount.divide(BigDecimal.valueOf(creditPeriod), 4, RoundingMode.HALF_EVEN);
+
+        // r = r / 100;
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 38, RoundingMode.HALF_EVEN);
+
+        // r = r / 12;
+        percentRate = percentRate.divide(BigDecimal.valueOf(12), 38, RoundingMode.HALF_EVEN);
+
+        for (int i = 1; i <= 12; i++) {
+            BigDecimal currentPercent = creditAmount.multiply(percentRate);
+
+            sumOfPercent = sumOfPercent.add(currentPercent);
+
+            creditAmount = creditAmount.add(currentPercent);
+
+            // сделаем платёж
+            if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                creditAmount = creditAmount.subtract(payment);
+            } else {
+                creditAmount = creditAmount.subtract(currentPercent.add(decrease));
+            }
+
+        }
+
+        // надо умножить выплаченные проценты на 13%
+        return sumOfPercent.multiply(BigDecimal.valueOf(0.13)).setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+
+    /**
+     * Метод для расчёта общей суммы выплат для дифференцированного кредита
+     *
+     * @param creditAmount сумма кредита
+     * @param percentRate  годовая процентная ставка (именно в процентах, а не в долях, то есть 10, а не 0.1)
+     * @param creditPeriod срок кредитования в месяцах
+     */
+    private BigDecimal createTotalSumForDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        // Общая сумма выплат = сумма кредита + r/(100*12) * сумма кредита * (n+1) / 2;
+
+        // r = r / 100;
+        percentRate = percentRate.divide(BigDecimal.valueOf(100), 11, RoundingMode.HALF_EVEN);
+
+        // r = r / 12;
+        percentRate = percentRate.divide(BigDecimal.valueOf(12), 11, RoundingMode.HALF_EVEN);
+
+        // r/(100*12) * сумма кредита * (n+1) / 2
+        BigDecimal result = (percentRate.multiply(creditAmount)).multiply(BigDecimal.valueOf(creditPeriod).add(BigDecimal.valueOf(1))).divide(BigDecimal.valueOf(2), 38, RoundingMode.HALF_EVEN);
+
+
+        // сумма кредита + r/(100*12) * сумма кредита * (n+1) / 2;
+        return result.add(creditAmount).setScale(2, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,173 @@
+package senior.copycoders.project.api.services.engines;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш результатов перед движком расчёта: платёж, налоговый вычет и график платежей - чистые функции параметров кредита,
+ * а одни и те же (круглые) суммы, ставки и сроки запрашиваются постоянно.
+ * <p>
+ * Кэши ограничены по размеру и по времени, статистика (попадания, промахи, вытеснения) ведётся и доступна через getCaches.
+ * Ключи графика и первого платежа дифференцированного кредита - параметры как есть: BigDecimal сравнивается вместе
+ * с масштабом, потому что от масштаба входа зависит масштаб результата (а значит, и JSON ответа).
+ * Аннуитетный платёж и налоговый вычет всегда с двумя знаками, поэтому в их ключах суммы и ставка без хвостовых нулей:
+ * 12.35 и 12.350 - одна запись
+ */
+public class CachingAmortizationEngine implements AmortizationEngine {
+
+    private final AmortizationEngine delegate;
+
+    private final Cache<PaymentKey, BigDecimal> paymentCache;
+    private final Cache<TaxDeductionKey, BigDecimal> taxDeductionCache;
+
+    // график хранится без кредита, вес - количество платежей
+    private final Cache<ScheduleKey, List<PaymentEntity>> scheduleCache;
+
+
+    /**
+     * @param delegate            движок, результаты которого кэшируются
+     * @param maximumSize         максимальное количество платежей и налоговых вычетов в кэше (каждого)
+     * @param scheduleMaximumRows максимальное суммарное количество платежей во всех закэшированных графиках
+     * @param expireAfterAccess   время жизни записи без обращений к ней
+     */
+    public CachingAmortizationEngine(AmortizationEngine delegate, long maximumSize, long scheduleMaximumRows, Duration expireAfterAccess) {
+        this.delegate = delegate;
+
+        this.paymentCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+
+        this.taxDeductionCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+
+        this.scheduleCache = Caffeine.newBuilder()
+                .maximumWeight(scheduleMaximumRows)
+                .<ScheduleKey, List<PaymentEntity>>weigher((key, payments) -> payments.size())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+
+    /**
+     * Кэши по именам (для метрик)
+     */
+    public Map<String, Cache<?, ?>> getCaches() {
+        return Map.of(
+                "credit.payment", paymentCache,
+                "credit.tax-deduction", taxDeductionCache,
+                "credit.schedule", scheduleCache);
+    }
+
+
+    @Override
+    public BigDecimal calculatePaymentOfAnnuityCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        return paymentCache.get(new PaymentKey(TypeOfCredit.ANNUITY, normalize(creditAmount), normalize(percentRate), creditPeriod),
+                key -> delegate.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod));
+    }
+
+
+    @Override
+    public BigDecimal calculateFirstPaymentOfDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        return paymentCache.get(new PaymentKey(TypeOfCredit.DIFFERENTIATED, creditAmount, percentRate, creditPeriod),
+                key -> delegate.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, creditPeriod));
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfAnnuityCredit(LocalDate dateOfFirstPayment, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        // перерасчёт после платежа каждый раз со своими данными, его не кэшируем
+        if (isNeedCheck) {
+            return delegate.createListOfAnnuityCredit(dateOfFirstPayment, creditAmount, payment, percentRate, creditPeriod, currentCredit, true, helpTotalSum);
+        }
+
+        List<PaymentEntity> payments = scheduleCache.get(new ScheduleKey(TypeOfCredit.ANNUITY, dateOfFirstPayment, creditAmount, payment, percentRate, creditPeriod),
+                key -> List.copyOf(delegate.createListOfAnnuityCredit(dateOfFirstPayment, creditAmount, payment, percentRate, creditPeriod, null, false, helpTotalSum)));
+
+        return copyPayments(payments, currentCredit);
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        if (isNeedCheck) {
+            return delegate.createListOfDifferentiatedCredit(date, creditAmount, percentRate, creditPeriod, currentCredit, true, helpTotalSum);
+        }
+
+        List<PaymentEntity> payments = scheduleCache.get(new ScheduleKey(TypeOfCredit.DIFFERENTIATED, date, creditAmount, null, percentRate, creditPeriod),
+                key -> List.copyOf(delegate.createListOfDifferentiatedCredit(date, creditAmount, percentRate, creditPeriod, null, false, helpTotalSum)));
+
+        return copyPayments(payments, currentCredit);
+    }
+
+
+    @Override
+    public BigDecimal calculateTaxDeductionOfFirstYear(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment) {
+        // для дифференцированного кредита платёж не используется
+        BigDecimal paymentOfKey = typeOfCredit == TypeOfCredit.ANNUITY ? normalize(payment) : null;
+
+        return taxDeductionCache.get(new TaxDeductionKey(typeOfCredit, normalize(creditAmount), normalize(percentRate), creditPeriod, paymentOfKey),
+                key -> delegate.calculateTaxDeductionOfFirstYear(creditAmount, percentRate, creditPeriod, typeOfCredit, payment));
+    }
+
+
+    /**
+     * Платежи из кэша нельзя отдавать как есть: их сохраняют в БД и меняют при перерасчёте
+     *
+     * @param payments      график из кэша
+     * @param currentCredit кредит, к которому привязываются платежи
+     */
+    private static List<PaymentEntity> copyPayments(List<PaymentEntity> payments, CreditEntity currentCredit) {
+        List<PaymentEntity> copies = new ArrayList<>(payments.size());
+
+        for (PaymentEntity payment : payments) {
+            copies.add(PaymentEntity.builder()
+                    .paymentNumber(payment.getPaymentNumber())
+                    .paymentDate(payment.getPaymentDate())
+                    .paymentAmount(payment.getPaymentAmount())
+                    .percent(payment.getPercent())
+                    .repaymentCredit(payment.getRepaymentCredit())
+                    .beforePayment(payment.getBeforePayment())
+                    .afterPayment(payment.getAfterPayment())
+                    .creditAmount(payment.getCreditAmount())
+                    .status(payment.getStatus())
+                    .credit(currentCredit)
+                    .build());
+        }
+
+        return copies;
+    }
+
+
+    // для ключей, результат которых не зависит от масштаба входа
+    private static BigDecimal normalize(BigDecimal value) {
+        return value == null ? null : value.stripTrailingZeros();
+    }
+
+
+    private record PaymentKey(TypeOfCredit typeOfCredit, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+    }
+
+
+    private record TaxDeductionKey(TypeOfCredit typeOfCredit, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, BigDecimal payment) {
+    }
+
+
+    private record ScheduleKey(TypeOfCredit typeOfCredit, LocalDate date, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod) {
+    }
+}
@@ -0,0 +1,114 @@
+package senior.copycoders.project.api.services.engines;
+
+/**
+ * Эффективная годовая ставка (внутренняя норма доходности) по денежному потоку кредита:
+ * такая ставка E, при которой сумма платежей, дисконтированных по (1 + E)^t, равна выданной сумме.
+ * <p>
+ * Решаем относительно x = ln(1 + E): f(x) = сумма a_k * e^(-t_k * x) - L монотонно убывает и выпукла,
+ * поэтому метод Ньютона сходится за несколько шагов, а если шаг выходит за границы интервала с корнем - делим интервал пополам
+ */
+public class EffectiveRateSolver {
+
+    private static final int MAX_ITERATIONS = 200;
+    private static final double TOLERANCE = 1e-13;
+
+
+    /**
+     * Эффективная ставка для ежемесячных платежей: k-й платёж через k/12 лет после выдачи
+     *
+     * @param creditAmount выданная сумма
+     * @param amounts      суммы платежей по порядку
+     * @return эффективная годовая ставка в долях (0.1 = 10%)
+     */
+    public double solveMonthly(double creditAmount, double[] amounts) {
+        double[] times = new double[amounts.length];
+        for (int k = 0; k < amounts.length; k++) {
+            times[k] = (k + 1) / 12.0;
+        }
+
+        return solve(creditAmount, amounts, times);
+    }
+
+
+    /**
+     * Эффективная ставка для платежей в произвольные моменты времени
+     *
+     * @param creditAmount выданная сумма
+     * @param amounts      суммы платежей
+     * @param times        время каждого платежа в годах от выдачи кредита
+     * @return эффективная годовая ставка в долях (0.1 = 10%)
+     */
+    public double solve(double creditAmount, double[] amounts, double[] times) {
+        // f(lo) > 0 > f(hi), при x = 0 сумма платежей обычно больше выданной суммы
+        double lo = -1;
+        double hi = 1;
+
+        while (presentValue(amounts, times, lo) - creditAmount <= 0 && lo > -64) {
+            lo *= 2;
+        }
+
+        while (presentValue(amounts, times, hi) - creditAmount >= 0 && hi < 64) {
+            hi *= 2;
+        }
+
+        // начальное приближение: вся сумма платежей выплачена разом в средневзвешенный момент платежа,
+        // тогда (1 + E)^t = сумма платежей / выданная сумма (для одного платежа это и есть ответ)
+        double sum = 0;
+        double weightedTime = 0;
+        for (int k = 0; k < amounts.length; k++) {
+            sum += amounts[k];
+            weightedTime += amounts[k] * times[k];
+        }
+
+        double x = Math.log(sum / creditAmount) / (weightedTime / sum);
+
+        if (!(x > lo && x < hi)) {
+            x = (lo + hi) / 2;
+        }
+
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double value = 0;
+            double derivative = 0;
+
+            for (int k = 0; k < amounts.length; k++) {
+                double discounted = amounts[k] * Math.exp(-times[k] * x);
+                value += discounted;
+                derivative -= times[k] * discounted;
+            }
+
+            value -= creditAmount;
+
+            if (value > 0) {
+                lo = x;
+            } else {
+                hi = x;
+            }
+
+            double next = x - value / derivative;
+
+            // шаг Ньютона вышел за интервал с корнем (или производная вырождена) - делим пополам
+            if (!(next > lo && next < hi)) {
+                next = (lo + hi) / 2;
+            }
+
+            if (Math.abs(next - x) < TOLERANCE) {
+                return Math.expm1(next);
+            }
+
+            x = next;
+        }
+
+        return Math.expm1(x);
+    }
+
+
+    private static double presentValue(double[] amounts, double[] times, double x) {
+        double value = 0;
+
+        for (int k = 0; k < amounts.length; k++) {
+            value += amounts[k] * Math.exp(-times[k] * x);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,564 @@
+package senior.copycoders.project.api.services.engines;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.CreditConstants;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Движок расчёта на целых числах (long).
+ * <p>
+ * Суммы хранятся в копейках, ставка - в сотых долях процента (10.25% = 1025), поэтому месячная ставка
+ * равна rate / 120_000 точно. Остаток долга по аннуитету ведётся с точностью 10^-21 рубля в двух long.
+ * Результат совпадает с {@link BigDecimalAmortizationEngine}: если точности не хватает, чтобы однозначно
+ * округлить значение так же, как BigDecimal (или входные данные не помещаются в long), расчёт отдаётся ему
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FixedPointAmortizationEngine implements AmortizationEngine {
+
+    // месячная ставка = rate / (100 (проценты) * 100 (сотые доли) * 12 (месяцы))
+    private static final long RATE_DENOMINATOR = 120_000;
+
+    // основание младшей части остатка долга
+    private static final long LIMB = 10_000_000_000_000L;
+
+    // единицы округления, выраженные в 10^-8 рубля
+    private static final long RUBLE = 100_000_000L;
+    private static final long KOPECK = 1_000_000L;
+    private static final long TEN_THOUSANDTH = 10_000L;
+
+    private static final long MAX_AMOUNT = CreditConstants.MAX_CREDIT_AMOUNT.getValue() * 100L;
+    private static final int MAX_RATE = CreditConstants.MAX_INTEREST_RATE.getValue() * 100;
+
+    // при |hi| <= MAX_HI произведение hi * MAX_RATE помещается в long
+    private static final long MAX_HI = 4_000_000_000_000_000L;
+
+    // относительная погрешность вычисления аннуитетного коэффициента в double
+    private static final double RELATIVE_ERROR = 1e-12;
+
+    // значение не удалось однозначно округлить
+    private static final long FALLBACK = Long.MIN_VALUE;
+
+    // знак отклонения от BigDecimal неизвестен
+    private static final int UNKNOWN = 2;
+
+    BigDecimalAmortizationEngine fallback;
+    AnnuityFactorTable annuityFactorTable;
+
+
+    @Override
+    public BigDecimal calculatePaymentOfAnnuityCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        long amount = toMinorUnits(creditAmount, 2);
+        int rate = toRate(percentRate);
+
+        if (amount >= 0 && amount <= MAX_AMOUNT && rate > 0 && creditPeriod >= 1) {
+            // платёж в копейках = сумма кредита * r / (1 - (1 + r)^(-n))
+            long payment = roundPayment(amount * annuityFactorTable.factor(rate, creditPeriod));
+
+            if (payment != FALLBACK) {
+                return BigDecimal.valueOf(payment, 2);
+            }
+        }
+
+        return fallback.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod);
+    }
+
+
+    @Override
+    public BigDecimal calculateFirstPaymentOfDifferentiatedCredit(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod) {
+        long amount = toMinorUnits(creditAmount, 2);
+        int rate = toRate(percentRate);
+
+        if (amount < 0 || amount > MAX_AMOUNT || rate <= 0 || creditPeriod < 1) {
+            return fallback.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, creditPeriod);
+        }
+
+        // r / 100 / 12, округлённая до 4 знаков (в единицах 10^-4)
+        long monthlyRate = divideHalfEven(rate, 12, 0);
+
+        // постоянная часть уменьшения кредита (в единицах 10^-4)
+        long decrease = divideHalfEven(amount * 100, creditPeriod, 0);
+
+        // платёж в единицах 10^-6, масштаб как у decrease + r * creditAmount
+        long payment = decrease * 100 + monthlyRate * amount;
+
+        return BigDecimal.valueOf(payment, 6).setScale(Math.max(4, 4 + creditAmount.scale()));
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfAnnuityCredit(LocalDate dateOfFirstPayment, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        List<PaymentEntity> payments = tryCreateListOfAnnuityCredit(dateOfFirstPayment, creditAmount, payment, percentRate, creditPeriod, currentCredit, isNeedCheck, helpTotalSum);
+
+        return payments != null ? payments : fallback.createListOfAnnuityCredit(dateOfFirstPayment, creditAmount, payment, percentRate, creditPeriod, currentCredit, isNeedCheck, helpTotalSum);
+    }
+
+
+    @Override
+    public List<PaymentEntity> createListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        List<PaymentEntity> payments = tryCreateListOfDifferentiatedCredit(date, creditAmount, percentRate, creditPeriod, currentCredit, isNeedCheck, helpTotalSum);
+
+        return payments != null ? payments : fallback.createListOfDifferentiatedCredit(date, creditAmount, percentRate, creditPeriod, currentCredit, isNeedCheck, helpTotalSum);
+    }
+
+
+    @Override
+    public BigDecimal calculateTaxDeductionOfFirstYear(BigDecimal creditAmount, BigDecimal percentRate, Integer creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment) {
+        long amount = toMinorUnits(creditAmount, 2);
+        int rate = toRate(percentRate);
+        long taxDeduction = FALLBACK;
+
+        if (amount >= 0 && amount <= MAX_AMOUNT && rate > 0 && creditPeriod >= 1) {
+            taxDeduction = typeOfCredit == TypeOfCredit.ANNUITY
+                    ? calculateTaxDeductionOfAnnuityCredit(amount, rate, toMinorUnits(payment, 2))
+                    : calculateTaxDeductionOfDifferentiatedCredit(amount, rate, creditPeriod);
+        }
+
+        return taxDeduction != FALLBACK
+                ? BigDecimal.valueOf(taxDeduction, 2)
+                : fallback.calculateTaxDeductionOfFirstYear(creditAmount, percentRate, creditPeriod, typeOfCredit, payment);
+    }
+
+
+    private List<PaymentEntity> tryCreateListOfAnnuityCredit(LocalDate date, BigDecimal creditAmount, BigDecimal payment, BigDecimal percentRate, int creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        long amount = toMinorUnits(creditAmount, 2);
+        long paymentInKopecks = toMinorUnits(payment, 2);
+        int rate = toRate(percentRate);
+
+        if (amount < 0 || amount > MAX_AMOUNT || paymentInKopecks < 0 || paymentInKopecks > MAX_AMOUNT || rate <= 0 || creditPeriod < 1) {
+            return null;
+        }
+
+        // общая сумма выплат в копейках (до первого платежа - в том виде, в котором её получил бы BigDecimal)
+        long totalSum = paymentInKopecks * creditPeriod;
+        BigDecimal firstBeforePayment = BigDecimal.valueOf(totalSum, 2);
+
+        if (isNeedCheck && firstBeforePayment.compareTo(helpTotalSum) != 0) {
+            totalSum = toMinorUnits(helpTotalSum, 2);
+            firstBeforePayment = helpTotalSum;
+
+            if (totalSum == FALLBACK) {
+                return null;
+            }
+        }
+
+        Balance balance = new Balance(amount, rate);
+        List<PaymentEntity> payments = new ArrayList<>(creditPeriod);
+
+        for (int i = 1; i <= creditPeriod; i++) {
+
+            // начисляем проценты за месяц
+            if (!balance.accrue()) {
+                return null;
+            }
+
+            long percent = round(balance.percentHi, balance.percentLo, TEN_THOUSANDTH, balance.percentError, balance.percentErrorSign, RoundingMode.HALF_EVEN);
+
+            // погашение основного долга = платёж - проценты
+            long repaymentHi = paymentInKopecks * KOPECK - balance.percentHi - (balance.percentLo > 0 ? 1 : 0);
+            long repaymentLo = balance.percentLo > 0 ? LIMB - balance.percentLo : 0;
+            long repaymentCredit = round(repaymentHi, repaymentLo, KOPECK, balance.percentError, negate(balance.percentErrorSign), RoundingMode.HALF_EVEN);
+
+            // остаток долга после платежа, в БД он хранится с двумя знаками после запятой
+            balance.pay(paymentInKopecks);
+            long creditAmountAfterPayment = round(balance.hi, balance.lo, KOPECK, balance.error, balance.errorSign, RoundingMode.HALF_UP);
+
+            if (percent == FALLBACK || repaymentCredit == FALLBACK || creditAmountAfterPayment == FALLBACK) {
+                return null;
+            }
+
+            BigDecimal beforePayment = i == 1 ? firstBeforePayment : BigDecimal.valueOf(totalSum, 2);
+            totalSum -= paymentInKopecks;
+
+            payments.add(PaymentEntity.builder()
+                    .paymentNumber(i)
+                    .paymentDate(date)
+                    .paymentAmount(payment)
+                    .percent(BigDecimal.valueOf(percent, 4))
+                    .repaymentCredit(BigDecimal.valueOf(repaymentCredit, 2))
+                    .afterPayment(BigDecimal.valueOf(totalSum, 2))
+                    .credit(currentCredit)
+                    .status(StatusOfPaymentOrCredit.PENDING)
+                    .beforePayment(beforePayment)
+                    .creditAmount(BigDecimal.valueOf(creditAmountAfterPayment, 2))
+                    .build());
+
+            date = date.plusMonths(1);
+        }
+
+        AmortizationEngine.stabilizeLastPayment(payments);
+
+        return payments;
+    }
+
+
+    private List<PaymentEntity> tryCreateListOfDifferentiatedCredit(LocalDate date, BigDecimal creditAmount, BigDecimal percentRate, int creditPeriod, CreditEntity currentCredit, boolean isNeedCheck, BigDecimal helpTotalSum) {
+        long amount = toMinorUnits(creditAmount, 2);
+        int rate = toRate(percentRate);
+
+        if (amount < 0 || amount > MAX_AMOUNT || rate <= 0 || creditPeriod < 1) {
+            return null;
+        }
+
+        // общая сумма выплат (до первого платежа - в том виде, в котором её получил бы BigDecimal)
+        BigDecimal firstBeforePayment = BigDecimal.valueOf(createTotalSumForDifferentiatedCredit(amount, rate, creditPeriod), 2);
+
+        if (isNeedCheck && firstBeforePayment.compareTo(helpTotalSum) != 0) {
+            firstBeforePayment = helpTotalSum;
+        }
+
+        // дальше общая сумма выплат ведётся в единицах 10^-4
+        long totalSum = toMinorUnits(firstBeforePayment, 4);
+
+        if (totalSum == FALLBACK) {
+            return null;
+        }
+
+        // каждый месяц долг уменьшается на эту величину (в копейках)
+        long decrease = divideHalfEven(amount, creditPeriod, 0);
+        BigDecimal decreaseValue = BigDecimal.valueOf(decrease, 2);
+
+        int rateErrorSign = signOfRateError(rate);
+        List<PaymentEntity> payments = new ArrayList<>(creditPeriod);
+
+        for (int i = 1; i <= creditPeriod; i++) {
+
+            // проценты в единицах 10^-4 = остаток в копейках * rate / 1200
+            long percent = divideHalfEven(amount * rate, 1200, Long.signum(amount) * rateErrorSign);
+
+            // платёж = проценты + постоянная часть
+            long payment = percent + decrease * 100;
+
+            BigDecimal beforePayment = i == 1 ? firstBeforePayment : BigDecimal.valueOf(totalSum, 4);
+            amount -= decrease;
+            totalSum -= payment;
+
+            PaymentEntity paymentEntity = new PaymentEntity();
+            paymentEntity.setPaymentAmount(BigDecimal.valueOf(payment, 4));
+            paymentEntity.setCredit(currentCredit);
+            paymentEntity.setPaymentDate(date);
+            paymentEntity.setBeforePayment(beforePayment);
+            paymentEntity.setPercent(BigDecimal.valueOf(percent, 4));
+            paymentEntity.setRepaymentCredit(decreaseValue);
+            paymentEntity.setCreditAmount(BigDecimal.valueOf(amount, 2));
+            paymentEntity.setAfterPayment(BigDecimal.valueOf(totalSum, 4));
+            paymentEntity.setStatus(StatusOfPaymentOrCredit.PENDING);
+            paymentEntity.setPaymentNumber(i);
+
+            payments.add(paymentEntity);
+
+            date = date.plusMonths(1);
+        }
+
+        AmortizationEngine.stabilizeLastPayment(payments);
+
+        return payments;
+    }
+
+
+    /**
+     * Общая сумма выплат по дифференцированному кредиту (в копейках)
+     * = сумма кредита + r/(100*12) * сумма кредита * (n+1) / 2, где r/(100*12) округлена до 11 знаков
+     */
+    private static long createTotalSumForDifferentiatedCredit(long amount, int rate, int creditPeriod) {
+        long monthlyRate = divideHalfEven(rate * 10_000_000L, 12, 0);
+
+        // monthlyRate * amount - в единицах 10^-13 рубля, в копейки переводим делением на 10^11 (и ещё на 2)
+        long product = monthlyRate * amount;
+        long denominator = 200_000_000_000L;
+
+        long extended = product % denominator * (creditPeriod + 1);
+        long quotient = amount + product / denominator * (creditPeriod + 1) + extended / denominator;
+
+        return roundHalfEven(quotient, extended % denominator, denominator, 0);
+    }
+
+
+    /**
+     * Налоговый вычет за первые 12 месяцев по аннуитету (в копейках)
+     */
+    private static long calculateTaxDeductionOfAnnuityCredit(long amount, int rate, long payment) {
+        if (payment < 0 || payment > MAX_AMOUNT) {
+            return FALLBACK;
+        }
+
+        Balance balance = new Balance(amount, rate);
+
+        // сумма процентов за год
+        long sumHi = 0;
+        long sumLo = 0;
+        double sumError = 0;
+        int sumErrorSign = 0;
+
+        for (int i = 1; i <= 12; i++) {
+            if (!balance.accrue()) {
+                return FALLBACK;
+            }
+
+            sumLo += balance.percentLo;
+            sumHi += balance.percentHi + sumLo / LIMB;
+            sumLo %= LIMB;
+            sumError += balance.percentError;
+            sumErrorSign = combine(sumErrorSign, balance.percentErrorSign);
+
+            balance.pay(payment);
+        }
+
+        // 13% от суммы в копейках = 13 * сумма в рублях
+        long taxHi = sumHi * 13 + sumLo * 13 / LIMB;
+        long taxLo = sumLo * 13 % LIMB;
+
+        return round(taxHi, taxLo, RUBLE, sumError * 13, sumErrorSign, RoundingMode.HALF_EVEN);
+    }
+
+
+    /**
+     * Налоговый вычет за первые 12 месяцев по дифференцированному кредиту (в копейках)
+     */
+    private static long calculateTaxDeductionOfDifferentiatedCredit(long amount, int rate, int creditPeriod) {
+        // долг уменьшается на постоянную часть, округлённую до 4 знаков (в единицах 10^-4)
+        long decrease = divideHalfEven(amount * 100, creditPeriod, 0);
+
+        // сумма остатков за 12 месяцев = 12 * сумма кредита - (0 + 1 + ... + 11) * decrease
+        long sumOfCreditAmount = 12 * amount * 100 - 66 * decrease;
+
+        // 13% от процентов в копейках = сумма остатков (10^-4) * rate / 120_000 * 0.13 * 100
+        return divideHalfEven(sumOfCreditAmount * rate * 13, 1_200_000_000L, Long.signum(sumOfCreditAmount) * signOfRateError(rate));
+    }
+
+
+    /**
+     * Округление платежа до копеек (HALF_EVEN), FALLBACK - если значение слишком близко к середине
+     *
+     * @param kopecks платёж в копейках
+     */
+    private static long roundPayment(double kopecks) {
+        double floor = Math.floor(kopecks);
+        double fromHalf = kopecks - floor - 0.5;
+
+        if (Math.abs(fromHalf) <= kopecks * RELATIVE_ERROR) {
+            return FALLBACK;
+        }
+
+        return (long) floor + (fromHalf > 0 ? 1 : 0);
+    }
+
+
+    /**
+     * Перевод суммы в целое число единиц 10^-scale, FALLBACK - если у суммы больше знаков после запятой
+     */
+    private static long toMinorUnits(BigDecimal value, int scale) {
+        if (value == null || value.scale() > scale) {
+            return FALLBACK;
+        }
+
+        BigInteger minorUnits = value.setScale(scale).unscaledValue();
+
+        return minorUnits.bitLength() < 63 ? minorUnits.longValue() : FALLBACK;
+    }
+
+
+    /**
+     * Годовая ставка в сотых долях процента, -1 - если ставку нельзя так представить
+     */
+    private static int toRate(BigDecimal percentRate) {
+        long rate = toMinorUnits(percentRate, 2);
+
+        return rate > 0 && rate <= MAX_RATE ? (int) rate : -1;
+    }
+
+
+    /**
+     * Знак ошибки, с которой BigDecimal-движок хранит месячную ставку (rate / 120_000 до 38 знаков, HALF_EVEN):
+     * остаток rate * 10^34 по модулю 12 равен 4 * rate по модулю 12, поэтому ровно середины не бывает
+     */
+    private static int signOfRateError(int rate) {
+        int remainder = 4 * rate % 12;
+
+        return remainder == 0 ? 0 : (remainder > 6 ? 1 : -1);
+    }
+
+
+    /**
+     * Деление с округлением HALF_EVEN
+     *
+     * @param errorSign знак отклонения BigDecimal-значения от numerator / denominator (решает при ровно середине)
+     */
+    private static long divideHalfEven(long numerator, long denominator, int errorSign) {
+        return roundHalfEven(Math.floorDiv(numerator, denominator), Math.floorMod(numerator, denominator), denominator, errorSign);
+    }
+
+
+    private static long roundHalfEven(long quotient, long remainder, long denominator, int errorSign) {
+        long twice = 2 * remainder;
+
+        if (twice != denominator) {
+            return twice > denominator ? quotient + 1 : quotient;
+        }
+
+        return roundHalf(quotient, errorSign, RoundingMode.HALF_EVEN);
+    }
+
+
+    /**
+     * Округление числа hi * 10^-8 + lo * 10^-21 рубля до целого числа единиц unit (unit задаётся в 10^-8)
+     *
+     * @param error     оценка погрешности числа в 10^-21, при нулевой погрешности число отличается от BigDecimal
+     *                  на бесконечно малую величину со знаком errorSign
+     * @param errorSign знак отклонения BigDecimal-значения от числа
+     * @return округлённое значение или FALLBACK, если однозначно округлить нельзя
+     */
+    private static long round(long hi, long lo, long unit, double error, int errorSign, RoundingMode roundingMode) {
+        long quotient = Math.floorDiv(hi, unit);
+        long fromHalf = Math.floorMod(hi, unit) - unit / 2;
+
+        if (fromHalf > 0) {
+            return quotient + 1;
+        }
+
+        if (fromHalf < -1) {
+            return quotient;
+        }
+
+        // число рядом с серединой, считаем расстояние до неё точно (в 10^-21)
+        long distance = fromHalf == 0 ? lo : lo - LIMB;
+
+        if (error > 0) {
+            if (Math.abs(distance) <= error) {
+                return FALLBACK;
+            }
+
+            return distance > 0 ? quotient + 1 : quotient;
+        }
+
+        if (distance != 0) {
+            return distance > 0 ? quotient + 1 : quotient;
+        }
+
+        return roundHalf(quotient, errorSign, roundingMode);
+    }
+
+
+    /**
+     * Округление числа quotient + 0.5 с учётом знака отклонения BigDecimal-значения от него
+     */
+    private static long roundHalf(long quotient, int errorSign, RoundingMode roundingMode) {
+        if (errorSign == UNKNOWN) {
+            return FALLBACK;
+        }
+
+        if (errorSign != 0) {
+            return errorSign > 0 ? quotient + 1 : quotient;
+        }
+
+        if (roundingMode == RoundingMode.HALF_UP) {
+            return quotient >= 0 ? quotient + 1 : quotient;
+        }
+
+        return (quotient & 1) != 0 ? quotient + 1 : quotient;
+    }
+
+
+    private static int combine(int first, int second) {
+        if (first == 0) {
+            return second;
+        }
+
+        return second == 0 || second == first ? first : UNKNOWN;
+    }
+
+
+    private static int negate(int errorSign) {
+        return errorSign == UNKNOWN ? UNKNOWN : -errorSign;
+    }
+
+
+    private static int signum(long hi, long lo) {
+        return hi != 0 ? Long.signum(hi) : Long.signum(lo);
+    }
+
+
+    /**
+     * Остаток долга по аннуитету: hi * 10^-8 + lo * 10^-21 рубля (0 <= lo < LIMB)
+     * вместе с оценкой его отклонения от остатка, который получил бы BigDecimal-движок
+     */
+    private static final class Balance {
+        final int rate;
+        final double monthlyRate;
+        final int rateErrorSign;
+
+        long hi;
+        long lo;
+        double error;
+        int errorSign;
+
+        // проценты за текущий месяц
+        long percentHi;
+        long percentLo;
+        double percentError;
+        int percentErrorSign;
+
+        Balance(long kopecks, int rate) {
+            this.rate = rate;
+            this.monthlyRate = rate / (double) RATE_DENOMINATOR;
+            this.rateErrorSign = signOfRateError(rate);
+            this.hi = kopecks * KOPECK;
+        }
+
+        /**
+         * Начисление процентов за месяц: остаток * rate / 120_000 (остаток от деления отбрасывается)
+         *
+         * @return false, если остаток вышел за допустимые границы
+         */
+        boolean accrue() {
+            if (Math.abs(hi) > MAX_HI) {
+                return false;
+            }
+
+            long product = hi * rate;
+            long lowProduct = Math.floorMod(product, RATE_DENOMINATOR) * LIMB + lo * rate;
+            boolean truncated = lowProduct % RATE_DENOMINATOR != 0;
+
+            percentLo = lowProduct / RATE_DENOMINATOR;
+            percentHi = Math.floorDiv(product, RATE_DENOMINATOR) + percentLo / LIMB;
+            percentLo %= LIMB;
+
+            if (error == 0 && !truncated) {
+                // проценты посчитаны точно, BigDecimal отличается только из-за округления ставки
+                percentError = 0;
+                percentErrorSign = combine(errorSign, errorSign == UNKNOWN ? UNKNOWN : signum(hi, lo) * rateErrorSign);
+            } else {
+                percentError = error * monthlyRate + 2;
+                percentErrorSign = UNKNOWN;
+            }
+
+            return true;
+        }
+
+        /**
+         * Остаток долга после платежа = остаток + проценты - платёж
+         *
+         * @param payment платёж в копейках
+         */
+        void pay(long payment) {
+            lo += percentLo;
+            hi += percentHi - payment * KOPECK + lo / LIMB;
+            lo %= LIMB;
+
+            error += percentError;
+            errorSign = combine(errorSign, percentErrorSign);
+        }
+    }
+}
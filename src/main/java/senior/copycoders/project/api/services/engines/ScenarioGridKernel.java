@@ -0,0 +1,109 @@
+package senior.copycoders.project.api.services.engines;
+
+import senior.copycoders.project.store.enums.CreditConstants;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.util.stream.IntStream;
+
+/**
+ * Расчёт сетки сценариев "ставка × срок × первоначальный взнос" на массивах double.
+ * Каждая ячейка считается по замкнутым формулам (без помесячного цикла), строки сетки по ставке
+ * обрабатываются параллельно. Результат - для сравнения вариантов, а не для графика платежей,
+ * поэтому точности double (до копейки) здесь достаточно
+ */
+public class ScenarioGridKernel {
+
+    // ставка НДФЛ, которая возвращается с уплаченных процентов
+    private static final double TAX_RATE = 0.13;
+
+    // максимальный налоговый вычет по процентам
+    private static final double MAX_TAX_DEDUCTION = CreditConstants.MAX_TAX_DEDUCTION.getValue();
+
+    private final AnnuityFactorTable annuityFactorTable;
+
+    public ScenarioGridKernel(AnnuityFactorTable annuityFactorTable) {
+        this.annuityFactorTable = annuityFactorTable;
+    }
+
+
+    /**
+     * Расчёт сетки. Результаты пишутся в массивы по индексу
+     * (rateIndex * periods.length + periodIndex) * initialPayments.length + initialPaymentIndex
+     *
+     * @param creditAmount    сумма кредита
+     * @param rates           годовые ставки в сотых долях процента (10.25% = 1025)
+     * @param periods         сроки кредитования в месяцах
+     * @param initialPayments первоначальные взносы
+     * @param typeOfCredit    тип кредита (либо аннуитет, либо дифференцированный)
+     * @param payments        ежемесячный платёж (для дифференцированного - первый платёж)
+     * @param totalInterest   сумма процентов за весь срок
+     * @param taxDeductions   налоговый вычет за первый год
+     */
+    public void calculate(double creditAmount, int[] rates, int[] periods, double[] initialPayments, TypeOfCredit typeOfCredit,
+                          double[] payments, double[] totalInterest, double[] taxDeductions) {
+        int rowSize = periods.length * initialPayments.length;
+
+        IntStream.range(0, rates.length).parallel().forEach(rateIndex -> {
+            int rate = rates[rateIndex];
+            double monthlyRate = rate / 120_000.0;
+            int cell = rateIndex * rowSize;
+
+            for (int creditPeriod : periods) {
+                double factor = typeOfCredit == TypeOfCredit.ANNUITY ? annuityFactorTable.factor(rate, creditPeriod) : 0;
+
+                for (double initialPayment : initialPayments) {
+                    double ostatokOfCredit = creditAmount - initialPayment;
+
+                    if (typeOfCredit == TypeOfCredit.ANNUITY) {
+                        calculateAnnuityCell(ostatokOfCredit, monthlyRate, factor, creditPeriod, cell, payments, totalInterest, taxDeductions);
+                    } else {
+                        calculateDifferentiatedCell(ostatokOfCredit, rate, monthlyRate, creditPeriod, cell, payments, totalInterest, taxDeductions);
+                    }
+
+                    cell++;
+                }
+            }
+        });
+    }
+
+
+    private static void calculateAnnuityCell(double ostatokOfCredit, double monthlyRate, double factor, int creditPeriod, int cell,
+                                             double[] payments, double[] totalInterest, double[] taxDeductions) {
+        double payment = roundToCents(ostatokOfCredit * factor);
+
+        // остаток долга после 12 платежей: L(1+r)^12 - P((1+r)^12 - 1)/r, проценты за год = 12P - (L - остаток)
+        double growth = Math.expm1(12 * Math.log1p(monthlyRate));
+        double percentOfFirstYear = 12 * payment + ostatokOfCredit * growth - payment * growth / monthlyRate;
+
+        payments[cell] = payment;
+        totalInterest[cell] = roundToCents(payment * creditPeriod - ostatokOfCredit);
+        taxDeductions[cell] = taxDeduction(percentOfFirstYear);
+    }
+
+
+    private static void calculateDifferentiatedCell(double ostatokOfCredit, int rate, double monthlyRate, int creditPeriod, int cell,
+                                                    double[] payments, double[] totalInterest, double[] taxDeductions) {
+        // так же, как в calculateFirstPaymentOfDifferentiatedCredit: месячная ставка и уменьшение долга до 4 знаков
+        double decrease = Math.rint(ostatokOfCredit / creditPeriod * 10_000) / 10_000;
+        // rate / 12 - месячная ставка в единицах четвёртого знака; деление точное, поэтому половины округляются
+        // к чётному, как HALF_EVEN (а у rate / 120_000.0 * 10_000 половина могла уйти вверх: 1326 -> 110.50000000000001)
+        double roundedMonthlyRate = Math.rint(rate / 12.0) / 10_000;
+
+        // проценты за i-й месяц: (L - (i - 1) * decrease) * r
+        double percentOfFirstYear = monthlyRate * (12 * ostatokOfCredit - 66 * decrease);
+
+        payments[cell] = roundToCents(decrease + roundedMonthlyRate * ostatokOfCredit);
+        totalInterest[cell] = roundToCents(monthlyRate * (creditPeriod * ostatokOfCredit - decrease * creditPeriod * (creditPeriod - 1) / 2.0));
+        taxDeductions[cell] = taxDeduction(percentOfFirstYear);
+    }
+
+
+    private static double taxDeduction(double percent) {
+        return Math.min(roundToCents(percent * TAX_RATE), MAX_TAX_DEDUCTION);
+    }
+
+
+    private static double roundToCents(double value) {
+        return Math.rint(value * 100) / 100;
+    }
+}
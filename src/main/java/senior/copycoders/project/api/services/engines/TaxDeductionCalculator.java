@@ -0,0 +1,66 @@
+package senior.copycoders.project.api.services.engines;
+
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+/**
+ * Уплаченные проценты по годам кредита через частичные суммы рядов (без помесячного цикла).
+ * Год кредита - 12 платежей подряд, начиная с первого
+ */
+public class TaxDeductionCalculator {
+
+
+    /**
+     * Проценты, уплаченные за каждый год кредита
+     *
+     * @param creditAmount сумма кредита за вычетом первоначального взноса
+     * @param rate         годовая ставка в сотых долях процента (10.25% = 1025)
+     * @param creditPeriod срок кредитования в месяцах
+     * @param typeOfCredit тип кредита (либо аннуитет, либо дифференцированный)
+     * @param payment      ежемесячный платёж (для аннуитета)
+     * @param decrease     ежемесячное погашение основного долга (для дифференцированного)
+     * @return массив длины ceil(creditPeriod / 12), в i-м элементе проценты за (i + 1)-й год
+     */
+    public double[] calculatePercentByYear(double creditAmount, int rate, int creditPeriod, TypeOfCredit typeOfCredit, double payment, double decrease) {
+        double monthlyRate = rate / 120_000.0;
+        double[] percentByYear = new double[(creditPeriod + 11) / 12];
+
+        for (int year = 0; year < percentByYear.length; year++) {
+            int from = 12 * year;
+            int to = Math.min(from + 12, creditPeriod);
+
+            percentByYear[year] = typeOfCredit == TypeOfCredit.ANNUITY
+                    ? annuityPercent(creditAmount, monthlyRate, payment, from, to)
+                    : differentiatedPercent(creditAmount, monthlyRate, decrease, from, to);
+        }
+
+        return percentByYear;
+    }
+
+
+    /**
+     * Проценты по аннуитету за платежи from + 1 .. to: (to - from) * P - (B(from) - B(to)),
+     * где B(k) = L(1+r)^k - P((1+r)^k - 1)/r - остаток долга после k платежей
+     */
+    private static double annuityPercent(double creditAmount, double monthlyRate, double payment, int from, int to) {
+        return (to - from) * payment - (balance(creditAmount, monthlyRate, payment, from) - balance(creditAmount, monthlyRate, payment, to));
+    }
+
+
+    private static double balance(double creditAmount, double monthlyRate, double payment, int k) {
+        // (1+r)^k - 1 через expm1, чтобы не терять точность при маленькой ставке
+        double growth = Math.expm1(k * Math.log1p(monthlyRate));
+
+        return creditAmount + creditAmount * growth - payment * growth / monthlyRate;
+    }
+
+
+    /**
+     * Проценты по дифференцированному кредиту за платежи from + 1 .. to:
+     * сумма r(L - (i - 1)d) = r((to - from)L - d * (сумма i - 1 по i = from + 1 .. to))
+     */
+    private static double differentiatedPercent(double creditAmount, double monthlyRate, double decrease, int from, int to) {
+        double sumOfIndexes = (double) to * (to - 1) / 2 - (double) from * (from - 1) / 2;
+
+        return monthlyRate * ((to - from) * creditAmount - decrease * sumOfIndexes);
+    }
+}
@@ -0,0 +1,31 @@
+package senior.copycoders.project.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Событие JFR: расчёт графика платежей по кредиту.
+ * Как и остальные события приложения, записывается только во время записи JFR и отключается в её настройках
+ * (senior.copycoders.CreditCalculation#enabled=false)
+ */
+@Name("senior.copycoders.CreditCalculation")
+@Label("Credit Calculation")
+@Description("Расчёт графика платежей по кредиту")
+@Category({"Copycoders", "Credit"})
+@StackTrace(false)
+public class CreditCalculationEvent extends Event {
+
+    @Label("Credit Id")
+    @Description("id кредита, 0 - кредит ещё не сохранён")
+    public long creditId;
+
+    @Label("Type Of Credit")
+    public String typeOfCredit;
+
+    @Label("Credit Period")
+    @Description("срок кредитования в месяцах")
+    public int creditPeriod;
+
+    @Label("Rows")
+    @Description("количество рассчитанных платежей")
+    public int rows;
+}
@@ -0,0 +1,42 @@
+package senior.copycoders.project.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Событие JFR: проведение платежа по кредиту и перерасчёт графика
+ */
+@Name("senior.copycoders.PaymentPosting")
+@Label("Payment Posting")
+@Description("Проведение платежа по кредиту и перерасчёт графика")
+@Category({"Copycoders", "Credit"})
+@StackTrace(false)
+public class PaymentPostingEvent extends Event {
+
+    @Label("Credit Id")
+    public long creditId;
+
+    @Label("Type Of Credit")
+    public String typeOfCredit;
+
+    @Label("Credit Period")
+    @Description("срок кредитования в месяцах")
+    public int creditPeriod;
+
+    @Label("Kind")
+    @Description("exact-date, between-dates или early-payoff")
+    public String kind;
+
+    @Label("Rows Inserted")
+    public int rowsInserted;
+
+    @Label("Rows Recalculated")
+    @Description("платежи графика, которые изменились")
+    public int rowsRecalculated;
+
+    @Label("Rows Deleted")
+    public int rowsDeleted;
+
+    @Label("Snapshot Written")
+    @Description("перезаписан ли снимок графика в БД")
+    public boolean snapshotWritten;
+}
@@ -0,0 +1,32 @@
+package senior.copycoders.project.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Событие JFR: выгрузка графика платежей в PDF
+ */
+@Name("senior.copycoders.PdfGeneration")
+@Label("PDF Generation")
+@Description("Выгрузка графика платежей в PDF")
+@Category({"Copycoders", "Credit"})
+@StackTrace(false)
+public class PdfGenerationEvent extends Event {
+
+    @Label("Credit Id")
+    public long creditId;
+
+    @Label("Type Of Credit")
+    public String typeOfCredit;
+
+    @Label("Credit Period")
+    @Description("срок кредитования в месяцах")
+    public int creditPeriod;
+
+    @Label("Rows")
+    @Description("количество платежей в таблице")
+    public int rows;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,54 @@
+package senior.copycoders.project.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import senior.copycoders.project.api.services.engines.CachingAmortizationEngine;
+
+/**
+ * Метрики приложения (отдаются через /actuator/prometheus, доступ - с токеном администратора):
+ * время HTTP-запросов - встроенная метрика http.server.requests, время методов сервисов - через @Timed,
+ * статистика Hibernate - hibernate.*, кэши движка расчёта - cache.*, SQL-запросы на HTTP-запрос - hibernate.statements.per.request
+ */
+@Configuration
+public class MetricsConfiguration implements WebMvcConfigurer {
+
+    private final StatementsPerRequestInterceptor statementsPerRequestInterceptor;
+
+
+    public MetricsConfiguration(MeterRegistry meterRegistry) {
+        this.statementsPerRequestInterceptor = new StatementsPerRequestInterceptor(meterRegistry);
+    }
+
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+
+    @Bean
+    public MeterBinder amortizationEngineCacheMetrics(CachingAmortizationEngine cachingAmortizationEngine) {
+        return meterRegistry -> cachingAmortizationEngine.getCaches()
+                .forEach((name, cache) -> CaffeineCacheMetrics.monitor(meterRegistry, cache, name));
+    }
+
+
+    @Bean
+    public HibernatePropertiesCustomizer statementsPerRequestCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, statementsPerRequestInterceptor);
+    }
+
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(statementsPerRequestInterceptor);
+    }
+}
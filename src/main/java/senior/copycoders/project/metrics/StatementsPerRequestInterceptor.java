@@ -0,0 +1,79 @@
+package senior.copycoders.project.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Количество SQL-запросов на один HTTP-запрос (hibernate.statements.per.request с тегами method и uri).
+ * Hibernate сообщает о каждом запросе через StatementInspector, счётчик свой у каждого потока обработки запроса
+ */
+public class StatementsPerRequestInterceptor implements AsyncHandlerInterceptor, StatementInspector {
+
+    private static final ThreadLocal<long[]> STATEMENTS = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+
+    public StatementsPerRequestInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    @Override
+    public String inspect(String sql) {
+        long[] statements = STATEMENTS.get();
+
+        // запросы вне HTTP-запроса (при старте приложения) не учитываются
+        if (statements != null) {
+            statements[0]++;
+        }
+
+        return sql;
+    }
+
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // запрос уже учтён в afterConcurrentHandlingStarted, повторная (асинхронная) обработка не считается
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
+        STATEMENTS.set(new long[1]);
+        return true;
+    }
+
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        long[] statements = STATEMENTS.get();
+        STATEMENTS.remove();
+
+        if (statements == null) {
+            return;
+        }
+
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+        DistributionSummary.builder("hibernate.statements.per.request")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements[0]);
+    }
+
+
+    // ответ потоком дописывается в другом потоке, считаем только основную часть запроса
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        afterCompletion(request, response, handler, null);
+    }
+}
@@ -0,0 +1,61 @@
+package senior.copycoders.project.store;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Кредиты, созданные до привязки к владельцу, остались без person_id: все запросы к кредитам идут от имени
+ * владельца, поэтому такие кредиты никому не видны. При старте (после обновления схемы) они передаются
+ * пользователю credit.orphans.owner (по имени), а если он не задан или не найден - только пересчитываются в логе
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class CreditOwnerBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreditOwnerBackfill.class);
+
+    JdbcTemplate jdbcTemplate;
+
+    @NonFinal
+    @Value("${credit.orphans.owner}")
+    String owner;
+
+
+    @PostConstruct
+    public void assignOrphanedCredits() {
+        Long orphans = jdbcTemplate.queryForObject("select count(*) from credit where person_id is null", Long.class);
+
+        if (orphans == null || orphans == 0) {
+            return;
+        }
+
+        if (owner.isBlank()) {
+            logger.warn("{} credits have no owner and are not visible to anyone, set credit.orphans.owner to assign them to a user", orphans);
+            return;
+        }
+
+        List<Long> ownerIds = jdbcTemplate.queryForList("select id from users where username = ?", Long.class, owner);
+
+        if (ownerIds.isEmpty()) {
+            logger.warn("{} credits have no owner, user {} from credit.orphans.owner not found", orphans, owner);
+            return;
+        }
+
+        int assigned = jdbcTemplate.update("update credit set person_id = ? where person_id is null", ownerIds.get(0));
+
+        logger.info("{} credits without owner assigned to user {}", assigned, owner);
+    }
+}
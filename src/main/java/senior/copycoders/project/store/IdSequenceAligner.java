@@ -0,0 +1,55 @@
+package senior.copycoders.project.store;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Раньше id кредитов, платежей и событий выдавал столбец IDENTITY. Последовательности, которые пришли ему на смену,
+ * создаёт ddl-auto, и в уже заполненной БД они начинаются с 1. Поэтому при старте (после обновления схемы)
+ * каждая последовательность, отстающая от своей таблицы, сдвигается за максимальный id
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class IdSequenceAligner {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdSequenceAligner.class);
+
+    // последовательность -> таблица
+    private static final Map<String, String> TABLES_BY_SEQUENCE = Map.of(
+            "credit_seq", "credit",
+            "payment_seq", "payment",
+            "credit_event_seq", "credit_event");
+
+    JdbcTemplate jdbcTemplate;
+
+
+    @PostConstruct
+    public void alignSequences() {
+        TABLES_BY_SEQUENCE.forEach((sequence, table) -> {
+            // Hibernate берёт у последовательности верхнюю границу пачки, значит следующая пачка
+            // начнётся с max(id) + 1, только если значение последовательности не меньше max(id) + шаг
+            List<Long> values = jdbcTemplate.queryForList(
+                    "select setval((quote_ident(s.schemaname) || '.' || quote_ident(s.sequencename))::regclass, max(t.id) + s.increment_by) from " + table + " t, pg_sequences s " +
+                            "where s.sequencename = ? and s.schemaname = current_schema() " +
+                            "group by s.schemaname, s.sequencename, s.increment_by, s.last_value " +
+                            "having max(t.id) > coalesce(s.last_value, 0)",
+                    Long.class, sequence);
+
+            if (!values.isEmpty()) {
+                logger.info("Sequence {} moved past max id of {} to {}", sequence, table, values.get(0));
+            }
+        });
+    }
+}
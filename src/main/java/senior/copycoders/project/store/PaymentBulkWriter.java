@@ -0,0 +1,263 @@
+package senior.copycoders.project.store;
+
+import jakarta.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.util.ByteConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Сохранение графиков платежей новых кредитов.
+ * <p>
+ * На PostgreSQL платежи пишутся одним потоком COPY payment FROM STDIN (FORMAT binary), минуя сущности Hibernate:
+ * кредиты (и события журнала) сначала сбрасываются в БД без платежей, затем платежи копируются, а кредиты
+ * отсоединяются от контекста, чтобы Hibernate не пытался сохранить их график ещё раз.
+ * На других БД (или при credit.payments.copy-enabled=false) график сохраняется как раньше - каскадом от кредита.
+ * При компактном хранении (credit.payments.compact-storage=true) весь график нового кредита - проекция в самом кредите
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class PaymentBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentBulkWriter.class);
+
+    private static final String COPY_SQL = "COPY payment (id, credit_id, payment_number, payment_date, payment_amount, percent, " +
+            "repayment_credit, credit_after_payment, status, credit_before_payment, credit_amount) FROM STDIN (FORMAT binary)";
+
+    // типы столбцов, под которые написан двоичный формат строк (так их создаёт Hibernate)
+    private static final Map<String, String> COLUMN_TYPES = Map.of(
+            "id", "int8",
+            "credit_id", "int8",
+            "payment_number", "int4",
+            "payment_date", "date",
+            "payment_amount", "numeric",
+            "percent", "numeric",
+            "repayment_credit", "numeric",
+            "credit_after_payment", "numeric",
+            "status", "int2",
+            "credit_before_payment", "numeric");
+
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private static final LocalDate POSTGRES_EPOCH = LocalDate.of(2000, 1, 1);
+
+    EntityManager entityManager;
+
+    @NonFinal
+    @Value("${credit.payments.copy-enabled}")
+    boolean isCopyEnabled;
+
+    @NonFinal
+    @Value("${credit.payments.compact-storage}")
+    boolean isCompactStorage;
+
+    // шаг payment_seq, если COPY можно использовать на этой БД, и 0, если нельзя (определяется при первом вызове)
+    @NonFinal
+    volatile Integer idIncrement;
+
+
+    /**
+     * Сохраняет графики новых кредитов и кладёт каждый график в paymentList его кредита.
+     * Вызывается последним при создании кредитов: кредиты уже переданы в save, события журнала добавлены,
+     * а после вызова кредиты отсоединены от контекста
+     *
+     * @param schedules новые кредиты и их графики (платежи ещё не прикреплены к кредитам)
+     */
+    public void insertSchedules(Map<CreditEntity, List<PaymentEntity>> schedules) {
+        Session session = entityManager.unwrap(Session.class);
+
+        // платежи, которые хранятся строками (при компактном хранении у нового кредита таких нет)
+        Map<CreditEntity, List<PaymentEntity>> rows = new LinkedHashMap<>();
+        schedules.forEach((credit, payments) -> rows.put(credit, ProjectedPayments.split(credit, payments, isCompactStorage)));
+
+        boolean isCopy = isCopyEnabled && rows.values().stream().anyMatch(payments -> !payments.isEmpty()) && getIdIncrement(session) != 0;
+
+        if (!isCopy) {
+            // платежи сохранятся каскадом от кредитов
+            rows.forEach(CreditEntity::setPaymentList);
+        }
+
+        // кредиты и события (и платежи, если не через COPY)
+        session.flush();
+
+        if (isCopy) {
+            session.doWork(connection -> copyPayments(connection, rows));
+        }
+
+        // в БД всё сохранено, дальше кредиты нужны только для ответа - с графиком целиком
+        schedules.forEach((credit, payments) -> {
+            session.detach(credit);
+            credit.setPaymentList(payments);
+        });
+    }
+
+
+    private int getIdIncrement(Session session) {
+        if (idIncrement == null) {
+            idIncrement = session.doReturningWork(this::findIdIncrement);
+        }
+
+        return idIncrement;
+    }
+
+
+    private int findIdIncrement(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class)) {
+            logger.info("Not a PostgreSQL connection, payments are saved through JPA");
+            return 0;
+        }
+
+        Map<String, String> columnTypes = new HashMap<>();
+
+        try (PreparedStatement statement = connection.prepareStatement("select column_name, udt_name from information_schema.columns where table_schema = current_schema() and table_name = 'payment'");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                columnTypes.put(resultSet.getString(1), resultSet.getString(2));
+            }
+        }
+
+        if (!columnTypes.entrySet().containsAll(COLUMN_TYPES.entrySet()) || !"numeric".equals(columnTypes.get("credit_amount"))) {
+            logger.warn("Unexpected column types of payment {}, payments are saved through JPA", columnTypes);
+            return 0;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("select increment_by from pg_sequences where schemaname = current_schema() and sequencename = 'payment_seq'");
+             ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                logger.warn("Sequence payment_seq not found, payments are saved through JPA");
+                return 0;
+            }
+
+            return resultSet.getInt(1);
+        }
+    }
+
+
+    private void copyPayments(Connection connection, Map<CreditEntity, List<PaymentEntity>> schedules) throws SQLException {
+        int count = schedules.values().stream().mapToInt(List::size).sum();
+        Iterator<Long> ids = reserveIds(connection, count).iterator();
+
+        try (DataOutputStream out = new DataOutputStream(new PGCopyOutputStream(connection.unwrap(PGConnection.class), COPY_SQL, 1 << 16))) {
+            out.write(HEADER);
+            // флаги и длина расширения заголовка
+            out.writeInt(0);
+            out.writeInt(0);
+
+            for (Map.Entry<CreditEntity, List<PaymentEntity>> schedule : schedules.entrySet()) {
+                CreditEntity credit = schedule.getKey();
+
+                for (PaymentEntity payment : schedule.getValue()) {
+                    payment.setId(ids.next());
+                    payment.setCredit(credit);
+                    writePayment(out, credit.getId(), payment);
+                }
+            }
+
+            out.writeShort(-1);
+        } catch (IOException e) {
+            // ошибки COPY приходят обёрнутыми в IOException
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Резервирует id так же, как это делает Hibernate (оптимизатор pooled): каждое значение payment_seq -
+     * верхняя граница пачки из increment_by id
+     */
+    private List<Long> reserveIds(Connection connection, int count) throws SQLException {
+        List<Long> ids = new ArrayList<>(count);
+
+        while (ids.size() < count) {
+            int blocks = (count - ids.size() + idIncrement - 1) / idIncrement;
+
+            try (PreparedStatement statement = connection.prepareStatement("select nextval('payment_seq') from generate_series(1, ?)")) {
+                statement.setInt(1, blocks);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        long hi = resultSet.getLong(1);
+
+                        // у новой последовательности первое значение - 1, id меньше 1 не выдаём
+                        for (long id = Math.max(hi - idIncrement + 1, 1); id <= hi && ids.size() < count; id++) {
+                            ids.add(id);
+                        }
+                    }
+                }
+            }
+        }
+
+        return ids;
+    }
+
+
+    private static void writePayment(DataOutputStream out, long creditId, PaymentEntity payment) throws IOException {
+        out.writeShort(11);
+
+        writeLong(out, payment.getId());
+        writeLong(out, creditId);
+
+        out.writeInt(4);
+        out.writeInt(payment.getPaymentNumber());
+
+        out.writeInt(4);
+        out.writeInt((int) ChronoUnit.DAYS.between(POSTGRES_EPOCH, payment.getPaymentDate()));
+
+        writeNumeric(out, payment.getPaymentAmount());
+        writeNumeric(out, payment.getPercent());
+        writeNumeric(out, payment.getRepaymentCredit());
+        writeNumeric(out, payment.getAfterPayment());
+
+        out.writeInt(2);
+        out.writeShort(payment.getStatus().ordinal());
+
+        writeNumeric(out, payment.getBeforePayment());
+        writeNumeric(out, payment.getCreditAmount());
+    }
+
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+
+    // округление до масштаба столбца делает сам PostgreSQL, как и при обычном INSERT
+    private static void writeNumeric(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = ByteConverter.numeric(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
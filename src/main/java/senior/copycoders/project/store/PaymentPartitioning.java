@@ -0,0 +1,118 @@
+package senior.copycoders.project.store;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Секционирование таблицы payment по хешу credit_id (credit.payments.partitions секций, 0 - обычная таблица).
+ * <p>
+ * Все запросы к платежам идут в рамках одного кредита, поэтому каждый из них попадает в одну секцию:
+ * её индексы в разы меньше индекса всей таблицы, а очистка (VACUUM) идёт по секциям независимо.
+ * Таблицу создаёт ddl-auto как обычную, поэтому при старте (после обновления схемы) она один раз
+ * переводится на секции: создаётся секционированная таблица с тем же набором столбцов, в неё переносятся
+ * платежи, а старая таблица удаляется. Первичный ключ секционированной таблицы обязан включать ключ
+ * секционирования, поэтому он (credit_id, id), а credit_id становится not null. Платежи без кредита
+ * при переносе пропускаются. Другие индексы payment (ddl-auto их не создаёт) не переносятся.
+ * <p>
+ * Чтобы запросы действительно попадали в одну секцию, в условии каждого из них должен быть credit_id
+ * (см. PaymentRepository). UPDATE и DELETE отдельных платежей Hibernate выполняет по одному id - для них
+ * у секций есть индекс по id, и такой запрос проверяет по одной записи индекса каждой секции
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class PaymentPartitioning {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentPartitioning.class);
+
+    JdbcTemplate jdbcTemplate;
+
+    TransactionTemplate transactionTemplate;
+
+    @NonFinal
+    @Value("${credit.payments.partitions}")
+    int partitions;
+
+
+    @PostConstruct
+    public void partitionPayments() {
+        if (partitions <= 0) {
+            return;
+        }
+
+        List<String> kinds = jdbcTemplate.queryForList("select relkind::text from pg_class where oid = to_regclass('payment')", String.class);
+
+        if (kinds.isEmpty()) {
+            logger.warn("Table payment not found, it is not partitioned");
+            return;
+        }
+
+        // 'p' - уже секционирована
+        if ("p".equals(kinds.get(0))) {
+            Integer existing = jdbcTemplate.queryForObject("select count(*) from pg_inherits where inhparent = 'payment'::regclass", Integer.class);
+
+            if (existing != partitions) {
+                logger.warn("Table payment has {} partitions instead of {}, repartitioning is not supported", existing, partitions);
+            }
+
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> migrate());
+    }
+
+
+    private void migrate() {
+        long startTime = System.currentTimeMillis();
+
+        jdbcTemplate.execute("lock table payment in access exclusive mode");
+
+        String primaryKey = jdbcTemplate.queryForObject("select conname from pg_constraint where conrelid = 'payment'::regclass and contype = 'p'", String.class);
+        // внешние ключи удалятся вместе со старой таблицей, их создаём заново с теми же именами
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList("select conname, pg_get_constraintdef(oid) as definition from pg_constraint where conrelid = 'payment'::regclass and contype = 'f'");
+
+        jdbcTemplate.execute("alter table payment rename to payment_unpartitioned");
+        // имя индекса первичного ключа нужно новой таблице
+        jdbcTemplate.execute("alter table payment_unpartitioned rename constraint " + primaryKey + " to payment_unpartitioned_pkey");
+
+        jdbcTemplate.execute("create table payment (like payment_unpartitioned including defaults) partition by hash (credit_id)");
+        jdbcTemplate.execute("alter table payment alter column credit_id set not null");
+        jdbcTemplate.execute("alter table payment add constraint " + primaryKey + " primary key (credit_id, id)");
+
+        for (int i = 0; i < partitions; i++) {
+            jdbcTemplate.execute("create table payment_p" + i + " partition of payment for values with (modulus " + partitions + ", remainder " + i + ")");
+        }
+
+        // порядок столбцов у обеих таблиц один (like)
+        int moved = jdbcTemplate.update("insert into payment select * from payment_unpartitioned where credit_id is not null");
+        Integer skipped = jdbcTemplate.queryForObject("select count(*) from payment_unpartitioned where credit_id is null", Integer.class);
+
+        jdbcTemplate.execute("drop table payment_unpartitioned");
+
+        // первичный ключ начинается с credit_id и запросам по одному id не помогает
+        jdbcTemplate.execute("create index payment_id_idx on payment (id)");
+
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute("alter table payment add constraint " + foreignKey.get("conname") + " " + foreignKey.get("definition"));
+        }
+
+        jdbcTemplate.execute("analyze payment");
+
+        logger.info("Table payment partitioned by hash of credit_id into {} partitions in {} ms: {} payments moved, {} without credit skipped",
+                partitions, System.currentTimeMillis() - startTime, moved, skipped);
+    }
+}
@@ -0,0 +1,241 @@
+package senior.copycoders.project.store;
+
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Компактное хранение графика: проведённые (PAID) платежи остаются строками в payment, а ещё не проведённые -
+ * это проекция, которую целиком перезаписывает каждый платёж, поэтому она хранится одним значением
+ * в credit.projected_payments.
+ * <p>
+ * Формат: версия, количество платежей, затем по каждому платежу разности с предыдущим платежом (номер, дата в днях,
+ * суммы в минимальных единицах столбца - копейках, у процентов 10^-11) в виде varint. Соседние платежи графика
+ * почти не отличаются, поэтому платёж занимает около 20 байт вместо строки таблицы с индексом.
+ * Проекция не перезаписывается, пока платежи только проводятся по графику: при чтении из неё пропускаются платежи,
+ * которые уже есть в строках. Сжатие больших значений PostgreSQL делает сам (TOAST)
+ */
+public final class ProjectedPayments {
+
+    private static final byte VERSION = 1;
+
+    // столбцы в порядке записи и их масштаб в БД
+    private static final List<Column> COLUMNS = List.of(
+            new Column(PaymentEntity::getPaymentAmount, PaymentEntity::setPaymentAmount, PaymentEntity.MONEY_SCALE),
+            new Column(PaymentEntity::getPercent, PaymentEntity::setPercent, PaymentEntity.PERCENT_SCALE),
+            new Column(PaymentEntity::getRepaymentCredit, PaymentEntity::setRepaymentCredit, PaymentEntity.MONEY_SCALE),
+            new Column(PaymentEntity::getAfterPayment, PaymentEntity::setAfterPayment, PaymentEntity.MONEY_SCALE),
+            new Column(PaymentEntity::getBeforePayment, PaymentEntity::setBeforePayment, PaymentEntity.MONEY_SCALE),
+            new Column(PaymentEntity::getCreditAmount, PaymentEntity::setCreditAmount, PaymentEntity.MONEY_SCALE));
+
+
+    private ProjectedPayments() {
+    }
+
+
+    /**
+     * Раскладывает график кредита по месту хранения: проекцию записывает в credit.projectedPayments,
+     * а платежи, которые нужно хранить строками, возвращает
+     *
+     * @param credit    кредит
+     * @param payments  актуальный график
+     * @param isCompact включено ли компактное хранение (иначе все платежи хранятся строками)
+     * @return платежи, которые хранятся строками
+     */
+    public static List<PaymentEntity> split(CreditEntity credit, List<PaymentEntity> payments, boolean isCompact) {
+        byte[] stored = credit.getProjectedPayments();
+        credit.setProjectedPayments(null);
+
+        if (!isCompact) {
+            return payments;
+        }
+
+        List<PaymentEntity> paid = new ArrayList<>();
+        List<PaymentEntity> projected = new ArrayList<>();
+
+        for (PaymentEntity payment : payments) {
+            (payment.getStatus() == StatusOfPaymentOrCredit.PAID ? paid : projected).add(payment);
+        }
+
+        int lastPaidNumber = getLastPaymentNumber(paid);
+
+        // проекция читается как платежи после последнего строкой, так что проведённые платежи должны идти первыми
+        if (projected.isEmpty() || projected.stream().anyMatch(payment -> payment.getPaymentNumber() <= lastPaidNumber)) {
+            return projected.isEmpty() ? paid : payments;
+        }
+
+        byte[] encoded = encode(projected);
+
+        // суммы, которые не помещаются в long, остаются строками
+        if (encoded == null) {
+            return payments;
+        }
+
+        // обычный платёж только проводит первые платежи проекции: сохранённое значение по-прежнему верно,
+        // и его не нужно перезаписывать (неизменившийся столбец не попадает в UPDATE, см. CreditEntity)
+        if (stored != null && Arrays.equals(encoded, encode(decode(credit.getId(), stored, lastPaidNumber)))) {
+            encoded = stored;
+        }
+
+        credit.setProjectedPayments(encoded);
+
+        return paid;
+    }
+
+
+    /**
+     * Платежи проекции (не связанные с БД, без id) в порядке номеров. Платежи проекции, которые уже хранятся
+     * строками (проведены после записи проекции), пропускаются
+     *
+     * @param credit кредит
+     * @return пустой список, если проекции нет
+     */
+    public static List<PaymentEntity> decode(CreditEntity credit) {
+        if (credit.getProjectedPayments() == null) {
+            return new ArrayList<>();
+        }
+
+        List<PaymentEntity> payments = decode(credit.getId(), credit.getProjectedPayments(), getLastPaymentNumber(credit.getPaymentList()));
+        payments.forEach(payment -> payment.setCredit(credit));
+
+        return payments;
+    }
+
+
+    private static List<PaymentEntity> decode(Long creditId, byte[] encoded, int lastStoredNumber) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+
+        if (buffer.get() != VERSION) {
+            throw new IllegalStateException("Unknown format of projected payments of credit " + creditId);
+        }
+
+        int size = (int) readVarLong(buffer);
+        List<PaymentEntity> payments = new ArrayList<>(size);
+
+        int paymentNumber = 0;
+        long epochDay = 0;
+        long[] unscaled = new long[COLUMNS.size()];
+
+        for (int i = 0; i < size; i++) {
+            paymentNumber += (int) readSignedVarLong(buffer);
+            epochDay += readSignedVarLong(buffer);
+
+            PaymentEntity payment = PaymentEntity.builder()
+                    .paymentNumber(paymentNumber)
+                    .paymentDate(LocalDate.ofEpochDay(epochDay))
+                    .status(StatusOfPaymentOrCredit.values()[buffer.get()])
+                    .build();
+
+            for (int c = 0; c < COLUMNS.size(); c++) {
+                unscaled[c] += readSignedVarLong(buffer);
+                COLUMNS.get(c).setter().accept(payment, BigDecimal.valueOf(unscaled[c], COLUMNS.get(c).scale()));
+            }
+
+            if (paymentNumber > lastStoredNumber) {
+                payments.add(payment);
+            }
+        }
+
+        return payments;
+    }
+
+
+    private static int getLastPaymentNumber(List<PaymentEntity> payments) {
+        return payments.stream().mapToInt(PaymentEntity::getPaymentNumber).max().orElse(0);
+    }
+
+
+    /**
+     * @return null, если какую-то сумму нельзя записать (нет значения или не помещается в long)
+     */
+    private static byte[] encode(List<PaymentEntity> payments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + payments.size() * 24);
+        out.write(VERSION);
+        writeVarLong(out, payments.size());
+
+        int paymentNumber = 0;
+        long epochDay = 0;
+        long[] unscaled = new long[COLUMNS.size()];
+
+        for (PaymentEntity payment : payments) {
+            writeVarLong(out, zigZag(payment.getPaymentNumber() - paymentNumber));
+            paymentNumber = payment.getPaymentNumber();
+
+            writeVarLong(out, zigZag(payment.getPaymentDate().toEpochDay() - epochDay));
+            epochDay = payment.getPaymentDate().toEpochDay();
+
+            out.write(payment.getStatus().ordinal());
+
+            for (int c = 0; c < COLUMNS.size(); c++) {
+                BigDecimal value = COLUMNS.get(c).getter().apply(payment);
+
+                if (value == null) {
+                    return null;
+                }
+
+                try {
+                    // так же округлил бы значение numeric-столбец
+                    long current = value.setScale(COLUMNS.get(c).scale(), RoundingMode.HALF_UP).unscaledValue().longValueExact();
+
+                    writeVarLong(out, zigZag(Math.subtractExact(current, unscaled[c])));
+                    unscaled[c] = current;
+                } catch (ArithmeticException e) {
+                    return null;
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.write((int) value);
+    }
+
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+
+    private static long readSignedVarLong(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    private record Column(Function<PaymentEntity, BigDecimal> getter, BiConsumer<PaymentEntity, BigDecimal> setter, int scale) {
+    }
+}
@@ -4,6 +4,7 @@ package senior.copycoders.project.store.entities;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.DynamicUpdate;
 import senior.copycoders.project.store.enums.TypeOfCredit;
 
 import java.math.BigDecimal;
@@ -12,7 +13,18 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "credit")
+// UPDATE только изменившихся столбцов: иначе projected_payments передаётся заново при каждом платеже
+// и PostgreSQL перезаписывает его TOAST-значение, даже если оно не изменилось
+@DynamicUpdate
+// все обращения к кредитам идут от имени владельца: (person_id, id) - поиск кредита по id и список по умолчанию,
+// (person_id, столбец, id) - фильтры и сортировки списка кредитов (см. CreditRepositoryCustomImpl)
+@Table(name = "credit", indexes = {
+        @Index(name = "credit_person_id_id_idx", columnList = "person_id, id"),
+        @Index(name = "credit_person_id_credit_amount_id_idx", columnList = "person_id, credit_amount, id"),
+        @Index(name = "credit_person_id_percent_rate_id_idx", columnList = "person_id, percent_rate, id"),
+        @Index(name = "credit_person_id_credit_period_id_idx", columnList = "person_id, credit_period, id"),
+        @Index(name = "credit_person_id_type_of_credit_id_idx", columnList = "person_id, type_of_credit, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,7 +33,8 @@ import java.util.List;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class CreditEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_seq")
+    @SequenceGenerator(name = "credit_seq", sequenceName = "credit_seq", allocationSize = 50)
     Long id;
 
     @Column(name = "initial_payment")
@@ -43,12 +56,27 @@ public class CreditEntity {
     @Column(name = "type_of_credit")
     TypeOfCredit typeOfCredit;
 
-    @ManyToOne
+    // владелец кредита (задаётся при создании), сам пользователь при работе с кредитом не нужен
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "person_id")
     User person;
 
+    // номер последнего события журнала, которое уже учтено в сохранённых платежах (снимок графика)
+    @Column(name = "snapshot_event_number")
+    Integer snapshotEventNumber;
 
+    // версия графика: увеличивается с каждым событием журнала, по ней строится ETag
+    @Column(name = "schedule_version")
+    Long scheduleVersion;
+
+    // ещё не проведённые платежи снимка при компактном хранении графика (см. ProjectedPayments), иначе null
+    @Column(name = "projected_payments")
+    byte[] projectedPayments;
+
+
+    // связью владеет PaymentEntity.credit: изменения списка не превращаются в отдельные UPDATE payment по id
     @Builder.Default
-    @OneToMany(cascade = CascadeType.ALL)
-    @JoinColumn(name = "credit_id" , referencedColumnName = "id")
+    @OneToMany(mappedBy = "credit", cascade = CascadeType.ALL)
+    @OrderBy("paymentNumber")
     List<PaymentEntity> paymentList = new ArrayList<>();
 }
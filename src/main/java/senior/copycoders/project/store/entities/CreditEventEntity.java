@@ -0,0 +1,50 @@
+package senior.copycoders.project.store.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Событие по кредиту. Журнал событий только пополняется: записи не меняются и не удаляются (кроме удаления кредита)
+ */
+@Entity
+@Table(name = "credit_event", uniqueConstraints = @UniqueConstraint(columnNames = {"credit_id", "event_number"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CreditEventEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_event_seq")
+    @SequenceGenerator(name = "credit_event_seq", sequenceName = "credit_event_seq", allocationSize = 50)
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "credit_id")
+    CreditEntity credit;
+
+    // порядковый номер события в рамках кредита
+    @Column(name = "event_number")
+    Integer eventNumber;
+
+    @Column(name = "type")
+    TypeOfCreditEvent type;
+
+    // для CREATED - дата первого платежа, для PAYMENT_POSTED - дата платежа
+    @Column(name = "event_date")
+    LocalDate eventDate;
+
+    // для CREATED - сумма кредита за вычетом первоначального взноса, для PAYMENT_POSTED - сумма платежа
+    @Column(name = "amount")
+    BigDecimal amount;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+}
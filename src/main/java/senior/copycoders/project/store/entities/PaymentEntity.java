@@ -18,8 +18,14 @@ import java.time.LocalDate;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class PaymentEntity implements Comparable<PaymentEntity> {
 
+    // количество знаков после запятой у денежных столбцов и у столбца процентов
+    public static final int MONEY_SCALE = 2;
+    public static final int PERCENT_SCALE = 11;
+
+    // id выдаются последовательностью пачками по 50, иначе (как с IDENTITY) Hibernate не может вставлять платежи пакетами
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = 50)
     Long id;
 
     @Column(name = "payment_number")
@@ -32,7 +38,7 @@ public class PaymentEntity implements Comparable<PaymentEntity> {
     @Column(name = "payment_amount")
     BigDecimal paymentAmount;
 
-    @Column(name = "percent", precision = 38, scale = 11)
+    @Column(name = "percent", precision = 38, scale = PERCENT_SCALE)
     BigDecimal percent;
 
     @Column(name = "repayment_credit")
@@ -9,7 +9,8 @@ public enum CreditConstants {
     MAX_INTEREST_RATE(18),
     MIN_INTEREST_RATE(0),
     MAX_CREDIT_PERIOD(360),
-    MIN_CREDIT_PERIOD(12);
+    MIN_CREDIT_PERIOD(12),
+    MAX_TAX_DEDUCTION(650_000);
 
     private final int value;
 
@@ -0,0 +1,5 @@
+package senior.copycoders.project.store.enums;
+
+public enum TypeOfCreditEvent {
+    CREATED, PAYMENT_POSTED, CREDIT_CLOSED
+}
@@ -0,0 +1,20 @@
+package senior.copycoders.project.store.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import senior.copycoders.project.store.entities.CreditEventEntity;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CreditEventRepository extends JpaRepository<CreditEventEntity, Long> {
+    List<CreditEventEntity> findAllByCreditIdOrderByEventNumber(Long creditId);
+
+    List<CreditEventEntity> findAllByCreditIdAndEventNumberGreaterThanOrderByEventNumber(Long creditId, Integer eventNumber);
+
+    Optional<CreditEventEntity> findFirstByCreditIdOrderByEventNumberDesc(Long creditId);
+
+    Optional<CreditEventEntity> findFirstByCreditIdAndTypeOrderByEventNumber(Long creditId, TypeOfCreditEvent type);
+
+    void deleteAllByCreditId(Long creditId);
+}
@@ -0,0 +1,83 @@
+package senior.copycoders.project.store.repositories;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Условия выборки страницы списка кредитов. Границы диапазонов включительные, null - без ограничения.
+ * Страницы выбираются по ключу (keyset): следующая страница начинается после кредита (afterValue, afterId)
+ * в порядке сортировки, поэтому её стоимость не зависит от номера страницы
+ */
+@Value
+@Builder(toBuilder = true)
+public class CreditFilter {
+
+    // владелец кредитов (обязательно)
+    Long personId;
+
+    TypeOfCredit typeOfCredit;
+
+    BigDecimal minCreditAmount;
+    BigDecimal maxCreditAmount;
+
+    BigDecimal minPercentRate;
+    BigDecimal maxPercentRate;
+
+    Integer minCreditPeriod;
+    Integer maxCreditPeriod;
+
+    @Builder.Default
+    SortField sort = SortField.ID;
+
+    boolean isDescending;
+
+    // значение столбца сортировки и id последнего кредита предыдущей страницы (null - первая страница)
+    Comparable<?> afterValue;
+    Long afterId;
+
+    int limit;
+
+
+    /**
+     * Столбцы, по которым можно сортировать список. При равных значениях порядок определяет id,
+     * для каждого столбца есть индекс (person_id, столбец, id) - см. CreditEntity
+     */
+    @Getter
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    public enum SortField {
+        ID("id", "id", CreditSummary::id, Long::valueOf),
+        CREDIT_AMOUNT("credit_amount", "creditAmount", CreditSummary::creditAmount, BigDecimal::new),
+        PERCENT_RATE("percent_rate", "percentRate", CreditSummary::percentRate, BigDecimal::new),
+        CREDIT_PERIOD("credit_period", "creditPeriod", CreditSummary::creditPeriod, Integer::valueOf),
+        TYPE_OF_CREDIT("type_of_credit", "typeOfCredit", CreditSummary::typeOfCredit, TypeOfCredit::valueOf);
+
+        // имя в API
+        String apiName;
+
+        // атрибут CreditEntity
+        String attribute;
+
+        Function<CreditSummary, Comparable<?>> getter;
+
+        // разбор значения из toString (для курсора)
+        Function<String, Comparable<?>> parser;
+
+
+        public static Optional<SortField> byApiName(String name) {
+            return Arrays.stream(values())
+                    .filter(field -> field.apiName.equals(name))
+                    .findFirst();
+        }
+    }
+}
@@ -1,7 +1,24 @@
 package senior.copycoders.project.store.repositories;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import senior.copycoders.project.store.entities.CreditEntity;
 
-public interface CreditRepository extends JpaRepository<CreditEntity, Long> {
+import java.util.Optional;
+
+public interface CreditRepository extends JpaRepository<CreditEntity, Long>, CreditRepositoryCustom {
+
+    // кредит владельца: кредиты других пользователей не видны
+    Optional<CreditEntity> findByIdAndPersonId(Long id, Long personId);
+
+    // то же с блокировкой строки кредита до конца транзакции (select ... for update)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<CreditEntity> findForUpdateByIdAndPersonId(Long id, Long personId);
+
+    // только версия графика, без загрузки кредита и платежей (у кредитов, созданных до появления версии, она 0)
+    @Query("select coalesce(c.scheduleVersion, 0L) from CreditEntity c where c.id = :id and c.person.id = :personId")
+    Optional<Long> findScheduleVersionByIdAndPersonId(@Param("id") Long id, @Param("personId") Long personId);
 }
@@ -0,0 +1,14 @@
+package senior.copycoders.project.store.repositories;
+
+import java.util.List;
+
+public interface CreditRepositoryCustom {
+
+    /**
+     * Страница списка кредитов
+     *
+     * @param filter условия, порядок и начало страницы
+     * @return не больше filter.limit кредитов в порядке сортировки
+     */
+    List<CreditSummary> findPage(CreditFilter filter);
+}
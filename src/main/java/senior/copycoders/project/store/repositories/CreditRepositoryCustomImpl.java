@@ -0,0 +1,98 @@
+package senior.copycoders.project.store.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.*;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import senior.copycoders.project.store.entities.CreditEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class CreditRepositoryCustomImpl implements CreditRepositoryCustom {
+
+    EntityManager entityManager;
+
+
+    @Override
+    public List<CreditSummary> findPage(CreditFilter filter) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CreditSummary> query = builder.createQuery(CreditSummary.class);
+        Root<CreditEntity> credit = query.from(CreditEntity.class);
+
+        // только столбцы кредита: платежи не загружаются
+        query.select(builder.construct(CreditSummary.class,
+                credit.get("id"),
+                credit.get("initialPayment"),
+                credit.get("creditAmount"),
+                credit.get("percentRate"),
+                credit.get("creditPeriod"),
+                credit.get("payment"),
+                credit.get("typeOfCredit")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.equal(credit.get("person").get("id"), filter.getPersonId()));
+
+        if (filter.getTypeOfCredit() != null) {
+            predicates.add(builder.equal(credit.get("typeOfCredit"), filter.getTypeOfCredit()));
+        }
+
+        addRange(builder, predicates, credit.get("creditAmount"), filter.getMinCreditAmount(), filter.getMaxCreditAmount());
+        addRange(builder, predicates, credit.get("percentRate"), filter.getMinPercentRate(), filter.getMaxPercentRate());
+        addRange(builder, predicates, credit.get("creditPeriod"), filter.getMinCreditPeriod(), filter.getMaxCreditPeriod());
+
+        Path<Long> id = credit.get("id");
+        Path<Comparable<Object>> sortValue = credit.get(filter.getSort().getAttribute());
+        boolean isById = filter.getSort() == CreditFilter.SortField.ID;
+
+        if (filter.getAfterId() != null) {
+            Predicate afterId = filter.isDescending() ? builder.lessThan(id, filter.getAfterId()) : builder.greaterThan(id, filter.getAfterId());
+
+            if (isById) {
+                predicates.add(afterId);
+            } else {
+                // (значение, id) после (afterValue, afterId). Отдельное условие "значение >= afterValue" -
+                // граница, с которой PostgreSQL начинает чтение индекса (столбец, id), иначе он читает индекс с начала
+                @SuppressWarnings("unchecked")
+                Comparable<Object> afterValue = (Comparable<Object>) filter.getAfterValue();
+
+                if (filter.isDescending()) {
+                    predicates.add(builder.lessThanOrEqualTo(sortValue, afterValue));
+                    predicates.add(builder.or(builder.lessThan(sortValue, afterValue), afterId));
+                } else {
+                    predicates.add(builder.greaterThanOrEqualTo(sortValue, afterValue));
+                    predicates.add(builder.or(builder.greaterThan(sortValue, afterValue), afterId));
+                }
+            }
+        }
+
+        query.where(predicates.toArray(Predicate[]::new));
+
+        List<Order> orders = new ArrayList<>();
+
+        if (!isById) {
+            orders.add(filter.isDescending() ? builder.desc(sortValue) : builder.asc(sortValue));
+        }
+
+        orders.add(filter.isDescending() ? builder.desc(id) : builder.asc(id));
+        query.orderBy(orders);
+
+        return entityManager.createQuery(query)
+                .setMaxResults(filter.getLimit())
+                .getResultList();
+    }
+
+
+    private static <T extends Comparable<? super T>> void addRange(CriteriaBuilder builder, List<Predicate> predicates, Path<T> path, T min, T max) {
+        if (min != null) {
+            predicates.add(builder.greaterThanOrEqualTo(path, min));
+        }
+
+        if (max != null) {
+            predicates.add(builder.lessThanOrEqualTo(path, max));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package senior.copycoders.project.store.repositories;
+
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+
+/**
+ * Столбцы кредита для списка кредитов: выбираются запросом напрямую, без загрузки сущности (и её платежей)
+ */
+public record CreditSummary(Long id,
+                            BigDecimal initialPayment,
+                            BigDecimal creditAmount,
+                            BigDecimal percentRate,
+                            Integer creditPeriod,
+                            BigDecimal payment,
+                            TypeOfCredit typeOfCredit) {
+}
@@ -1,7 +1,22 @@
 package senior.copycoders.project.store.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import senior.copycoders.project.store.entities.PaymentEntity;
 
+import java.util.Collection;
+
+// платежи удаляются только запросами с credit_id: по нему PostgreSQL находит секцию payment (см. PaymentPartitioning),
+// а удаление по одному id проверяло бы все секции
 public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
+
+    @Modifying
+    @Query("delete from PaymentEntity p where p.credit.id = :creditId")
+    int deleteByCreditId(@Param("creditId") Long creditId);
+
+    @Modifying
+    @Query("delete from PaymentEntity p where p.credit.id = :creditId and p.id in :ids")
+    int deleteByCreditIdAndIdIn(@Param("creditId") Long creditId, @Param("ids") Collection<Long> ids);
 }
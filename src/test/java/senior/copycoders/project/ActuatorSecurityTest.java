@@ -0,0 +1,28 @@
+package senior.copycoders.project;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Без токена открыта только проверка живости, метрики не отдаются и обычному пользователю
+ */
+class ActuatorSecurityTest extends PostgresIntegrationTest {
+
+    @Test
+    void onlyHealthIsOpen() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, signUp()))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, signUp()))
+                .andExpect(status().isForbidden());
+    }
+}
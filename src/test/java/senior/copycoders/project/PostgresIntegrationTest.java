@@ -0,0 +1,129 @@
+package senior.copycoders.project;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import senior.copycoders.project.api.dto.JwtAuthenticationResponse;
+import senior.copycoders.project.api.services.CreditService;
+import senior.copycoders.project.store.entities.User;
+import senior.copycoders.project.store.repositories.UserRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Основа тестов с БД: контекст приложения поверх встроенного PostgreSQL, один сервер и один контекст на все тесты.
+ * Запросы через MockMvc проходят те же фильтры, что и настоящие (в том числе JwtAuthenticationFilter)
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public abstract class PostgresIntegrationTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    protected CreditService creditService;
+
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+
+    /**
+     * Новый пользователь, от имени которого дальше выполняется текущий поток (так же, как после JwtAuthenticationFilter)
+     */
+    protected User signInAsNewUser() {
+        String name = UUID.randomUUID().toString();
+        User user = userRepository.save(User.builder().username(name).password("password").email(name + "@example.com").build());
+        signIn(user);
+
+        return user;
+    }
+
+
+    /**
+     * Регистрация нового пользователя через /auth/sign-up
+     *
+     * @return значение заголовка Authorization для его запросов
+     */
+    protected String signUp() throws Exception {
+        String name = UUID.randomUUID().toString().substring(0, 20);
+        String response = mockMvc.perform(post("/auth/sign-up")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", name, "email", name + "@example.com", "password", "password"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return "Bearer " + objectMapper.readValue(response, JwtAuthenticationResponse.class).getToken();
+    }
+
+
+    protected static void signIn(User user) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+
+    /**
+     * Кредит текущего пользователя: 1 500 000,55 под 12,35% с первоначальным взносом 100 000
+     *
+     * @return id кредита
+     */
+    protected Long createCredit(String dateOfFirstPayment, int creditPeriod, boolean isDifferentiated) {
+        return creditService.calculateSchedule(dateOfFirstPayment, BigDecimal.valueOf(100_000), new BigDecimal("1500000.55"), new BigDecimal("12.35"), creditPeriod, isDifferentiated)
+                .getCredit().getId();
+    }
+
+
+    /**
+     * Значение поля бина (в обход прокси), например настройки из application.properties
+     */
+    protected static Object getField(Object bean, String name) {
+        return ReflectionTestUtils.getField((Object) AopTestUtils.getUltimateTargetObject(bean), name);
+    }
+
+
+    /**
+     * Меняет поле бина (в обход прокси): тест сам возвращает прежнее значение, контекст общий для всех тестов
+     */
+    protected static void setField(Object bean, String name, Object value) {
+        ReflectionTestUtils.setField((Object) AopTestUtils.getUltimateTargetObject(bean), name, value);
+    }
+
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
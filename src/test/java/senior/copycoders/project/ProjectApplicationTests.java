@@ -1,10 +1,8 @@
 package senior.copycoders.project;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
-class ProjectApplicationTests {
+class ProjectApplicationTests extends PostgresIntegrationTest {
 
 	@Test
 	void contextLoads() {
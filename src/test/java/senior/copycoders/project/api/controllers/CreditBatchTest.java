@@ -0,0 +1,138 @@
+package senior.copycoders.project.api.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import senior.copycoders.project.PostgresIntegrationTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Пакетное создание кредитов с токеном: ответ дописывается в асинхронном dispatch, который тоже проходит
+ * фильтры безопасности. Графики, посчитанные параллельно, совпадают с графиками кредитов, созданных по одному
+ */
+class CreditBatchTest extends PostgresIntegrationTest {
+
+    @Test
+    void batchIsStreamedAndMatchesSingleCredits() throws Exception {
+        String token = signUp();
+
+        List<Map<String, Object>> creditRequests = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            creditRequests.add(creditRequest("2024-0" + (1 + i % 9) + "-15", i % 3 * 50_000.0, 300_000.0 + i * 125_000.5, 1 + i % 17 + 0.25, 12 + i * 13, i % 2 == 1));
+        }
+
+        // ошибка в одной заявке не отменяет остальные
+        creditRequests.set(5, creditRequest("2024-01-15", 0.0, 100.0, 10.0, 12, false));
+
+        MvcResult started = mockMvc.perform(post("/api/credit/batch")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(creditRequests)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode items = objectMapper.readTree(body);
+        assertEquals(creditRequests.size(), items.size());
+
+        for (int i = 0; i < creditRequests.size(); i++) {
+            JsonNode item = items.get(i);
+            assertEquals(i, item.get("index").asInt());
+
+            if (i == 5) {
+                assertTrue(item.path("schedule").isMissingNode() || item.path("schedule").isNull());
+                assertEquals("400", item.get("error").get("error").asText());
+                continue;
+            }
+
+            String single = mockMvc.perform(post("/api/credit")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(creditRequests.get(i))))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            assertEquals(objectMapper.readTree(single).get("payments"), item.get("schedule").get("payments"), "request " + i);
+        }
+    }
+
+
+    @Test
+    void tooLargeBatchIsRejected() throws Exception {
+        String token = signUp();
+
+        // на одну заявку больше, чем CreditService.MAX_BATCH_SIZE
+        List<Map<String, Object>> creditRequests = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            creditRequests.add(creditRequest("2024-01-15", 0.0, 500_000.0, 10.0, 24, false));
+        }
+
+        mockMvc.perform(post("/api/credit/batch")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(creditRequests)))
+                .andExpect(status().isBadRequest());
+
+        // ни один кредит из пакета не создан
+        String credits = mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(0, objectMapper.readTree(credits).size());
+    }
+
+
+    @Test
+    void scheduleIsStreamedWithToken() throws Exception {
+        String token = signUp();
+
+        String created = mockMvc.perform(post("/api/credit")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(creditRequest("2024-01-15", 0.0, 500_000.0, 10.0, 24, false))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long creditId = objectMapper.readTree(created).get("credit").get("id").asLong();
+
+        MvcResult started = mockMvc.perform(get("/api/credit/{credit_id}/schedule", creditId)
+                        .param("stream", "true")
+                        .header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String streamed = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String plain = mockMvc.perform(get("/api/credit/{credit_id}/schedule", creditId)
+                        .header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(objectMapper.readTree(plain), objectMapper.readTree(streamed));
+    }
+
+
+    private static Map<String, Object> creditRequest(String dateOfFirstPayment, double initialPayment, double creditAmount, double percentRate, int creditPeriod, boolean typeOfCredit) {
+        return Map.of(
+                "date_of_first_payment", dateOfFirstPayment,
+                "initial_payment", initialPayment,
+                "credit_amount", creditAmount,
+                "percent_rate", percentRate,
+                "credit_period", creditPeriod,
+                "type_of_credit", typeOfCredit);
+    }
+}
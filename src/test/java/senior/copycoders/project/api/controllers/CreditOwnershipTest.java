@@ -0,0 +1,62 @@
+package senior.copycoders.project.api.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Чужой кредит для пользователя не существует: любое обращение к нему по id - 404, и ничего в нём не меняется
+ */
+class CreditOwnershipTest extends PostgresIntegrationTest {
+
+    @Test
+    void otherUsersCreditIsNotFound() throws Exception {
+        String owner = signUp();
+        String stranger = signUp();
+
+        String created = mockMvc.perform(post("/api/credit")
+                        .header(HttpHeaders.AUTHORIZATION, owner)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "date_of_first_payment", "2024-01-15",
+                                "initial_payment", 0,
+                                "credit_amount", 500_000,
+                                "percent_rate", 10,
+                                "credit_period", 24,
+                                "type_of_credit", false))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long creditId = objectMapper.readTree(created).get("credit").get("id").asLong();
+
+        List<MockHttpServletRequestBuilder> requests = List.of(
+                get("/api/credit/{credit_id}/schedule", creditId),
+                get("/api/credit/{credit_id}/schedule", creditId).accept(ScheduleColumnsDto.MEDIA_TYPE),
+                get("/api/credit/{credit_id}/schedule", creditId).param("stream", "true"),
+                get("/api/credit/{credit_id}/events", creditId),
+                get("/api/credit/{credit_id}/tax-deduction", creditId),
+                get("/api/download-pdf/{credit_id}", creditId),
+                patch("/api/credit/{credit_id}/make-payment", creditId).param("date", "2024-01-15").param("payment", "30000"),
+                patch("/api/credit/{credit_id}/make-payment", creditId).param("date", "2024-01-15").param("payment", "30000").param("delta", "true"),
+                delete("/api/credit/{credit_id}", creditId));
+
+        for (MockHttpServletRequestBuilder request : requests) {
+            mockMvc.perform(request.header(HttpHeaders.AUTHORIZATION, stranger))
+                    .andExpect(status().isNotFound());
+        }
+
+        // у владельца кредит на месте и без платежей
+        mockMvc.perform(get("/api/credit/{credit_id}/events", creditId).header(HttpHeaders.AUTHORIZATION, owner))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertEquals(1, objectMapper.readTree(result.getResponse().getContentAsString()).size()));
+    }
+}
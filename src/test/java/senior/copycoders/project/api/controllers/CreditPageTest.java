@@ -0,0 +1,177 @@
+package senior.copycoders.project.api.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Список кредитов по курсору: страницы по каждой сортировке в обе стороны вместе дают все кредиты пользователя
+ * ровно по разу и в порядке (значение, id), в том числе при одинаковых значениях на границе страниц и с фильтрами
+ */
+class CreditPageTest extends PostgresIntegrationTest {
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // значения столбцов сортировки в том порядке, в котором их сравнивает БД
+    private static final Map<String, Function<JsonNode, Comparable<?>>> SORT_VALUES = Map.of(
+            "id", credit -> credit.get("id").asLong(),
+            "credit_amount", credit -> credit.get("credit_amount").decimalValue(),
+            "percent_rate", credit -> credit.get("percent_rate").decimalValue(),
+            "credit_period", credit -> credit.get("credit_period").asInt(),
+            "type_of_credit", credit -> TypeOfCredit.valueOf(credit.get("type_of_credit").asText()));
+
+
+    @Test
+    void pagesCoverAllCreditsInOrder() throws Exception {
+        String token = signUp();
+        List<JsonNode> credits = createCredits(token);
+
+        // кредиты другого пользователя в список не попадают
+        createCredits(signUp());
+
+        for (String sort : SORT_VALUES.keySet()) {
+            for (String direction : new String[]{"asc", "desc"}) {
+                for (int limit : new int[]{1, 4, 23, 100}) {
+                    List<Long> expected = sorted(credits, sort, direction, credit -> true);
+
+                    assertEquals(expected, readAllPages(token, sort, direction, limit, Map.of()), sort + " " + direction + " " + limit);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    void pagesRespectFilters() throws Exception {
+        String token = signUp();
+        List<JsonNode> credits = createCredits(token);
+
+        Predicate<JsonNode> filter = credit -> credit.get("type_of_credit").asText().equals("ANNUITY")
+                && credit.get("credit_amount").asDouble() >= 400_000
+                && credit.get("credit_period").asInt() <= 14;
+
+        List<Long> expected = sorted(credits, "percent_rate", "desc", filter);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, readAllPages(token, "percent_rate", "desc", 2,
+                Map.of("type_of_credit", "ANNUITY", "min_credit_amount", "400000", "max_credit_period", "14")));
+    }
+
+
+    @Test
+    void invalidCursorIsRejected() throws Exception {
+        String token = signUp();
+        createCredits(token);
+
+        String cursor = mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token).param("limit", "2").param("sort", "credit_amount"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(NEXT_CURSOR_HEADER);
+
+        assertNotNull(cursor);
+
+        // курсор другой сортировки, испорченный курсор и неверный размер страницы
+        mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token).param("sort", "percent_rate").param("cursor", cursor))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token).param("sort", "credit_amount").param("cursor", cursor.substring(1)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token).param("cursor", "!!!"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/credit").header(HttpHeaders.AUTHORIZATION, token).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    private List<Long> readAllPages(String token, String sort, String direction, int limit, Map<String, String> filters) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            MockHttpServletRequestBuilder request = get("/api/credit")
+                    .header(HttpHeaders.AUTHORIZATION, token)
+                    .param("sort", sort)
+                    .param("direction", direction)
+                    .param("limit", String.valueOf(limit));
+
+            filters.forEach(request::param);
+
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+
+            MockHttpServletResponse response = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse();
+
+            JsonNode page = objectMapper.readTree(response.getContentAsString());
+            assertTrue(page.size() <= limit);
+            page.forEach(credit -> ids.add(credit.get("id").asLong()));
+
+            cursor = response.getHeader(NEXT_CURSOR_HEADER);
+
+            // у полной страницы без следующей страницы кредитов больше нет
+            assertTrue(cursor == null || page.size() == limit);
+        } while (cursor != null && ids.size() < 1000);
+
+        return ids;
+    }
+
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Long> sorted(List<JsonNode> credits, String sort, String direction, Predicate<JsonNode> filter) {
+        Comparator<JsonNode> comparator = Comparator.comparing(credit -> (Comparable) SORT_VALUES.get(sort).apply(credit));
+        comparator = comparator.thenComparing(credit -> credit.get("id").asLong());
+
+        if (direction.equals("desc")) {
+            comparator = comparator.reversed();
+        }
+
+        return credits.stream()
+                .filter(filter)
+                .sorted(comparator)
+                .map(credit -> credit.get("id").asLong())
+                .toList();
+    }
+
+
+    /**
+     * Кредиты с повторяющимися значениями каждого столбца сортировки
+     */
+    private List<JsonNode> createCredits(String token) throws Exception {
+        List<JsonNode> credits = new ArrayList<>();
+
+        for (int i = 0; i < 23; i++) {
+            Map<String, Object> creditRequest = Map.of(
+                    "date_of_first_payment", "2024-01-15",
+                    "initial_payment", 0,
+                    "credit_amount", 300_000 + i % 5 * 125_000,
+                    "percent_rate", 5 + i % 4 * 2.25,
+                    "credit_period", 12 + i % 3,
+                    "type_of_credit", i % 7 < 3);
+
+            String created = mockMvc.perform(post("/api/credit")
+                            .header(HttpHeaders.AUTHORIZATION, token)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(creditRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            credits.add(objectMapper.readTree(created).get("credit"));
+        }
+
+        return credits;
+    }
+}
@@ -0,0 +1,123 @@
+package senior.copycoders.project.api.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import senior.copycoders.project.PostgresIntegrationTest;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Изменения графика в ответе на платёж: график до платежа, к которому применены удалённые, новые
+ * и изменившиеся платежи, совпадает с графиком, прочитанным после платежа, а версия - с версией в его ETag
+ */
+class PaymentDeltaTest extends PostgresIntegrationTest {
+
+    @Test
+    void deltaAppliedToPreviousScheduleGivesCurrentSchedule() throws Exception {
+        String token = signUp();
+        Random random = new Random(20240915L);
+
+        for (boolean typeOfCredit : new boolean[]{false, true}) {
+            long creditId = createCredit(token, typeOfCredit);
+            TreeMap<Integer, JsonNode> client = getSchedule(token, creditId);
+            int posted = 0;
+
+            for (int step = 0; step < 40; step++) {
+                JsonNode next = client.values().stream()
+                        .filter(payment -> payment.get("status").asText().equals("PENDING"))
+                        .findFirst()
+                        .orElse(null);
+
+                if (next == null) {
+                    break;
+                }
+
+                // платёж по графику, частичный, досрочный с превышением или между датами
+                double amount = next.get("payment_amount").asDouble();
+                LocalDate date = LocalDate.parse(next.get("payment_date").asText());
+                int kind = random.nextInt(4);
+                double payment = Math.round((kind == 0 ? amount * 3 : kind == 1 ? amount / 2 : amount) * 100) / 100.0;
+
+                MockHttpServletResponse response = mockMvc.perform(patch("/api/credit/{credit_id}/make-payment", creditId)
+                                .header(HttpHeaders.AUTHORIZATION, token)
+                                .param("date", (kind == 3 ? date.minusDays(5) : date).toString())
+                                .param("payment", String.valueOf(payment))
+                                .param("delta", "true"))
+                        .andReturn().getResponse();
+
+                // отклонённый платёж график не меняет
+                if (response.getStatus() == 400) {
+                    assertEquals(client, getSchedule(token, creditId));
+                    continue;
+                }
+
+                assertEquals(200, response.getStatus(), response.getContentAsString());
+                posted++;
+
+                JsonNode delta = objectMapper.readTree(response.getContentAsString());
+                delta.get("deleted_payment_numbers").forEach(paymentNumber -> client.remove(paymentNumber.asInt()));
+                delta.get("inserted").forEach(inserted -> client.put(inserted.get("payment_number").asInt(), inserted));
+                delta.get("updated").forEach(updated -> client.put(updated.get("payment_number").asInt(), updated));
+
+                MockHttpServletResponse schedule = mockMvc.perform(get("/api/credit/{credit_id}/schedule", creditId)
+                                .header(HttpHeaders.AUTHORIZATION, token))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse();
+
+                assertEquals(toMap(objectMapper.readTree(schedule.getContentAsString())), client, "step " + step);
+                assertEquals(String.format("\"%d-%d-json\"", creditId, delta.get("version").asLong()), schedule.getHeader(HttpHeaders.ETAG));
+            }
+
+            assertTrue(posted > 5, "posted " + posted);
+        }
+    }
+
+
+    private long createCredit(String token, boolean typeOfCredit) throws Exception {
+        Map<String, Object> creditRequest = Map.of(
+                "date_of_first_payment", "2024-01-15",
+                "initial_payment", 100_000,
+                "credit_amount", 1_500_000.55,
+                "percent_rate", 12.35,
+                "credit_period", 36,
+                "type_of_credit", typeOfCredit);
+
+        String created = mockMvc.perform(post("/api/credit")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(creditRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readTree(created).get("credit").get("id").asLong();
+    }
+
+
+    private TreeMap<Integer, JsonNode> getSchedule(String token, long creditId) throws Exception {
+        String schedule = mockMvc.perform(get("/api/credit/{credit_id}/schedule", creditId)
+                        .header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return toMap(objectMapper.readTree(schedule));
+    }
+
+
+    private static TreeMap<Integer, JsonNode> toMap(JsonNode schedule) {
+        TreeMap<Integer, JsonNode> payments = new TreeMap<>();
+        schedule.get("payments").forEach(payment -> payments.put(payment.get("payment_number").asInt(), payment));
+
+        return payments;
+    }
+}
@@ -0,0 +1,163 @@
+package senior.copycoders.project.api.controllers;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.CreditDto;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * График по столбцам в JSON и в CBOR: те же платежи, что и в обычном JSON по строкам, суммы - в копейках
+ * с округлением HALF_UP (как при сохранении в БД). Проверяются и создание кредита, и чтение графика по id
+ */
+class ScheduleColumnsTest extends PostgresIntegrationTest {
+
+    private static final ObjectMapper CBOR_MAPPER = CBORMapper.builder().findAndAddModules().build();
+
+    private static final Map<String, Object> CREDIT_REQUEST = Map.of(
+            "date_of_first_payment", "2024-01-31",
+            "initial_payment", 100_000,
+            "credit_amount", 1_500_000.55,
+            "percent_rate", 12.35,
+            "credit_period", 60,
+            "type_of_credit", true);
+
+
+    @Test
+    void createdScheduleIsTheSameInEveryFormat() throws Exception {
+        String token = signUp();
+
+        ScheduleColumnsDto expected = toColumns(readRows(perform(post("/api/credit")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(CREDIT_REQUEST)), token).getContentAsString()));
+
+        ScheduleColumnsDto columnar = objectMapper.readValue(perform(post("/api/credit")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(ScheduleColumnsDto.MEDIA_TYPE)
+                .content(objectMapper.writeValueAsString(CREDIT_REQUEST)), token).getContentAsString(), ScheduleColumnsDto.class);
+
+        ScheduleColumnsDto cbor = CBOR_MAPPER.readValue(perform(post("/api/credit")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(objectMapper.writeValueAsString(CREDIT_REQUEST)), token).getContentAsByteArray(), ScheduleColumnsDto.class);
+
+        // кредиты разные, у каждого свой id
+        for (ScheduleColumnsDto actual : new ScheduleColumnsDto[]{columnar, cbor}) {
+            expected.getCredit().setId(actual.getCredit().getId());
+
+            assertEquals(expected, actual);
+        }
+    }
+
+
+    @Test
+    void storedScheduleIsTheSameInEveryFormat() throws Exception {
+        String token = signUp();
+
+        JsonNode created = readRows(perform(post("/api/credit")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(CREDIT_REQUEST)), token).getContentAsString());
+        long creditId = created.get("credit").get("id").asLong();
+
+        // проведённые платежи и пересчитанный после досрочного платежа график
+        perform(patch("/api/credit/{credit_id}/make-payment", creditId).param("date", "2024-01-31").param("payment", "123456.78"), token);
+
+        ScheduleColumnsDto expected = toColumns(readRows(perform(get("/api/credit/{credit_id}/schedule", creditId)
+                .accept(MediaType.APPLICATION_JSON), token).getContentAsString()));
+
+        ScheduleColumnsDto columnar = objectMapper.readValue(perform(get("/api/credit/{credit_id}/schedule", creditId)
+                .accept(ScheduleColumnsDto.MEDIA_TYPE), token).getContentAsString(), ScheduleColumnsDto.class);
+
+        ScheduleColumnsDto cbor = CBOR_MAPPER.readValue(perform(get("/api/credit/{credit_id}/schedule", creditId)
+                .accept(MediaType.APPLICATION_CBOR), token).getContentAsByteArray(), ScheduleColumnsDto.class);
+
+        assertNotNull(expected.getEffectiveRate());
+        assertEquals("PAID", expected.getStatus()[0]);
+        assertEquals(expected, columnar);
+        assertEquals(expected, cbor);
+    }
+
+
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder request, String token) throws Exception {
+        return mockMvc.perform(request.header(HttpHeaders.AUTHORIZATION, token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+    }
+
+
+    // суммы как в тексте ответа: без промежуточного double и с тем же числом знаков
+    private JsonNode readRows(String json) throws Exception {
+        return objectMapper.reader()
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .with(JsonNodeFactory.withExactBigDecimals(true))
+                .readTree(json);
+    }
+
+
+    /**
+     * График по строкам, переложенный в столбцы
+     */
+    private ScheduleColumnsDto toColumns(JsonNode schedule) throws Exception {
+        JsonNode payments = schedule.get("payments");
+        int size = payments.size();
+
+        ScheduleColumnsDto columns = ScheduleColumnsDto.builder()
+                .credit(objectMapper.treeToValue(schedule.get("credit"), CreditDto.class))
+                .effectiveRate(schedule.hasNonNull("effective_rate") ? schedule.get("effective_rate").decimalValue() : null)
+                .paymentNumber(new int[size])
+                .paymentDate(new String[size])
+                .paymentAmount(new long[size])
+                .percent(new long[size])
+                .repaymentCredit(new long[size])
+                .afterPayment(new long[size])
+                .beforePayment(new long[size])
+                .status(new String[size])
+                .build();
+
+        int rounded = 0;
+
+        for (int i = 0; i < size; i++) {
+            JsonNode payment = payments.get(i);
+
+            columns.getPaymentNumber()[i] = payment.get("payment_number").asInt();
+            columns.getPaymentDate()[i] = payment.get("payment_date").asText();
+            columns.getPaymentAmount()[i] = toMinorUnits(payment.get("payment_amount").decimalValue());
+            columns.getPercent()[i] = toMinorUnits(payment.get("percent").decimalValue());
+            columns.getRepaymentCredit()[i] = toMinorUnits(payment.get("repayment_credit").decimalValue());
+            columns.getAfterPayment()[i] = toMinorUnits(payment.get("after_payment").decimalValue());
+            columns.getBeforePayment()[i] = toMinorUnits(payment.get("before_payment").decimalValue());
+            columns.getStatus()[i] = payment.get("status").asText();
+
+            BigDecimal percent = payment.get("percent").decimalValue();
+            if (percent.setScale(2, RoundingMode.HALF_UP).compareTo(percent.setScale(2, RoundingMode.DOWN)) != 0) {
+                rounded++;
+            }
+        }
+
+        // проценты хранятся с 11 знаками, и часть из них в копейках округляется вверх
+        assertTrue(rounded > 0);
+
+        return columns;
+    }
+
+
+    private static long toMinorUnits(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,113 @@
+package senior.copycoders.project.api.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.ScheduleColumnsDto;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Условные запросы графика: у каждого представления свой ETag (по типу, который выбран по Accept),
+ * с ним в If-None-Match ответ 304, после платежа - снова 200 с новым ETag, и в каждом ответе Vary: Accept
+ */
+class ScheduleETagTest extends PostgresIntegrationTest {
+
+    @Test
+    void notModifiedUntilScheduleChanges() throws Exception {
+        String token = signUp();
+        long creditId = createCredit(token);
+
+        Map<String, Supplier<MockHttpServletRequestBuilder>> representations = Map.of(
+                "json", () -> get("/api/credit/{credit_id}/schedule", creditId).accept(MediaType.APPLICATION_JSON),
+                "columnar", () -> get("/api/credit/{credit_id}/schedule", creditId).accept(ScheduleColumnsDto.MEDIA_TYPE),
+                "cbor", () -> get("/api/credit/{credit_id}/schedule", creditId).accept(MediaType.APPLICATION_CBOR),
+                "pdf", () -> get("/api/download-pdf/{credit_id}", creditId));
+
+        for (Map.Entry<String, Supplier<MockHttpServletRequestBuilder>> representation : representations.entrySet()) {
+            String eTag = perform(token, representation.getValue().get(), null, 200).getHeader(HttpHeaders.ETAG);
+
+            assertEquals(String.format("\"%d-1-%s\"", creditId, representation.getKey()), eTag);
+            perform(token, representation.getValue().get(), eTag, 304);
+        }
+
+        // поток - тот же JSON с тем же ETag
+        perform(token, get("/api/credit/{credit_id}/schedule", creditId).param("stream", "true"), String.format("\"%d-1-json\"", creditId), 304);
+
+        mockMvc.perform(patch("/api/credit/{credit_id}/make-payment", creditId)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .param("date", "2024-01-15")
+                        .param("payment", "100000"))
+                .andExpect(status().isOk());
+
+        for (Map.Entry<String, Supplier<MockHttpServletRequestBuilder>> representation : representations.entrySet()) {
+            String oldETag = String.format("\"%d-1-%s\"", creditId, representation.getKey());
+            String eTag = perform(token, representation.getValue().get(), oldETag, 200).getHeader(HttpHeaders.ETAG);
+
+            assertNotNull(eTag);
+            assertNotEquals(oldETag, eTag);
+            perform(token, representation.getValue().get(), eTag, 304);
+        }
+    }
+
+
+    @Test
+    void eTagFollowsNegotiatedType() throws Exception {
+        String token = signUp();
+        long creditId = createCredit(token);
+
+        MockHttpServletResponse columnar = perform(token, get("/api/credit/{credit_id}/schedule", creditId)
+                .header(HttpHeaders.ACCEPT, ScheduleColumnsDto.MEDIA_TYPE + ", application/cbor;q=0.1"), null, 200);
+
+        assertEquals(ScheduleColumnsDto.MEDIA_TYPE, MediaType.parseMediaType(columnar.getContentType()).toString());
+        assertEquals(String.format("\"%d-1-columnar\"", creditId), columnar.getHeader(HttpHeaders.ETAG));
+
+        MockHttpServletResponse cbor = perform(token, get("/api/credit/{credit_id}/schedule", creditId)
+                .header(HttpHeaders.ACCEPT, "application/cbor, " + ScheduleColumnsDto.MEDIA_TYPE + ";q=0.1"), null, 200);
+
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, cbor.getContentType());
+        assertEquals(String.format("\"%d-1-cbor\"", creditId), cbor.getHeader(HttpHeaders.ETAG));
+    }
+
+
+    private MockHttpServletResponse perform(String token, MockHttpServletRequestBuilder request, String ifNoneMatch, int expectedStatus) throws Exception {
+        request.header(HttpHeaders.AUTHORIZATION, token);
+
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+
+        MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+
+        assertEquals(expectedStatus, response.getStatus());
+        assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT), response.getHeaders(HttpHeaders.VARY).toString());
+
+        return response;
+    }
+
+
+    private long createCredit(String token) throws Exception {
+        String created = mockMvc.perform(post("/api/credit")
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of(
+                                "date_of_first_payment", "2024-01-15",
+                                "initial_payment", 0,
+                                "credit_amount", 500_000,
+                                "percent_rate", 10,
+                                "credit_period", 24,
+                                "type_of_credit", false))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        return objectMapper.readTree(created).get("credit").get("id").asLong();
+    }
+}
@@ -0,0 +1,85 @@
+package senior.copycoders.project.api.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.AffordabilityDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.api.services.engines.CachingAmortizationEngine;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Обратная задача: при найденной сумме платёж (как его считает /api/calculate-payment) не больше бюджета,
+ * а при сумме на копейку больше - уже больше. Промежуточные суммы поиска в кэш платежей не попадают
+ */
+class AffordabilityServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    AffordabilityService affordabilityService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    CachingAmortizationEngine cachingAmortizationEngine;
+
+    private final Random random = new Random(20240910L);
+
+
+    @Test
+    void maxCreditAmountIsExact() {
+        for (int i = 0; i < 200; i++) {
+            TypeOfCredit typeOfCredit = i % 2 == 0 ? TypeOfCredit.ANNUITY : TypeOfCredit.DIFFERENTIATED;
+            BigDecimal budget = BigDecimal.valueOf(5_000_00 + random.nextInt(30_000_000), 2);
+            BigDecimal initialPayment = BigDecimal.valueOf(random.nextInt(3) * 50_000_000L + random.nextInt(100), 2);
+            BigDecimal percentRate = BigDecimal.valueOf(1 + random.nextInt(1800), 2);
+            int creditPeriod = 12 + random.nextInt(349);
+            String message = typeOfCredit + " " + budget + " " + initialPayment + " " + percentRate + " " + creditPeriod;
+
+            AffordabilityDto affordability;
+            try {
+                affordability = affordabilityService.findOutTheMaxCreditAmount(budget, initialPayment, percentRate, creditPeriod, typeOfCredit);
+            } catch (BadRequestException e) {
+                // бюджета не хватает даже на минимальную сумму кредита
+                assertTrue(paymentService.findOutThePayment(initialPayment, BigDecimal.valueOf(200_000), percentRate, creditPeriod, typeOfCredit).compareTo(budget) > 0, message);
+                continue;
+            }
+
+            BigDecimal payment = paymentService.findOutThePayment(initialPayment, affordability.getCreditAmount(), percentRate, creditPeriod, typeOfCredit);
+
+            assertEquals(payment, affordability.getPayment(), message);
+            assertTrue(payment.compareTo(budget) <= 0, message);
+
+            if (!affordability.getLimitedByMaxCreditAmount()) {
+                BigDecimal creditAmount = affordability.getCreditAmount().add(new BigDecimal("0.01"));
+
+                assertTrue(paymentService.findOutThePayment(initialPayment, creditAmount, percentRate, creditPeriod, typeOfCredit).compareTo(budget) > 0, message);
+            }
+        }
+    }
+
+
+    @Test
+    void searchDoesNotFillPaymentCache() {
+        long sizeBefore = cachingAmortizationEngine.getCaches().get("credit.payment").estimatedSize();
+
+        affordabilityService.findOutTheMaxCreditAmount(new BigDecimal("45678.9"), BigDecimal.ZERO, new BigDecimal("9.9"), 180, TypeOfCredit.DIFFERENTIATED);
+        affordabilityService.findOutTheMaxCreditAmount(new BigDecimal("45678.9"), BigDecimal.ZERO, new BigDecimal("9.9"), 180, TypeOfCredit.ANNUITY);
+
+        assertEquals(sizeBefore, cachingAmortizationEngine.getCaches().get("credit.payment").estimatedSize());
+    }
+
+
+    @Test
+    void largeBudgetIsLimitedByMaxCreditAmount() {
+        AffordabilityDto affordability = affordabilityService.findOutTheMaxCreditAmount(new BigDecimal("10000000"), new BigDecimal("100000"), new BigDecimal("10"), 120, TypeOfCredit.ANNUITY);
+
+        assertTrue(affordability.getLimitedByMaxCreditAmount());
+        assertEquals(0, affordability.getCreditAmount().compareTo(BigDecimal.valueOf(30_000_000)));
+    }
+}
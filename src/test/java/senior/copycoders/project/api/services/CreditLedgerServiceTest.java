@@ -0,0 +1,153 @@
+package senior.copycoders.project.api.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.CreditEventDto;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.api.exceptions.BadRequestException;
+import senior.copycoders.project.store.entities.User;
+import senior.copycoders.project.store.enums.TypeOfCreditEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Журнал событий: график из снимка и событий не зависит от того, как часто пишется снимок,
+ * а параллельные платежи по одному кредиту получают разные номера событий
+ */
+class CreditLedgerServiceTest extends PostgresIntegrationTest {
+
+    private static final String DATE_OF_FIRST_PAYMENT = "2024-01-15";
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    CreditLedgerService creditLedgerService;
+
+
+    @AfterEach
+    void restoreSnapshotInterval() {
+        setSnapshotInterval(8);
+    }
+
+
+    @Test
+    void scheduleDoesNotDependOnSnapshotInterval() {
+        signInAsNewUser();
+
+        for (boolean isDifferentiated : new boolean[]{false, true}) {
+            List<String> everyEvent = postPayments(1, isDifferentiated);
+
+            assertEquals(everyEvent, postPayments(3, isDifferentiated));
+            assertEquals(everyEvent, postPayments(1000, isDifferentiated));
+        }
+    }
+
+
+    @Test
+    void concurrentPaymentsGetConsecutiveEventNumbers() throws Exception {
+        User user = signInAsNewUser();
+        Long creditId = createCredit(DATE_OF_FIRST_PAYMENT, 36, false);
+        PaymentDto firstPayment = getSchedule(creditId).get(0);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    signIn(user);
+                    start.await();
+
+                    // все платят в один день: первый платёж по графику, второй - досрочный, остальные отклоняются
+                    try {
+                        paymentService.makePayment(creditId, DATE_OF_FIRST_PAYMENT, firstPayment.getPaymentAmount().doubleValue());
+                        return true;
+                    } catch (BadRequestException e) {
+                        return false;
+                    }
+                }));
+            }
+
+            start.countDown();
+
+            int posted = 0;
+            for (Future<Boolean> result : results) {
+                // любая другая ошибка (например, нарушение уникальности номера события) выйдет отсюда
+                if (result.get(1, TimeUnit.MINUTES)) {
+                    posted++;
+                }
+            }
+
+            List<CreditEventDto> events = creditLedgerService.getEventsByCreditId(creditId);
+
+            assertEquals(2, posted);
+            assertEquals(IntStream.rangeClosed(1, events.size()).boxed().toList(), events.stream().map(CreditEventDto::getEventNumber).toList());
+            assertEquals(posted, events.stream().filter(event -> event.getType() == TypeOfCreditEvent.PAYMENT_POSTED).count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Одни и те же платежи (в том числе досрочные и отклонённые) по новому кредиту
+     *
+     * @return график после каждого платежа и результат платежа
+     */
+    private List<String> postPayments(int snapshotInterval, boolean isDifferentiated) {
+        setSnapshotInterval(snapshotInterval);
+
+        Long creditId = createCredit(DATE_OF_FIRST_PAYMENT, 36, isDifferentiated);
+        List<PaymentDto> schedule = getSchedule(creditId);
+        String[][] payments = {
+                {"2024-01-15", schedule.get(0).getPaymentAmount().toPlainString()},
+                {"2024-02-15", "100000"},
+                {"2024-02-20", "5000"},
+                {"2024-01-01", "10"},
+                {"2024-03-15", "70000.5"},
+                {"2024-04-01", "3000"},
+                {"2024-04-15", "90000"},
+                {"2024-04-15", "12"},
+                {"2024-05-10", "50000"},
+                {"2024-05-15", "60000"},
+                {"2024-06-15", "60000"},
+                {"2024-07-15", "60000"},
+                {"2030-01-01", "60000"}
+        };
+
+        List<String> result = new ArrayList<>();
+
+        for (String[] payment : payments) {
+            try {
+                paymentService.makePayment(creditId, payment[0], Double.valueOf(payment[1]));
+                result.add("posted");
+            } catch (BadRequestException e) {
+                result.add(e.getMessage());
+            }
+
+            result.add(getSchedule(creditId).toString());
+        }
+
+        return result;
+    }
+
+
+    private List<PaymentDto> getSchedule(Long creditId) {
+        return paymentService.getAllPaymentsByCreditId(creditId).getPayments();
+    }
+
+
+    private void setSnapshotInterval(int snapshotInterval) {
+        setField(creditLedgerService, "snapshotInterval", snapshotInterval);
+    }
+}
@@ -0,0 +1,91 @@
+package senior.copycoders.project.api.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.api.dto.PaymentWithCreditDto;
+import senior.copycoders.project.api.services.engines.BigDecimalAmortizationEngine;
+import senior.copycoders.project.api.services.engines.EffectiveRateSolver;
+import senior.copycoders.project.store.entities.PaymentEntity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ПСК: по параметрам кредита - замкнутая формула, совпадающая с ставкой по построенному графику;
+ * по сохранённому кредиту - от даты выдачи по исходному графику, даже если первый платёж внесён раньше
+ */
+class EffectiveRateServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    PaymentService paymentService;
+
+    private final BigDecimalAmortizationEngine engine = new BigDecimalAmortizationEngine();
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+
+
+    @Test
+    void closedFormMatchesSchedule() {
+        assertEquals(new BigDecimal("12.68"), EffectiveRateService.calculateEffectiveRate(new BigDecimal("12")));
+
+        BigDecimal creditAmount = new BigDecimal("2500000.55");
+
+        for (String percentRate : new String[]{"0.01", "3.5", "7.77", "12", "15.25", "18"}) {
+            for (int creditPeriod : new int[]{12, 61, 240, 360}) {
+                BigDecimal rate = new BigDecimal(percentRate);
+                BigDecimal expected = EffectiveRateService.calculateEffectiveRate(rate);
+
+                List<PaymentEntity> annuity = engine.createListOfAnnuityCredit(LocalDate.of(2024, 1, 15), creditAmount,
+                        engine.calculatePaymentOfAnnuityCredit(creditAmount, rate, creditPeriod), rate, creditPeriod, null, false, BigDecimal.ZERO);
+                List<PaymentEntity> differentiated = engine.createListOfDifferentiatedCredit(LocalDate.of(2024, 1, 15), creditAmount, rate, creditPeriod, null, false, BigDecimal.ZERO);
+
+                // ставки в процентах до сотых: формула и график расходятся только в округлении последнего знака
+                assertEquals(expected.doubleValue(), solveMonthly(creditAmount, annuity), 0.0051, percentRate + " " + creditPeriod);
+                assertEquals(expected.doubleValue(), solveMonthly(creditAmount, differentiated), 0.0051, percentRate + " " + creditPeriod);
+            }
+        }
+    }
+
+
+    @Test
+    void storedCreditIsIssuedMonthBeforeOriginalFirstPayment() {
+        signInAsNewUser();
+
+        for (boolean isDifferentiated : new boolean[]{false, true}) {
+            Long creditId = creditService.calculateSchedule("2024-01-15", BigDecimal.ZERO, new BigDecimal("800000"), new BigDecimal("11.5"), 24, isDifferentiated)
+                    .getCredit().getId();
+
+            BigDecimal firstPayment = paymentService.getAllPaymentsByCreditId(creditId).getPayments().get(0).getPaymentAmount();
+
+            // досрочный платёж раньше даты первого платежа: первым в графике становится платёж от 2024-01-10
+            paymentService.makePayment(creditId, "2024-01-10", firstPayment.doubleValue());
+
+            PaymentWithCreditDto schedule = paymentService.getAllPaymentsByCreditId(creditId);
+            List<PaymentDto> payments = schedule.getPayments();
+            LocalDate dateOfIssue = LocalDate.of(2023, 12, 15);
+
+            double[] amounts = new double[payments.size()];
+            double[] times = new double[payments.size()];
+            for (int k = 0; k < amounts.length; k++) {
+                amounts[k] = payments.get(k).getPaymentAmount().doubleValue();
+                times[k] = ChronoUnit.DAYS.between(dateOfIssue, payments.get(k).getPaymentDate()) / 365.0;
+            }
+
+            assertEquals(LocalDate.of(2024, 1, 10), payments.get(0).getPaymentDate());
+            assertEquals(BigDecimal.valueOf(solver.solve(800_000, amounts, times) * 100).setScale(2, RoundingMode.HALF_EVEN), schedule.getEffectiveRate());
+        }
+    }
+
+
+    private double solveMonthly(BigDecimal creditAmount, List<PaymentEntity> payments) {
+        double[] amounts = payments.stream().mapToDouble(payment -> payment.getPaymentAmount().doubleValue()).toArray();
+
+        return solver.solveMonthly(creditAmount.doubleValue(), amounts) * 100;
+    }
+}
@@ -0,0 +1,139 @@
+package senior.copycoders.project.api.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пересчёт хвоста графика пишет в БД только изменившиеся платежи: xmin строки (номер транзакции,
+ * которая её записала) меняется ровно у тех платежей, значения которых стали другими, и никогда -
+ * у платежей до даты проведённого платежа
+ */
+class RecalculatedTailTest extends PostgresIntegrationTest {
+
+    private static final String COLUMNS = "payment_number, payment_date, payment_amount, percent, repayment_credit, " +
+            "credit_after_payment, status, credit_before_payment, credit_amount";
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    CreditLedgerService creditLedgerService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    int snapshotInterval;
+
+
+    @BeforeEach
+    void writeSnapshotOnEveryPayment() {
+        // без снимка платёж попадает только в журнал, а строки payment не меняются
+        snapshotInterval = (int) getField(creditLedgerService, "snapshotInterval");
+        setField(creditLedgerService, "snapshotInterval", 1);
+    }
+
+
+    @AfterEach
+    void restoreSnapshotInterval() {
+        setField(creditLedgerService, "snapshotInterval", snapshotInterval);
+    }
+
+
+    @Test
+    void onlyChangedPaymentsAreWritten() {
+        signInAsNewUser();
+
+        for (boolean isDifferentiated : new boolean[]{false, true}) {
+            Long creditId = createCredit("2024-01-31", 36, isDifferentiated);
+
+            // платёж по графику: хвост пересчитывается, но не меняется, поэтому записывается одна строка
+            PaymentDto next = getNextPayment(creditId);
+            assertEquals(Set.of(1), post(creditId, next.getPaymentDate(), next.getPaymentAmount().doubleValue()));
+
+            // частичный досрочный платёж между датами: новая строка и пересчитанный хвост
+            next = getNextPayment(creditId);
+            Set<Integer> written = post(creditId, next.getPaymentDate().minusDays(10), next.getPaymentAmount().doubleValue() * 2.5);
+            assertTrue(written.size() > 1, written.toString());
+
+            // платёж по графику после досрочного
+            next = getNextPayment(creditId);
+            assertEquals(Set.of(next.getPaymentNumber()), post(creditId, next.getPaymentDate(), next.getPaymentAmount().doubleValue()));
+        }
+    }
+
+
+    /**
+     * Проводит платёж и проверяет, что переписаны только изменившиеся строки
+     *
+     * @return номера записанных (изменённых и новых) платежей
+     */
+    private Set<Integer> post(Long creditId, LocalDate date, double amount) {
+        Map<Long, Map<String, Object>> before = getRows(creditId);
+
+        paymentService.makePayment(creditId, date.toString(), Math.round(amount * 100) / 100.0);
+
+        Map<Long, Map<String, Object>> after = getRows(creditId);
+        Set<Integer> written = new HashSet<>();
+
+        // сохранённые платежи обновляются на месте, новой бывает только строка проведённого между датами платежа
+        assertTrue(after.keySet().stream().filter(id -> !before.containsKey(id)).count() <= 1);
+
+        after.forEach((id, row) -> {
+            Map<String, Object> previous = before.get(id);
+            boolean isRewritten = previous == null || !previous.get("xmin").equals(row.get("xmin"));
+            boolean isChanged = previous == null || !withoutXmin(previous).equals(withoutXmin(row));
+
+            assertEquals(isChanged, isRewritten, "payment " + row);
+
+            if (isRewritten) {
+                written.add((Integer) row.get("payment_number"));
+                // платежи до даты проведённого платежа не трогаются
+                assertFalse(previous != null && ((Date) previous.get("payment_date")).toLocalDate().isBefore(date), "payment " + row);
+            }
+        });
+
+        return written;
+    }
+
+
+    private PaymentDto getNextPayment(Long creditId) {
+        return paymentService.getAllPaymentsByCreditId(creditId).getPayments().stream()
+                .filter(payment -> payment.getStatus() == StatusOfPaymentOrCredit.PENDING)
+                .findFirst()
+                .orElseThrow();
+    }
+
+
+    private Map<Long, Map<String, Object>> getRows(Long creditId) {
+        Map<Long, Map<String, Object>> rows = new HashMap<>();
+
+        for (Map<String, Object> row : jdbcTemplate.queryForList("select id, xmin::text as xmin, " + COLUMNS + " from payment where credit_id = ?", creditId)) {
+            rows.put((Long) row.get("id"), row);
+        }
+
+        return rows;
+    }
+
+
+    private static Map<String, Object> withoutXmin(Map<String, Object> row) {
+        Map<String, Object> values = new HashMap<>(row);
+        values.remove("xmin");
+
+        return values;
+    }
+}
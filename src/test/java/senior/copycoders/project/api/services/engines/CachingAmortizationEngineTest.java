@@ -0,0 +1,123 @@
+package senior.copycoders.project.api.services.engines;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кэш перед движком: повторный расчёт - попадание с тем же результатом, изменения отданного графика
+ * не попадают в кэш, перерасчёт после платежа идёт мимо кэша, а масштаб входа различается только там,
+ * где от него зависит результат
+ */
+class CachingAmortizationEngineTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 31);
+    private static final BigDecimal CREDIT_AMOUNT = new BigDecimal("1400000.55");
+    private static final BigDecimal PERCENT_RATE = new BigDecimal("12.35");
+
+    private final BigDecimalAmortizationEngine delegate = new BigDecimalAmortizationEngine();
+    private final CachingAmortizationEngine engine = new CachingAmortizationEngine(delegate, 100, 10_000, Duration.ofMinutes(5));
+
+
+    @Test
+    void repeatedScheduleIsCacheHit() {
+        BigDecimal payment = delegate.calculatePaymentOfAnnuityCredit(CREDIT_AMOUNT, PERCENT_RATE, 36);
+        CreditEntity credit = CreditEntity.builder().id(1L).build();
+
+        List<PaymentEntity> first = engine.createListOfAnnuityCredit(DATE, CREDIT_AMOUNT, payment, PERCENT_RATE, 36, credit, false, BigDecimal.ZERO);
+        List<PaymentEntity> second = engine.createListOfAnnuityCredit(DATE, CREDIT_AMOUNT, payment, PERCENT_RATE, 36, credit, false, BigDecimal.ZERO);
+
+        assertEquals(1, getCache("credit.schedule").stats().hitCount());
+        assertEquals(describe(delegate.createListOfAnnuityCredit(DATE, CREDIT_AMOUNT, payment, PERCENT_RATE, 36, credit, false, BigDecimal.ZERO)), describe(second));
+        assertEquals(describe(first), describe(second));
+
+        // у каждого вызова свои платежи, привязанные к переданному кредиту
+        assertNotSame(first.get(0), second.get(0));
+        assertSame(credit, second.get(0).getCredit());
+    }
+
+
+    @Test
+    void changesOfReturnedScheduleDoNotReachCache() {
+        List<String> expected = describe(engine.createListOfDifferentiatedCredit(DATE, CREDIT_AMOUNT, PERCENT_RATE, 24, null, false, BigDecimal.ZERO));
+
+        List<PaymentEntity> payments = engine.createListOfDifferentiatedCredit(DATE, CREDIT_AMOUNT, PERCENT_RATE, 24, null, false, BigDecimal.ZERO);
+
+        // так график меняют при проведении платежа
+        payments.get(0).setStatus(StatusOfPaymentOrCredit.PAID);
+        payments.get(1).setPaymentAmount(BigDecimal.ONE);
+        payments.get(2).setPaymentNumber(100);
+        payments.remove(3);
+        payments.add(PaymentEntity.builder().paymentNumber(25).build());
+
+        assertEquals(expected, describe(engine.createListOfDifferentiatedCredit(DATE, CREDIT_AMOUNT, PERCENT_RATE, 24, null, false, BigDecimal.ZERO)));
+        assertEquals(2, getCache("credit.schedule").stats().hitCount());
+    }
+
+
+    @Test
+    void recalculationBypassesCache() {
+        BigDecimal payment = delegate.calculatePaymentOfAnnuityCredit(CREDIT_AMOUNT, PERCENT_RATE, 36);
+        BigDecimal helpTotalSum = new BigDecimal("1500000");
+
+        for (int i = 0; i < 2; i++) {
+            List<PaymentEntity> annuity = engine.createListOfAnnuityCredit(DATE, CREDIT_AMOUNT, payment, PERCENT_RATE, 36, null, true, helpTotalSum);
+            List<PaymentEntity> differentiated = engine.createListOfDifferentiatedCredit(DATE, CREDIT_AMOUNT, PERCENT_RATE, 36, null, true, helpTotalSum);
+
+            assertEquals(describe(delegate.createListOfAnnuityCredit(DATE, CREDIT_AMOUNT, payment, PERCENT_RATE, 36, null, true, helpTotalSum)), describe(annuity));
+            assertEquals(describe(delegate.createListOfDifferentiatedCredit(DATE, CREDIT_AMOUNT, PERCENT_RATE, 36, null, true, helpTotalSum)), describe(differentiated));
+        }
+
+        assertEquals(0, getCache("credit.schedule").stats().requestCount());
+        assertEquals(0, getCache("credit.schedule").estimatedSize());
+    }
+
+
+    @Test
+    void scaleIsPartOfKeyOnlyWhereResultDependsOnIt() {
+        BigDecimal percentRate = new BigDecimal("12.350");
+        BigDecimal creditAmount = new BigDecimal("1400000.550");
+
+        // аннуитетный платёж и налоговый вычет - всегда два знака, одна запись на значение
+        BigDecimal payment = engine.calculatePaymentOfAnnuityCredit(CREDIT_AMOUNT, PERCENT_RATE, 36);
+        assertEquals(payment, engine.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, 36));
+
+        BigDecimal taxDeduction = engine.calculateTaxDeductionOfFirstYear(CREDIT_AMOUNT, PERCENT_RATE, 36, TypeOfCredit.ANNUITY, payment);
+        assertEquals(taxDeduction, engine.calculateTaxDeductionOfFirstYear(creditAmount, percentRate, 36, TypeOfCredit.ANNUITY, payment.setScale(3)));
+
+        assertEquals(1, getCache("credit.payment").stats().hitCount());
+        assertEquals(1, getCache("credit.tax-deduction").stats().hitCount());
+
+        // масштаб первого платежа дифференцированного кредита следует за масштабом входа
+        BigDecimal firstPayment = engine.calculateFirstPaymentOfDifferentiatedCredit(CREDIT_AMOUNT, PERCENT_RATE, 36);
+        BigDecimal firstPaymentOfScaled = engine.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, 36);
+
+        assertEquals(delegate.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, 36), firstPaymentOfScaled);
+        assertEquals(0, firstPayment.compareTo(firstPaymentOfScaled));
+        assertEquals(1, getCache("credit.payment").stats().hitCount());
+    }
+
+
+    private Cache<?, ?> getCache(String name) {
+        return engine.getCaches().get(name);
+    }
+
+
+    private static List<String> describe(List<PaymentEntity> payments) {
+        return payments.stream()
+                .map(payment -> payment.getPaymentNumber() + " " + payment.getPaymentDate() + " " + payment.getStatus()
+                        + " " + payment.getPaymentAmount() + " " + payment.getPercent() + " " + payment.getRepaymentCredit()
+                        + " " + payment.getAfterPayment() + " " + payment.getBeforePayment() + " " + payment.getCreditAmount())
+                .toList();
+    }
+}
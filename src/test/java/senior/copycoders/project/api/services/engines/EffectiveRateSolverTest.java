@@ -0,0 +1,82 @@
+package senior.copycoders.project.api.services.engines;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Внутренняя норма доходности: известные ответы, ставки около нуля и ниже нуля, очень большие ставки
+ * и платежи в произвольные моменты времени
+ */
+class EffectiveRateSolverTest {
+
+    private final EffectiveRateSolver solver = new EffectiveRateSolver();
+
+
+    @Test
+    void annuityGivesCompoundedMonthlyRate() {
+        double creditAmount = 1_000_000;
+
+        for (double monthlyRate : new double[]{0.0001, 0.005, 0.01, 0.015}) {
+            for (int creditPeriod : new int[]{1, 12, 120, 360}) {
+                double payment = creditAmount * monthlyRate / -Math.expm1(-creditPeriod * Math.log1p(monthlyRate));
+                double[] amounts = new double[creditPeriod];
+                Arrays.fill(amounts, payment);
+
+                assertEquals(Math.pow(1 + monthlyRate, 12) - 1, solver.solveMonthly(creditAmount, amounts), 1e-12, monthlyRate + " " + creditPeriod);
+            }
+        }
+    }
+
+
+    @Test
+    void singlePaymentIsSolvedExactly() {
+        assertEquals(0.1, solver.solve(100, new double[]{121}, new double[]{2}), 1e-13);
+        // корень далеко за начальным интервалом [-1, 1] по x = ln(1 + E)
+        assertEquals(99, solver.solve(100, new double[]{10_000}, new double[]{1}), 1e-9);
+        assertEquals(-0.99, solver.solve(100, new double[]{1}, new double[]{1}), 1e-13);
+    }
+
+
+    @Test
+    void zeroAndNegativeRates() {
+        assertEquals(0, solver.solveMonthly(1200, new double[]{100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100}), 1e-13);
+
+        double rate = solver.solveMonthly(1200, new double[]{100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 90});
+        assertEquals(1200, presentValue(new double[]{100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 100, 90}, monthlyTimes(12), rate), 1e-9);
+        assertEquals(-1, Math.signum(rate));
+    }
+
+
+    @Test
+    void irregularPaymentsDiscountToCreditAmount() {
+        double[] amounts = {50_000, 3_000, 250_000, 10, 80_000, 80_000, 120_000};
+        double[] times = {0.04, 0.1, 0.5, 0.51, 1.2, 2.7, 3};
+
+        double rate = solver.solve(500_000, amounts, times);
+
+        assertEquals(500_000, presentValue(amounts, times, rate), 1e-6);
+    }
+
+
+    private static double[] monthlyTimes(int count) {
+        double[] times = new double[count];
+        for (int k = 0; k < count; k++) {
+            times[k] = (k + 1) / 12.0;
+        }
+
+        return times;
+    }
+
+
+    private static double presentValue(double[] amounts, double[] times, double rate) {
+        double value = 0;
+        for (int k = 0; k < amounts.length; k++) {
+            value += amounts[k] / Math.pow(1 + rate, times[k]);
+        }
+
+        return value;
+    }
+}
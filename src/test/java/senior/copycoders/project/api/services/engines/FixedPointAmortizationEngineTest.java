@@ -0,0 +1,140 @@
+package senior.copycoders.project.api.services.engines;
+
+import org.junit.jupiter.api.Test;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Дифференциальный тест: движок на long обязан совпадать с BigDecimal-движком вплоть до масштаба
+ */
+class FixedPointAmortizationEngineTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 8, 24);
+
+    private final BigDecimalAmortizationEngine reference = new BigDecimalAmortizationEngine();
+    private final FixedPointAmortizationEngine engine = new FixedPointAmortizationEngine(reference, new AnnuityFactorTable());
+    private final Random random = new Random(20240824L);
+
+
+    @Test
+    void paymentsMatchReference() {
+        for (int i = 0; i < 5_000; i++) {
+            BigDecimal creditAmount = randomCreditAmount();
+            BigDecimal percentRate = randomPercentRate();
+            int creditPeriod = randomCreditPeriod();
+
+            assertEquals(reference.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod),
+                    engine.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod), creditAmount + " " + percentRate + " " + creditPeriod);
+            assertEquals(reference.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, creditPeriod),
+                    engine.calculateFirstPaymentOfDifferentiatedCredit(creditAmount, percentRate, creditPeriod), creditAmount + " " + percentRate + " " + creditPeriod);
+        }
+    }
+
+
+    @Test
+    void taxDeductionsMatchReference() {
+        for (int i = 0; i < 5_000; i++) {
+            BigDecimal creditAmount = randomCreditAmount();
+            BigDecimal percentRate = randomPercentRate();
+            int creditPeriod = randomCreditPeriod();
+            BigDecimal payment = reference.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod);
+
+            for (TypeOfCredit typeOfCredit : TypeOfCredit.values()) {
+                assertEquals(reference.calculateTaxDeductionOfFirstYear(creditAmount, percentRate, creditPeriod, typeOfCredit, payment),
+                        engine.calculateTaxDeductionOfFirstYear(creditAmount, percentRate, creditPeriod, typeOfCredit, payment), creditAmount + " " + percentRate + " " + creditPeriod + " " + typeOfCredit);
+            }
+        }
+    }
+
+
+    @Test
+    void annuitySchedulesMatchReference() {
+        for (int i = 0; i < 400; i++) {
+            BigDecimal creditAmount = randomCreditAmount();
+            BigDecimal percentRate = randomPercentRate();
+            int creditPeriod = randomCreditPeriod();
+            BigDecimal payment = reference.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, creditPeriod);
+            BigDecimal helpTotalSum = randomHelpTotalSum(payment.multiply(BigDecimal.valueOf(creditPeriod)), 2);
+            boolean isNeedCheck = i % 2 == 1;
+
+            assertSchedulesEqual(
+                    reference.createListOfAnnuityCredit(DATE, creditAmount, payment, percentRate, creditPeriod, null, isNeedCheck, helpTotalSum),
+                    engine.createListOfAnnuityCredit(DATE, creditAmount, payment, percentRate, creditPeriod, null, isNeedCheck, helpTotalSum));
+        }
+    }
+
+
+    @Test
+    void differentiatedSchedulesMatchReference() {
+        for (int i = 0; i < 400; i++) {
+            BigDecimal creditAmount = randomCreditAmount();
+            BigDecimal percentRate = randomPercentRate();
+            int creditPeriod = randomCreditPeriod();
+            List<PaymentEntity> plain = reference.createListOfDifferentiatedCredit(DATE, creditAmount, percentRate, creditPeriod, null, false, BigDecimal.ZERO);
+            BigDecimal helpTotalSum = randomHelpTotalSum(plain.get(0).getBeforePayment(), 4);
+            boolean isNeedCheck = i % 2 == 1;
+
+            assertSchedulesEqual(
+                    reference.createListOfDifferentiatedCredit(DATE, creditAmount, percentRate, creditPeriod, null, isNeedCheck, helpTotalSum),
+                    engine.createListOfDifferentiatedCredit(DATE, creditAmount, percentRate, creditPeriod, null, isNeedCheck, helpTotalSum));
+        }
+    }
+
+
+    private static void assertSchedulesEqual(List<PaymentEntity> expected, List<PaymentEntity> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            PaymentEntity expectedPayment = expected.get(i);
+            PaymentEntity actualPayment = actual.get(i);
+            String message = "payment " + (i + 1);
+
+            assertEquals(expectedPayment.getPaymentNumber(), actualPayment.getPaymentNumber(), message);
+            assertEquals(expectedPayment.getPaymentDate(), actualPayment.getPaymentDate(), message);
+            assertEquals(expectedPayment.getPaymentAmount(), actualPayment.getPaymentAmount(), message);
+            assertEquals(expectedPayment.getPercent(), actualPayment.getPercent(), message);
+            assertEquals(expectedPayment.getRepaymentCredit(), actualPayment.getRepaymentCredit(), message);
+            assertEquals(expectedPayment.getBeforePayment(), actualPayment.getBeforePayment(), message);
+            assertEquals(expectedPayment.getAfterPayment(), actualPayment.getAfterPayment(), message);
+            assertEquals(expectedPayment.getStatus(), actualPayment.getStatus(), message);
+
+            // в БД остаток долга хранится с двумя знаками после запятой
+            assertEquals(expectedPayment.getCreditAmount().setScale(2, RoundingMode.HALF_UP), actualPayment.getCreditAmount(), message);
+        }
+    }
+
+
+    // так же, как приходит из контроллера: сумма кредита минус первоначальный взнос, обе из double
+    private BigDecimal randomCreditAmount() {
+        long creditAmount = 200_000_00L + (long) (random.nextDouble() * 29_800_000_00L);
+        long initialPayment = random.nextInt(4) == 0 ? 0 : (long) (random.nextDouble() * creditAmount / 2);
+
+        return BigDecimal.valueOf(creditAmount / 100.0).subtract(BigDecimal.valueOf(initialPayment / 100.0));
+    }
+
+
+    private BigDecimal randomPercentRate() {
+        int rate = random.nextInt(3) == 0 ? 100 * (1 + random.nextInt(18)) : 1 + random.nextInt(1800);
+
+        return BigDecimal.valueOf(rate / 100.0);
+    }
+
+
+    private int randomCreditPeriod() {
+        return 12 + random.nextInt(349);
+    }
+
+
+    // общая сумма выплат, которая отличается от рассчитанной (как при перерасчёте)
+    private BigDecimal randomHelpTotalSum(BigDecimal totalSum, int scale) {
+        return totalSum.add(BigDecimal.valueOf(random.nextInt(2001) - 1000, scale));
+    }
+}
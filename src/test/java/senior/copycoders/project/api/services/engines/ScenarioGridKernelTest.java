@@ -0,0 +1,89 @@
+package senior.copycoders.project.api.services.engines;
+
+import org.junit.jupiter.api.Test;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Замкнутые формулы сетки сценариев против BigDecimal-движка: платёж и вычет - его же формулами,
+ * сумма процентов - по графику, который он строит помесячно (все платежи минус сумма кредита)
+ */
+class ScenarioGridKernelTest {
+
+    private static final double CREDIT_AMOUNT = 3_000_000.55;
+    private static final LocalDate DATE = LocalDate.of(2024, 8, 24);
+
+    private final ScenarioGridKernel kernel = new ScenarioGridKernel(new AnnuityFactorTable());
+    private final BigDecimalAmortizationEngine reference = new BigDecimalAmortizationEngine();
+    private final Random random = new Random(20240901L);
+
+
+    @Test
+    void cellsMatchReference() {
+        int[] rates = new int[8];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = 1 + random.nextInt(1800);
+        }
+
+        int[] periods = new int[6];
+        for (int i = 0; i < periods.length; i++) {
+            periods[i] = 12 + random.nextInt(349);
+        }
+
+        double[] initialPayments = {0, 123_456.78, 1_000_000};
+
+        for (TypeOfCredit typeOfCredit : TypeOfCredit.values()) {
+            int size = rates.length * periods.length * initialPayments.length;
+            double[] payments = new double[size];
+            double[] totalInterest = new double[size];
+            double[] taxDeductions = new double[size];
+
+            kernel.calculate(CREDIT_AMOUNT, rates, periods, initialPayments, typeOfCredit, payments, totalInterest, taxDeductions);
+
+            for (int rateIndex = 0; rateIndex < rates.length; rateIndex++) {
+                for (int periodIndex = 0; periodIndex < periods.length; periodIndex++) {
+                    for (int initialPaymentIndex = 0; initialPaymentIndex < initialPayments.length; initialPaymentIndex++) {
+                        int cell = (rateIndex * periods.length + periodIndex) * initialPayments.length + initialPaymentIndex;
+                        int rate = rates[rateIndex];
+                        int creditPeriod = periods[periodIndex];
+                        BigDecimal ostatokOfCredit = BigDecimal.valueOf(CREDIT_AMOUNT).subtract(BigDecimal.valueOf(initialPayments[initialPaymentIndex]));
+                        BigDecimal percentRate = BigDecimal.valueOf(rate, 2);
+                        String message = typeOfCredit + " " + rate + " " + creditPeriod + " " + ostatokOfCredit;
+
+                        BigDecimal payment = typeOfCredit == TypeOfCredit.ANNUITY
+                                ? reference.calculatePaymentOfAnnuityCredit(ostatokOfCredit, percentRate, creditPeriod)
+                                : reference.calculateFirstPaymentOfDifferentiatedCredit(ostatokOfCredit, percentRate, creditPeriod);
+                        BigDecimal taxDeduction = reference.calculateTaxDeductionOfFirstYear(ostatokOfCredit, percentRate, creditPeriod, typeOfCredit, payment)
+                                .min(BigDecimal.valueOf(650_000));
+
+                        assertEquals(payment.doubleValue(), payments[cell], 0.0051, message);
+                        assertEquals(taxDeduction.doubleValue(), taxDeductions[cell], 0.011, message);
+                        // в графике дифференцированного кредита каждый платёж округлён до копеек, в формуле - только сумма
+                        double delta = typeOfCredit == TypeOfCredit.ANNUITY ? 0.011 : creditPeriod * 0.005;
+                        assertEquals(totalInterest(ostatokOfCredit, percentRate, creditPeriod, typeOfCredit, payment), totalInterest[cell], delta, message);
+                    }
+                }
+            }
+        }
+    }
+
+
+    private double totalInterest(BigDecimal ostatokOfCredit, BigDecimal percentRate, int creditPeriod, TypeOfCredit typeOfCredit, BigDecimal payment) {
+        List<PaymentEntity> schedule = typeOfCredit == TypeOfCredit.ANNUITY
+                ? reference.createListOfAnnuityCredit(DATE, ostatokOfCredit, payment, percentRate, creditPeriod, null, false, BigDecimal.ZERO)
+                : reference.createListOfDifferentiatedCredit(DATE, ostatokOfCredit, percentRate, creditPeriod, null, false, BigDecimal.ZERO);
+
+        return schedule.stream()
+                .map(PaymentEntity::getPaymentAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .subtract(ostatokOfCredit)
+                .doubleValue();
+    }
+}
@@ -0,0 +1,66 @@
+package senior.copycoders.project.api.services.engines;
+
+import org.junit.jupiter.api.Test;
+import senior.copycoders.project.store.enums.TypeOfCredit;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проценты по годам через частичные суммы рядов против помесячного расчёта по той же модели
+ */
+class TaxDeductionCalculatorTest {
+
+    private final TaxDeductionCalculator calculator = new TaxDeductionCalculator();
+    private final Random random = new Random(20240902L);
+
+
+    @Test
+    void percentByYearMatchesMonthlyRecursion() {
+        for (int i = 0; i < 2_000; i++) {
+            double creditAmount = (200_000_00L + (long) (random.nextDouble() * 29_800_000_00L)) / 100.0;
+            int rate = 1 + random.nextInt(1800);
+            int creditPeriod = 12 + random.nextInt(349);
+            double payment = Math.rint(creditAmount * AnnuityFactorTable.calculate(rate, creditPeriod) * 100) / 100;
+            double decrease = Math.rint(creditAmount / creditPeriod * 100) / 100;
+
+            for (TypeOfCredit typeOfCredit : TypeOfCredit.values()) {
+                double[] expected = percentByYear(creditAmount, rate, creditPeriod, typeOfCredit, payment, decrease);
+                double[] actual = calculator.calculatePercentByYear(creditAmount, rate, creditPeriod, typeOfCredit, payment, decrease);
+
+                assertEquals(expected.length, actual.length);
+
+                for (int year = 0; year < expected.length; year++) {
+                    // погрешность double на суммах до десятков миллионов, намного меньше копейки
+                    assertEquals(expected[year], actual[year], 1e-4, typeOfCredit + " " + creditAmount + " " + rate + " " + creditPeriod + " year " + (year + 1));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    void lastYearMayBeIncomplete() {
+        double[] percentByYear = calculator.calculatePercentByYear(1_000_000, 1200, 30, TypeOfCredit.DIFFERENTIATED, 0, 1_000_000 / 30.0);
+
+        assertEquals(3, percentByYear.length);
+        // последние 6 платежей: долг 6/30, 5/30, ... 1/30 суммы, ставка 1% в месяц
+        assertEquals(1_000_000 * 0.01 * 21 / 30, percentByYear[2], 1e-6);
+    }
+
+
+    private static double[] percentByYear(double creditAmount, int rate, int creditPeriod, TypeOfCredit typeOfCredit, double payment, double decrease) {
+        double monthlyRate = rate / 120_000.0;
+        double[] percentByYear = new double[(creditPeriod + 11) / 12];
+        double balance = creditAmount;
+
+        for (int month = 0; month < creditPeriod; month++) {
+            double percent = balance * monthlyRate;
+            percentByYear[month / 12] += percent;
+            balance -= typeOfCredit == TypeOfCredit.ANNUITY ? payment - percent : decrease;
+        }
+
+        return percentByYear;
+    }
+}
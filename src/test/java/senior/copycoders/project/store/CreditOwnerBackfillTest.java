@@ -0,0 +1,64 @@
+package senior.copycoders.project.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.exceptions.NotFoundException;
+import senior.copycoders.project.api.services.PaymentService;
+import senior.copycoders.project.store.entities.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кредиты без владельца: без credit.orphans.owner остаются недоступными, с ним передаются этому пользователю
+ */
+class CreditOwnerBackfillTest extends PostgresIntegrationTest {
+
+    @Autowired
+    CreditOwnerBackfill creditOwnerBackfill;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+
+    @AfterEach
+    void restoreOwner() {
+        setOwner("");
+    }
+
+
+    @Test
+    void orphanedCreditsAreAssignedToConfiguredOwner() {
+        signInAsNewUser();
+        Long creditId = createCredit("2024-01-15", 24, false);
+
+        // кредит, созданный до привязки к владельцу
+        jdbcTemplate.update("update credit set person_id = null where id = ?", creditId);
+
+        User owner = signInAsNewUser();
+        assertThrows(NotFoundException.class, () -> paymentService.getAllPaymentsByCreditId(creditId));
+
+        // владелец не задан или не найден - кредит остаётся без владельца
+        creditOwnerBackfill.assignOrphanedCredits();
+        setOwner("unknown-" + owner.getUsername());
+        creditOwnerBackfill.assignOrphanedCredits();
+
+        assertNull(jdbcTemplate.queryForObject("select person_id from credit where id = ?", Long.class, creditId));
+
+        setOwner(owner.getUsername());
+        creditOwnerBackfill.assignOrphanedCredits();
+
+        assertEquals(owner.getId(), jdbcTemplate.queryForObject("select person_id from credit where id = ?", Long.class, creditId));
+        assertEquals(24, paymentService.getAllPaymentsByCreditId(creditId).getPayments().size());
+    }
+
+
+    private void setOwner(String owner) {
+        setField(creditOwnerBackfill, "owner", owner);
+    }
+}
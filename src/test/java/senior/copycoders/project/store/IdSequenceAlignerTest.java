@@ -0,0 +1,73 @@
+package senior.copycoders.project.store;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import senior.copycoders.project.PostgresIntegrationTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Последовательность, отстающая от таблицы (как после перехода с IDENTITY), сдвигается за максимальный id,
+ * и следующие пачки id кредитов и платежей проходят мимо уже занятых id
+ */
+class IdSequenceAlignerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    IdSequenceAligner idSequenceAligner;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+
+    @Test
+    void nextAllocationsSkipExistingIds() {
+        signInAsNewUser();
+        Long creditId = createCredit("2024-01-31", 12, false);
+        Long paymentId = jdbcTemplate.queryForObject("select min(id) from payment where credit_id = ?", Long.class, creditId);
+
+        // строки с id за текущей пачкой: без сдвига последовательности следующая пачка попала бы на них
+        long creditTakenId = getLastValue("credit_seq") + 2 * getIncrement("credit_seq");
+        long paymentTakenId = getLastValue("payment_seq") + 2 * getIncrement("payment_seq");
+
+        copyRow("credit", creditId, creditTakenId);
+        copyRow("payment", paymentId, paymentTakenId);
+
+        idSequenceAligner.alignSequences();
+
+        assertEquals(creditTakenId + getIncrement("credit_seq"), getLastValue("credit_seq"));
+        assertEquals(paymentTakenId + getIncrement("payment_seq"), getLastValue("payment_seq"));
+
+        // выровненная последовательность больше не сдвигается
+        idSequenceAligner.alignSequences();
+        assertEquals(creditTakenId + getIncrement("credit_seq"), getLastValue("credit_seq"));
+
+        // новые кредиты и платежи, пока id не перейдут за занятые (иначе - нарушение первичного ключа)
+        long maxCreditId = 0;
+        for (int i = 0; i < 3 * getIncrement("credit_seq") && maxCreditId <= creditTakenId; i++) {
+            maxCreditId = createCredit("2024-01-31", 60, i % 2 == 1);
+        }
+
+        assertTrue(maxCreditId > creditTakenId, maxCreditId + " <= " + creditTakenId);
+        assertTrue(jdbcTemplate.queryForObject("select max(id) from payment", Long.class) > paymentTakenId);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from payment", Long.class),
+                jdbcTemplate.queryForObject("select count(distinct id) from payment", Long.class));
+    }
+
+
+    // копия строки с другим id
+    private void copyRow(String table, Long id, long newId) {
+        jdbcTemplate.update("insert into " + table + " select (jsonb_populate_record(t, jsonb_build_object('id', ?))).* from " + table + " t where t.id = ?", newId, id);
+    }
+
+
+    private long getLastValue(String sequence) {
+        return jdbcTemplate.queryForObject("select coalesce(last_value, 0) from pg_sequences where sequencename = ? and schemaname = current_schema()", Long.class, sequence);
+    }
+
+
+    private long getIncrement(String sequence) {
+        return jdbcTemplate.queryForObject("select increment_by from pg_sequences where sequencename = ? and schemaname = current_schema()", Long.class, sequence);
+    }
+}
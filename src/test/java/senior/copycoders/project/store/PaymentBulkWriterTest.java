@@ -0,0 +1,111 @@
+package senior.copycoders.project.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.api.services.PaymentService;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Двоичный COPY: строки платежей те же, что при сохранении через JPA, а id берутся из payment_seq
+ * так же, как их выдаёт Hibernate, поэтому следующие платежи через JPA с ними не пересекаются
+ */
+class PaymentBulkWriterTest extends PostgresIntegrationTest {
+
+    private static final String DATE_OF_FIRST_PAYMENT = "2024-01-31";
+
+    private static final String COLUMNS = "payment_number, payment_date, payment_amount, percent, repayment_credit, " +
+            "credit_after_payment, status, credit_before_payment, credit_amount";
+
+    @Autowired
+    PaymentBulkWriter paymentBulkWriter;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+
+    @AfterEach
+    void restoreCopyEnabled() {
+        setCopyEnabled(true);
+    }
+
+
+    @Test
+    void copiedRowsMatchJpaRows() {
+        signInAsNewUser();
+
+        for (boolean isDifferentiated : new boolean[]{false, true}) {
+            for (int creditPeriod : new int[]{12, 37, 360}) {
+                setCopyEnabled(false);
+                Long jpaCreditId = createCredit(DATE_OF_FIRST_PAYMENT, creditPeriod, isDifferentiated);
+
+                setCopyEnabled(true);
+                Long copyCreditId = createCredit(DATE_OF_FIRST_PAYMENT, creditPeriod, isDifferentiated);
+
+                // на этой БД COPY действительно используется (иначе сравнивались бы два сохранения через JPA)
+                assertEquals(50, getField(paymentBulkWriter, "idIncrement"));
+
+                List<Map<String, Object>> rows = getRows(copyCreditId);
+
+                assertEquals(creditPeriod, rows.size());
+                assertEquals(getRows(jpaCreditId), rows);
+                assertEquals(paymentService.getAllPaymentsByCreditId(jpaCreditId).getPayments(), paymentService.getAllPaymentsByCreditId(copyCreditId).getPayments());
+            }
+        }
+    }
+
+
+    @Test
+    void reservedIdsDoNotCollideWithJpaIds() {
+        signInAsNewUser();
+
+        // через COPY (несколько пачек payment_seq за раз), затем через JPA, затем снова через COPY
+        Long creditId = createCredit(DATE_OF_FIRST_PAYMENT, 360, false);
+        setCopyEnabled(false);
+        createCredit(DATE_OF_FIRST_PAYMENT, 100, true);
+        setCopyEnabled(true);
+        createCredit(DATE_OF_FIRST_PAYMENT, 61, false);
+
+        // второй платёж в ту же дату добавляет строку через JPA из той же последовательности
+        for (int i = 0; i < 5; i++) {
+            PaymentDto next = paymentService.getAllPaymentsByCreditId(creditId).getPayments().stream()
+                    .filter(payment -> payment.getStatus() == StatusOfPaymentOrCredit.PENDING)
+                    .findFirst()
+                    .orElseThrow();
+
+            paymentService.makePayment(creditId, next.getPaymentDate().toString(), next.getPaymentAmount().doubleValue());
+            paymentService.makePayment(creditId, next.getPaymentDate().toString(), 10_000.0);
+        }
+
+        Long count = jdbcTemplate.queryForObject("select count(*) from payment", Long.class);
+        Long distinct = jdbcTemplate.queryForObject("select count(distinct id) from payment", Long.class);
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from payment", Long.class);
+        Long lastValue = jdbcTemplate.queryForObject("select last_value from payment_seq", Long.class);
+
+        assertEquals(count, distinct);
+        // pooled: значение последовательности - верхняя граница уже выданных id
+        assertTrue(maxId <= lastValue, maxId + " > " + lastValue);
+    }
+
+
+    private List<Map<String, Object>> getRows(Long creditId) {
+        return jdbcTemplate.queryForList("select " + COLUMNS + " from payment where credit_id = ? order by payment_number", creditId);
+    }
+
+
+    private void setCopyEnabled(boolean isCopyEnabled) {
+        setField(paymentBulkWriter, "isCopyEnabled", isCopyEnabled);
+    }
+}
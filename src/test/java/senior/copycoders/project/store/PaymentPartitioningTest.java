@@ -0,0 +1,162 @@
+package senior.copycoders.project.store;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import senior.copycoders.project.PostgresIntegrationTest;
+import senior.copycoders.project.api.dto.PaymentDto;
+import senior.copycoders.project.api.services.CreditLedgerService;
+import senior.copycoders.project.api.services.PaymentService;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Перевод payment на секции: строки и внешние ключи переносятся, повторный запуск ничего не меняет,
+ * а платежи дальше создаются (через COPY и через JPA), проводятся и удаляются так же, как в обычной таблице
+ */
+class PaymentPartitioningTest extends PostgresIntegrationTest {
+
+    private static final String COLUMNS = "payment_number, payment_date, payment_amount, percent, repayment_credit, " +
+            "credit_after_payment, status, credit_before_payment, credit_amount";
+
+    @Autowired
+    PaymentPartitioning paymentPartitioning;
+
+    @Autowired
+    PaymentBulkWriter paymentBulkWriter;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    CreditLedgerService creditLedgerService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EntityManager entityManager;
+
+
+    int snapshotInterval;
+
+
+    @BeforeEach
+    void writeSnapshotOnEveryPayment() {
+        // без снимка платёж попадает только в журнал, а строки payment не меняются
+        snapshotInterval = (int) getField(creditLedgerService, "snapshotInterval");
+        setField(creditLedgerService, "snapshotInterval", 1);
+    }
+
+
+    @AfterEach
+    void restoreSettings() {
+        setField(paymentPartitioning, "partitions", 0);
+        setField(paymentBulkWriter, "isCopyEnabled", true);
+        setField(creditLedgerService, "snapshotInterval", snapshotInterval);
+    }
+
+
+    @Test
+    void partitionedPaymentsStayReadableAndWritable() {
+        // DDL в PostgreSQL транзакционный: всё откатывается, и остальные тесты работают с обычной таблицей
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            partitionAndCheck();
+        });
+    }
+
+
+    private void partitionAndCheck() {
+        signInAsNewUser();
+
+        Long existingCreditId = createCredit("2024-01-31", 36, false);
+        Long deletedCreditId = createCredit("2024-01-31", 36, false);
+        payNext(existingCreditId);
+        entityManager.flush();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("select * from payment order by id");
+        List<Map<String, Object>> foreignKeys = getForeignKeys();
+
+        setField(paymentPartitioning, "partitions", 4);
+        paymentPartitioning.partitionPayments();
+
+        assertEquals("p", jdbcTemplate.queryForObject("select relkind::text from pg_class where oid = 'payment'::regclass", String.class));
+        assertEquals(4, getPartitionCount());
+        assertEquals(rows, jdbcTemplate.queryForList("select * from payment order by id"));
+        assertEquals(foreignKeys, getForeignKeys());
+        assertEquals("payment_id_idx", jdbcTemplate.queryForObject("select to_regclass('payment_id_idx')::text", String.class));
+
+        // уже секционирована - второй запуск ничего не делает
+        paymentPartitioning.partitionPayments();
+        assertEquals(4, getPartitionCount());
+
+        // новые графики через COPY и через JPA, проведение платежей в перенесённых и в новых строках
+        Long copiedCreditId = createCredit("2024-01-31", 36, false);
+        setField(paymentBulkWriter, "isCopyEnabled", false);
+        Long jpaCreditId = createCredit("2024-01-31", 36, false);
+
+        payNext(copiedCreditId);
+        payNext(jpaCreditId);
+
+        for (Long creditId : List.of(existingCreditId, copiedCreditId, jpaCreditId)) {
+            payNext(creditId);
+        }
+
+        creditService.deleteCreditAndPayments(deletedCreditId);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Map<String, Object>> expected = getRows(existingCreditId);
+
+        assertEquals(36, expected.size());
+        assertEquals(2, expected.stream().filter(row -> ((Number) row.get("status")).intValue() == StatusOfPaymentOrCredit.PAID.ordinal()).count());
+        assertEquals(expected, getRows(copiedCreditId));
+        assertEquals(expected, getRows(jpaCreditId));
+        assertEquals(List.of(), getRows(deletedCreditId));
+
+        assertEquals(paymentService.getAllPaymentsByCreditId(existingCreditId).getPayments().size(),
+                paymentService.getAllPaymentsByCreditId(jpaCreditId).getPayments().size());
+    }
+
+
+    /**
+     * Проводит ближайший непроведённый платёж по графику
+     */
+    private void payNext(Long creditId) {
+        PaymentDto next = paymentService.getAllPaymentsByCreditId(creditId).getPayments().stream()
+                .filter(payment -> payment.getStatus() == StatusOfPaymentOrCredit.PENDING)
+                .findFirst()
+                .orElseThrow();
+
+        paymentService.makePayment(creditId, next.getPaymentDate().toString(), next.getPaymentAmount().doubleValue());
+    }
+
+
+    private List<Map<String, Object>> getRows(Long creditId) {
+        return jdbcTemplate.queryForList("select " + COLUMNS + " from payment where credit_id = ? order by payment_number", creditId);
+    }
+
+
+    private List<Map<String, Object>> getForeignKeys() {
+        return jdbcTemplate.queryForList("select conname, pg_get_constraintdef(oid) as definition from pg_constraint " +
+                "where conrelid = 'payment'::regclass and contype = 'f' order by conname");
+    }
+
+
+    private Integer getPartitionCount() {
+        return jdbcTemplate.queryForObject("select count(*) from pg_inherits where inhparent = 'payment'::regclass", Integer.class);
+    }
+}
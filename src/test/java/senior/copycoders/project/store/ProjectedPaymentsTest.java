@@ -0,0 +1,141 @@
+package senior.copycoders.project.store;
+
+import org.junit.jupiter.api.Test;
+import senior.copycoders.project.api.services.engines.BigDecimalAmortizationEngine;
+import senior.copycoders.project.store.entities.CreditEntity;
+import senior.copycoders.project.store.entities.PaymentEntity;
+import senior.copycoders.project.store.enums.StatusOfPaymentOrCredit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Компактная проекция графика: непроведённые платежи после кодирования и декодирования те же
+ * (с точностью столбцов БД), уже хранящиеся строками платежи при чтении пропускаются,
+ * а то, что нельзя закодировать, остаётся строками
+ */
+class ProjectedPaymentsTest {
+
+    private final BigDecimalAmortizationEngine engine = new BigDecimalAmortizationEngine();
+
+
+    @Test
+    void projectionRoundTrip() {
+        for (boolean isDifferentiated : new boolean[]{false, true}) {
+            CreditEntity credit = CreditEntity.builder().id(1L).build();
+            List<PaymentEntity> payments = createSchedule(isDifferentiated);
+            payments.subList(0, 3).forEach(payment -> payment.setStatus(StatusOfPaymentOrCredit.PAID));
+
+            List<PaymentEntity> rows = ProjectedPayments.split(credit, payments, true);
+
+            assertEquals(payments.subList(0, 3), rows);
+            assertNotNull(credit.getProjectedPayments());
+            // около 20 байт на платёж
+            assertTrue(credit.getProjectedPayments().length < 30 * (payments.size() - 3), "size " + credit.getProjectedPayments().length);
+
+            credit.setPaymentList(new ArrayList<>(rows));
+
+            assertEquals(describe(payments.subList(3, payments.size())), describe(ProjectedPayments.decode(credit)));
+        }
+    }
+
+
+    @Test
+    void paymentsStoredAsRowsAreSkipped() {
+        CreditEntity credit = CreditEntity.builder().id(1L).build();
+        List<PaymentEntity> payments = createSchedule(false);
+
+        ProjectedPayments.split(credit, payments, true);
+        byte[] stored = credit.getProjectedPayments();
+
+        // первые два платежа проекции проведены по графику и теперь хранятся строками
+        payments.subList(0, 2).forEach(payment -> payment.setStatus(StatusOfPaymentOrCredit.PAID));
+        credit.setPaymentList(new ArrayList<>(payments.subList(0, 2)));
+
+        assertEquals(describe(payments.subList(2, payments.size())), describe(ProjectedPayments.decode(credit)));
+
+        // проекция не изменилась, поэтому остаётся тот же массив (столбец не попадёт в UPDATE)
+        ProjectedPayments.split(credit, payments, true);
+        assertSame(stored, credit.getProjectedPayments());
+    }
+
+
+    @Test
+    void unencodablePaymentsStayRows() {
+        CreditEntity credit = CreditEntity.builder().id(1L).projectedPayments(new byte[]{1, 0}).build();
+        List<PaymentEntity> payments = createSchedule(true);
+
+        // без компактного хранения проекции нет
+        assertSame(payments, ProjectedPayments.split(credit, payments, false));
+        assertNull(credit.getProjectedPayments());
+
+        // сумма не помещается в long
+        payments.get(7).setPercent(new BigDecimal("1e20"));
+        assertSame(payments, ProjectedPayments.split(credit, payments, true));
+        assertNull(credit.getProjectedPayments());
+
+        // проведённый платёж после непроведённого
+        payments = createSchedule(true);
+        payments.get(5).setStatus(StatusOfPaymentOrCredit.PAID);
+        assertSame(payments, ProjectedPayments.split(credit, payments, true));
+        assertNull(credit.getProjectedPayments());
+    }
+
+
+    @Test
+    void negativeAndIrregularDifferences() {
+        CreditEntity credit = CreditEntity.builder().id(1L).build();
+        List<PaymentEntity> payments = createSchedule(false);
+
+        // номера и даты с пропусками, суммы скачут в обе стороны (в том числе отрицательные и нулевые)
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentEntity payment = payments.get(i);
+            payment.setPaymentNumber(1 + i * 3);
+            payment.setPaymentDate(LocalDate.of(2024, 1, 31).plusDays(i * 37L));
+            payment.setRepaymentCredit(BigDecimal.valueOf(i % 2 == 0 ? -i * 1_000_000_007L : i, 2));
+            payment.setPercent(i % 3 == 0 ? BigDecimal.ZERO : new BigDecimal("0.00000000001").multiply(BigDecimal.valueOf(Long.MAX_VALUE / 1_000 - i)));
+        }
+
+        ProjectedPayments.split(credit, payments, true);
+        credit.setPaymentList(new ArrayList<>());
+
+        assertEquals(describe(payments), describe(ProjectedPayments.decode(credit)));
+    }
+
+
+    private List<PaymentEntity> createSchedule(boolean isDifferentiated) {
+        BigDecimal creditAmount = new BigDecimal("2500000.55");
+        BigDecimal percentRate = new BigDecimal("11.35");
+        LocalDate date = LocalDate.of(2024, 1, 31);
+
+        return new ArrayList<>(isDifferentiated
+                ? engine.createListOfDifferentiatedCredit(date, creditAmount, percentRate, 120, null, false, BigDecimal.ZERO)
+                : engine.createListOfAnnuityCredit(date, creditAmount, engine.calculatePaymentOfAnnuityCredit(creditAmount, percentRate, 120), percentRate, 120, null, false, BigDecimal.ZERO));
+    }
+
+
+    /**
+     * Платежи строкой так, как их вернула бы БД (суммы округлены до масштаба столбцов)
+     */
+    private static List<String> describe(List<PaymentEntity> payments) {
+        return payments.stream()
+                .map(payment -> payment.getPaymentNumber() + " " + payment.getPaymentDate() + " " + payment.getStatus()
+                        + " " + round(payment.getPaymentAmount(), PaymentEntity.MONEY_SCALE)
+                        + " " + round(payment.getPercent(), PaymentEntity.PERCENT_SCALE)
+                        + " " + round(payment.getRepaymentCredit(), PaymentEntity.MONEY_SCALE)
+                        + " " + round(payment.getAfterPayment(), PaymentEntity.MONEY_SCALE)
+                        + " " + round(payment.getBeforePayment(), PaymentEntity.MONEY_SCALE)
+                        + " " + round(payment.getCreditAmount(), PaymentEntity.MONEY_SCALE))
+                .toList();
+    }
+
+
+    private static BigDecimal round(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_UP);
+    }
+}